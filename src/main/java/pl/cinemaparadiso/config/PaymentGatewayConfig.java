@@ -0,0 +1,42 @@
+package pl.cinemaparadiso.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import pl.cinemaparadiso.enums.PaymentMethod;
+import pl.cinemaparadiso.service.PaymentGateway;
+import pl.cinemaparadiso.service.SimulatedPaymentGateway;
+
+import java.util.Set;
+
+/**
+ * Bramki płatności dla poszczególnych metod
+ *
+ * Na razie wszystkie są lokalnymi symulacjami - prawdziwego dostawcę podłącza się,
+ * zastępując odpowiedni bean własną implementacją PaymentGateway.
+ * Płatność gotówką (CASH) nie przechodzi przez żadną bramkę.
+ */
+@Configuration
+public class PaymentGatewayConfig {
+
+    @Bean
+    public PaymentGateway cardPaymentGateway(Environment environment) {
+        return new SimulatedPaymentGateway("card",
+                Set.of(PaymentMethod.CREDIT_CARD, PaymentMethod.DEBIT_CARD), environment);
+    }
+
+    @Bean
+    public PaymentGateway blikPaymentGateway(Environment environment) {
+        return new SimulatedPaymentGateway("blik", Set.of(PaymentMethod.BLIK), environment);
+    }
+
+    @Bean
+    public PaymentGateway payPalPaymentGateway(Environment environment) {
+        return new SimulatedPaymentGateway("paypal", Set.of(PaymentMethod.PAYPAL), environment);
+    }
+
+    @Bean
+    public PaymentGateway mockPaymentGateway(Environment environment) {
+        return new SimulatedPaymentGateway("mock", Set.of(PaymentMethod.MOCK), environment);
+    }
+}
@@ -0,0 +1,12 @@
+package pl.cinemaparadiso.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Włącza zadania okresowe (@Scheduled), np. wygaszanie nieopłaconych rezerwacji
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
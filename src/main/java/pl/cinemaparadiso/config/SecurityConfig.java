@@ -34,7 +34,8 @@ public class SecurityConfig {
                 .requestMatchers("/api/auth/**").permitAll()
                 .requestMatchers("/api/movies", "/api/movies/*").permitAll()
                 .requestMatchers("/api/screenings", "/api/screenings/*", "/api/screenings/upcoming", "/api/screenings/range", "/api/screenings/movie/*", "/api/screenings/repertoire").permitAll()
-                .requestMatchers("/api/reservations/screenings/*/seats").permitAll()
+                .requestMatchers("/api/reservations/screenings/*/seats", "/api/reservations/screenings/*/seats/stream", "/api/reservations/rooms/*/layout").permitAll()
+                .requestMatchers("/api/waiting-room/**").permitAll()
                 .requestMatchers("/api/tickets/verify").permitAll()
                 .requestMatchers("/admin/**").hasRole("ADMIN")
                 .requestMatchers("/api/admin/**").hasRole("ADMIN")
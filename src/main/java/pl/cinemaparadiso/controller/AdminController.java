@@ -10,6 +10,8 @@ import pl.cinemaparadiso.dto.UserDTO;
 import pl.cinemaparadiso.entity.User;
 import pl.cinemaparadiso.enums.UserRole;
 import pl.cinemaparadiso.repository.UserRepository;
+import pl.cinemaparadiso.service.LruTtlCache;
+import pl.cinemaparadiso.service.MovieCatalogCache;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -29,6 +31,7 @@ import java.util.stream.Collectors;
 public class AdminController {
     
     private final UserRepository userRepository;
+    private final MovieCatalogCache movieCatalogCache;
     
     /**
      * Pobiera wszystkich użytkowników
@@ -70,6 +73,19 @@ public class AdminController {
         return ResponseEntity.ok(mapToDTO(updatedUser));
     }
     
+    /**
+     * Liczniki pamięci podręcznej katalogu filmów (rozmiar, trafienia, chybienia, usunięcia)
+     * 
+     * GET /api/admin/caches
+     * Tylko ADMIN
+     * 
+     * @return statystyki pamięci podręcznych
+     */
+    @GetMapping("/caches")
+    public ResponseEntity<List<LruTtlCache.Stats>> getCacheStats() {
+        return ResponseEntity.ok(movieCatalogCache.stats());
+    }
+    
     /**
      * Mapuje Entity (User) na DTO (UserDTO)
      */
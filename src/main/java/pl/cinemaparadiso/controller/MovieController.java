@@ -64,8 +64,8 @@ public class MovieController {
      * 
      * @param page - numer strony (domyślnie 0)
      * @param size - rozmiar strony (domyślnie 20)
-     * @param sort - sortowanie (domyślnie po tytule, asc)
-     * @param search - wyszukiwanie po tytule (opcjonalne)
+     * @param sort - sortowanie (domyślnie po tytule, asc; przy wyszukiwaniu wyniki są wg trafności, chyba że sort=rating)
+     * @param search - wyszukiwanie pełnotekstowe po tytule, reżyserze, gatunku i opisie (opcjonalne)
      * @param genre - filtrowanie po gatunku (opcjonalne)
      * @return lista filmów lub strona z filmami (jeśli użyto paginacji)
      */
@@ -96,17 +96,16 @@ public class MovieController {
         
         Page<MovieDTO> moviesPage;
         
-        // Sortowanie po ocenach wymaga specjalnej obsługi (oceny są w osobnej tabeli)
+        // Sortowanie po ocenach - po zdenormalizowanych kolumnach ocen filmu (z obsługą filmów bez ocen)
         if ("rating".equalsIgnoreCase(sortField)) {
-            // Użyj specjalnej metody do sortowania po ocenach
             moviesPage = movieService.getAllMoviesSortedByRating(pageNumber, pageSize, direction, search, genre);
         } else {
             // Standardowe sortowanie
             Pageable pageable = PageRequest.of(pageNumber, pageSize, Sort.by(direction, sortField));
             
-            // Wyszukiwanie po tytule
+            // Wyszukiwanie pełnotekstowe (tytuł, reżyser, gatunek, opis) - wyniki wg trafności
             if (search != null && !search.trim().isEmpty()) {
-                moviesPage = movieService.searchMoviesByTitle(search.trim(), pageable);
+                moviesPage = movieService.searchMovies(search.trim(), pageable);
             }
             // Filtrowanie po gatunku
             else if (genre != null && !genre.trim().isEmpty()) {
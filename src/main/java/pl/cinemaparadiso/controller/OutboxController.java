@@ -0,0 +1,71 @@
+package pl.cinemaparadiso.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import pl.cinemaparadiso.dto.OutboxEventDTO;
+import pl.cinemaparadiso.service.OutboxService;
+
+import java.util.List;
+
+/**
+ * Controller dla martwych zdarzeń skrzynki nadawczej (niedostarczonych po wyczerpaniu limitu prób)
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/admin/outbox")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class OutboxController {
+
+    private final OutboxService outboxService;
+
+    /**
+     * Lista martwych zdarzeń
+     *
+     * GET /api/admin/outbox/dead
+     * Tylko ADMIN
+     *
+     * @return martwe zdarzenia (najstarsze najpierw) z błędem ostatniej próby
+     */
+    @GetMapping("/dead")
+    public ResponseEntity<List<OutboxEventDTO>> getDeadEvents() {
+        return ResponseEntity.ok(outboxService.getDeadEvents());
+    }
+
+    /**
+     * Ponawia dostarczenie martwego zdarzenia (np. po naprawie błędu słuchacza)
+     *
+     * POST /api/admin/outbox/dead/{id}/retry
+     * Tylko ADMIN
+     *
+     * @param id - ID zdarzenia
+     * @return zdarzenie przywrócone do skrzynki
+     */
+    @PostMapping("/dead/{id}/retry")
+    public ResponseEntity<OutboxEventDTO> retryDeadEvent(@PathVariable Long id) {
+        log.info("Ponowienie martwego zdarzenia ID: {} zlecone przez admina", id);
+        return ResponseEntity.ok(outboxService.retryDeadEvent(id));
+    }
+
+    /**
+     * Pomija martwe zdarzenie - nie będzie już dostarczane
+     *
+     * POST /api/admin/outbox/dead/{id}/skip
+     * Tylko ADMIN
+     *
+     * @param id - ID zdarzenia
+     * @return pominięte zdarzenie
+     */
+    @PostMapping("/dead/{id}/skip")
+    public ResponseEntity<OutboxEventDTO> skipDeadEvent(@PathVariable Long id) {
+        log.info("Pominięcie martwego zdarzenia ID: {} zlecone przez admina", id);
+        return ResponseEntity.ok(outboxService.skipDeadEvent(id));
+    }
+}
@@ -3,6 +3,7 @@ package pl.cinemaparadiso.controller;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -12,7 +13,10 @@ import org.springframework.web.bind.annotation.*;
 import pl.cinemaparadiso.dto.PaymentRequestDTO;
 import pl.cinemaparadiso.dto.PaymentResponseDTO;
 import pl.cinemaparadiso.entity.User;
-import pl.cinemaparadiso.service.PaymentService;
+import pl.cinemaparadiso.enums.ReservationStatus;
+import pl.cinemaparadiso.service.IdempotencyService;
+import pl.cinemaparadiso.service.PaymentProcessingService;
+import pl.cinemaparadiso.service.WaitingRoomService;
 
 /**
  * Controller dla endpointów związanych z płatnościami
@@ -23,32 +27,52 @@ import pl.cinemaparadiso.service.PaymentService;
 @RequiredArgsConstructor
 public class PaymentController {
     
-    private final PaymentService paymentService;
+    private final PaymentProcessingService paymentProcessingService;
+    private final WaitingRoomService waitingRoomService;
+    private final IdempotencyService idempotencyService;
     
     /**
-     * Przetwarza płatność za rezerwację
+     * Rozpoczyna płatność za rezerwację
      * 
      * POST /api/payments/process
      * Wymaga zalogowania
      * 
+     * Płatność jest przetwarzana w tle - odpowiedź 202 Accepted ze statusem PAYMENT_PROCESSING,
+     * wynik do odpytania pod adresem z nagłówka Location (GET /api/payments/{reservationId}/status).
+     * Płatność gotówką jest potwierdzana od razu (200 OK).
+     * 
+     * Opcjonalny nagłówek Idempotency-Key - powtórzone żądanie zwraca ten sam wynik bez ponownej płatności
+     * 
      * @param paymentRequest - dane płatności (walidowane przez @Valid)
-     * @return odpowiedź z wynikiem płatności
+     * @return odpowiedź ze stanem płatności
      */
     @PostMapping("/process")
     @PreAuthorize("isAuthenticated()")
-    public ResponseEntity<PaymentResponseDTO> processPayment(@Valid @RequestBody PaymentRequestDTO paymentRequest) {
+    public ResponseEntity<PaymentResponseDTO> processPayment(
+            @Valid @RequestBody PaymentRequestDTO paymentRequest,
+            @RequestHeader(value = WaitingRoomService.TOKEN_HEADER, required = false) String queueToken,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
         Long userId = getCurrentUserId();
         log.info("Żądanie płatności przez użytkownika ID: {} dla rezerwacji ID: {}", 
                 userId, paymentRequest.getReservationId());
         
         try {
-            PaymentResponseDTO response = paymentService.processPayment(paymentRequest, userId);
+            IdempotencyService.IdempotentResult<PaymentResponseDTO> result = idempotencyService.execute(
+                    "process-payment", userId, idempotencyKey, paymentRequest, () -> {
+                        waitingRoomService.checkAdmittedForReservation(paymentRequest.getReservationId(), queueToken);
+                        return paymentProcessingService.submitPayment(paymentRequest, userId);
+                    });
+            PaymentResponseDTO response = result.value();
             
-            if (response.isSuccess()) {
-                return ResponseEntity.ok(response);
-            } else {
-                return ResponseEntity.status(HttpStatus.PAYMENT_REQUIRED).body(response);
+            if (response.getReservationStatus() == ReservationStatus.PAYMENT_PROCESSING) {
+                return ResponseEntity.status(HttpStatus.ACCEPTED)
+                        .header(HttpHeaders.LOCATION, "/api/payments/" + response.getReservationId() + "/status")
+                        .header(IdempotencyService.REPLAYED_HEADER, String.valueOf(result.replayed()))
+                        .body(response);
             }
+            return ResponseEntity.status(response.isSuccess() ? HttpStatus.OK : HttpStatus.PAYMENT_REQUIRED)
+                    .header(IdempotencyService.REPLAYED_HEADER, String.valueOf(result.replayed()))
+                    .body(response);
         } catch (IllegalArgumentException e) {
             log.warn("Błąd walidacji płatności: {}", e.getMessage());
             PaymentResponseDTO errorResponse = PaymentResponseDTO.builder()
@@ -60,6 +84,22 @@ public class PaymentController {
         }
     }
     
+    /**
+     * Pobiera stan płatności rezerwacji
+     * 
+     * GET /api/payments/{reservationId}/status
+     * Wymaga zalogowania
+     * 
+     * @param reservationId - ID rezerwacji
+     * @return stan płatności (reservationStatus: PAYMENT_PROCESSING, PAID, PAYMENT_FAILED...)
+     */
+    @GetMapping("/{reservationId}/status")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<PaymentResponseDTO> getPaymentStatus(@PathVariable Long reservationId) {
+        Long userId = getCurrentUserId();
+        return ResponseEntity.ok(paymentProcessingService.getPaymentStatus(reservationId, userId));
+    }
+    
     /**
      * Pobiera ID zalogowanego użytkownika z SecurityContext
      * 
@@ -0,0 +1,45 @@
+package pl.cinemaparadiso.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import pl.cinemaparadiso.dto.ReconciliationReportDTO;
+import pl.cinemaparadiso.service.PaymentReconciliationService;
+
+import java.time.LocalDate;
+
+/**
+ * Controller dla uzgadniania płatności z rozliczeniami bramek
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/admin/reconciliation")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class ReconciliationController {
+
+    private final PaymentReconciliationService paymentReconciliationService;
+
+    /**
+     * Uruchamia uzgadnianie płatności za podany dzień (domyślnie wczoraj)
+     *
+     * POST /api/admin/reconciliation?day=2026-01-31
+     * Tylko ADMIN
+     *
+     * @param day - dzień do uzgodnienia
+     * @return podsumowanie i ścieżka raportu CSV z rozbieżnościami
+     */
+    @PostMapping
+    public ResponseEntity<ReconciliationReportDTO> reconcile(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate day) {
+        LocalDate reconciledDay = day != null ? day : LocalDate.now().minusDays(1);
+        log.info("Uzgadnianie płatności za {} uruchomione przez admina", reconciledDay);
+        return ResponseEntity.ok(paymentReconciliationService.reconcile(reconciledDay));
+    }
+}
@@ -3,18 +3,32 @@ package pl.cinemaparadiso.controller;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import pl.cinemaparadiso.dto.BestAvailableRequestDTO;
+import pl.cinemaparadiso.dto.CompactSeatMapDTO;
 import pl.cinemaparadiso.dto.CreateReservationDTO;
 import pl.cinemaparadiso.dto.ReservationDTO;
+import pl.cinemaparadiso.dto.RoomLayoutDTO;
 import pl.cinemaparadiso.dto.SeatAvailabilityDTO;
 import pl.cinemaparadiso.entity.User;
+import pl.cinemaparadiso.service.BookingSequencer;
+import pl.cinemaparadiso.service.IdempotencyService;
 import pl.cinemaparadiso.service.ReservationService;
+import pl.cinemaparadiso.service.SeatAllocationService;
+import pl.cinemaparadiso.service.SeatMapBroadcaster;
+import pl.cinemaparadiso.service.WaitingRoomService;
 
+import java.time.Duration;
 import java.util.List;
 
 /**
@@ -31,7 +45,16 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ReservationController {
     
+    private static final String COMPACT_FORMAT = "compact";
+    private static final String COMPACT_SEAT_MAP_MEDIA_TYPE = "application/vnd.cinemaparadiso.seatmap-compact+json";
+    private static final Duration LAYOUT_CACHE_MAX_AGE = Duration.ofDays(1);
+    
     private final ReservationService reservationService;
+    private final BookingSequencer bookingSequencer;
+    private final SeatMapBroadcaster seatMapBroadcaster;
+    private final SeatAllocationService seatAllocationService;
+    private final WaitingRoomService waitingRoomService;
+    private final IdempotencyService idempotencyService;
     
     /**
      * Pobiera wszystkie rezerwacje zalogowanego użytkownika
@@ -76,16 +99,49 @@ public class ReservationController {
      * POST /api/reservations
      * Wymaga zalogowania
      * 
+     * Opcjonalny nagłówek Idempotency-Key - powtórzone żądanie zwraca tę samą rezerwację
+     * 
      * @param createDTO - dane rezerwacji (walidowane przez @Valid)
      * @return utworzona rezerwacja
      */
     @PostMapping
     @PreAuthorize("isAuthenticated()")
-    public ResponseEntity<ReservationDTO> createReservation(@Valid @RequestBody CreateReservationDTO createDTO) {
+    public ResponseEntity<ReservationDTO> createReservation(
+            @Valid @RequestBody CreateReservationDTO createDTO,
+            @RequestHeader(value = WaitingRoomService.TOKEN_HEADER, required = false) String queueToken,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
         Long userId = getCurrentUserId();
         log.info("Tworzenie rezerwacji przez użytkownika ID: {}", userId);
         
-        ReservationDTO reservation = reservationService.createReservation(createDTO, userId);
+        IdempotencyService.IdempotentResult<ReservationDTO> result = idempotencyService.execute(
+                "create-reservation", userId, idempotencyKey, createDTO, () -> {
+                    waitingRoomService.checkAdmitted(createDTO.getScreeningId(), queueToken);
+                    return bookingSequencer.createReservation(createDTO, userId);
+                });
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header(IdempotencyService.REPLAYED_HEADER, String.valueOf(result.replayed()))
+                .body(result.value());
+    }
+    
+    /**
+     * Automatycznie wybiera i rezerwuje najlepsze sąsiadujące miejsca
+     * 
+     * POST /api/reservations/best-available
+     * Wymaga zalogowania
+     * 
+     * @param request - liczba osób, preferowany typ miejsc i rząd, typy biletów
+     * @return utworzona rezerwacja (z wybranymi miejscami)
+     */
+    @PostMapping("/best-available")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<ReservationDTO> reserveBestAvailable(
+            @Valid @RequestBody BestAvailableRequestDTO request,
+            @RequestHeader(value = WaitingRoomService.TOKEN_HEADER, required = false) String queueToken) {
+        Long userId = getCurrentUserId();
+        log.info("Automatyczny wybór miejsc przez użytkownika ID: {}", userId);
+        waitingRoomService.checkAdmitted(request.getScreeningId(), queueToken);
+        
+        ReservationDTO reservation = seatAllocationService.reserveBestAvailable(request, userId);
         return ResponseEntity.status(HttpStatus.CREATED).body(reservation);
     }
     
@@ -104,7 +160,7 @@ public class ReservationController {
         Long userId = getCurrentUserId();
         log.info("Anulowanie rezerwacji ID: {} przez użytkownika ID: {}", id, userId);
         
-        reservationService.cancelReservation(id, userId);
+        bookingSequencer.cancelReservation(id, userId);
         return ResponseEntity.noContent().build();
     }
     
@@ -114,17 +170,84 @@ public class ReservationController {
      * GET /api/screenings/{screeningId}/seats
      * Publiczny endpoint (nie wymaga logowania)
      * 
+     * Zwarta postać (maski bitowe rzędów, CompactSeatMapDTO) jest zwracana dla ?format=compact
+     * lub nagłówka Accept: application/vnd.cinemaparadiso.seatmap-compact+json
+     * 
      * @param screeningId - ID seansu
-     * @return lista dostępnych miejsc
+     * @return lista dostępnych miejsc albo zwarta postać planu sali
      */
     @GetMapping("/screenings/{screeningId}/seats")
-    public ResponseEntity<List<SeatAvailabilityDTO>> getAvailableSeats(@PathVariable Long screeningId) {
+    public ResponseEntity<?> getAvailableSeats(@PathVariable Long screeningId,
+                                               @RequestParam(required = false) String format,
+                                               @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                               @RequestHeader(value = WaitingRoomService.TOKEN_HEADER, required = false) String queueToken) {
+        waitingRoomService.checkAdmitted(screeningId, queueToken);
+        
+        boolean compactByMediaType = accept != null && accept.contains(COMPACT_SEAT_MAP_MEDIA_TYPE);
+        if (COMPACT_FORMAT.equalsIgnoreCase(format) || compactByMediaType) {
+            log.debug("Pobieranie zwartego planu sali dla seansu ID: {}", screeningId);
+            
+            CompactSeatMapDTO seatMap = reservationService.getCompactSeatMap(screeningId);
+            return ResponseEntity.ok()
+                    .contentType(compactByMediaType
+                            ? MediaType.parseMediaType(COMPACT_SEAT_MAP_MEDIA_TYPE)
+                            : MediaType.APPLICATION_JSON)
+                    .cacheControl(CacheControl.noCache())
+                    .body(seatMap);
+        }
+        
         log.debug("Pobieranie dostępnych miejsc dla seansu ID: {}", screeningId);
         
         List<SeatAvailabilityDTO> seats = reservationService.getAvailableSeats(screeningId);
         return ResponseEntity.ok(seats);
     }
     
+    /**
+     * Pobiera statyczny układ sali (do połączenia z zwartym planem sali)
+     * 
+     * GET /api/reservations/rooms/{roomId}/layout
+     * Publiczny endpoint (nie wymaga logowania)
+     * Układ rzadko się zmienia - odpowiedź jest cache'owana, a ETag pozwala na 304 Not Modified
+     * 
+     * @param roomId - ID sali
+     * @return układ sali
+     */
+    @GetMapping("/rooms/{roomId}/layout")
+    public ResponseEntity<RoomLayoutDTO> getRoomLayout(@PathVariable Long roomId, WebRequest request) {
+        log.debug("Pobieranie układu sali ID: {}", roomId);
+        
+        RoomLayoutDTO layout = reservationService.getRoomLayout(roomId);
+        String eTag = "\"" + layout.getLayoutVersion() + "\"";
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(LAYOUT_CACHE_MAX_AGE).cachePublic())
+                .eTag(eTag)
+                .body(layout);
+    }
+    
+    /**
+     * Strumień zmian planu sali (Server-Sent Events)
+     * 
+     * GET /api/reservations/screenings/{screeningId}/seats/stream
+     * Publiczny endpoint (nie wymaga logowania), przy aktywnej poczekalni wymaga parametru queueToken
+     * Zdarzenia: "snapshot" (pełny plan sali z wersją), "delta" (zajęte/zwolnione miejsca)
+     * 
+     * @param screeningId - ID seansu
+     * @return strumień zdarzeń SSE
+     */
+    @GetMapping(value = "/screenings/{screeningId}/seats/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamSeatMap(@PathVariable Long screeningId,
+                                    @RequestParam(required = false) String queueToken) {
+        log.debug("Subskrypcja zmian planu sali dla seansu ID: {}", screeningId);
+        // EventSource nie pozwala ustawić nagłówków - token kolejki przychodzi w parametrze
+        waitingRoomService.checkAdmitted(screeningId, queueToken);
+        
+        return seatMapBroadcaster.subscribe(screeningId);
+    }
+    
     /**
      * Pobiera ID zalogowanego użytkownika z SecurityContext
      * 
@@ -0,0 +1,58 @@
+package pl.cinemaparadiso.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import pl.cinemaparadiso.service.SalesExportService;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Controller dla eksportu sprzedaży do CSV
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/admin/exports")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class SalesExportController {
+
+    private final SalesExportService salesExportService;
+
+    /**
+     * Eksportuje rezerwacje z miejscami, cenami, typami biletów i danymi płatności
+     *
+     * GET /api/admin/exports/sales?from=2026-01-01&to=2026-12-31
+     * Tylko ADMIN
+     *
+     * @param from - pierwszy dzień (data utworzenia rezerwacji)
+     * @param to - ostatni dzień (włącznie)
+     * @return plik CSV zapisywany strumieniowo
+     */
+    @GetMapping("/sales")
+    public ResponseEntity<StreamingResponseBody> exportSales(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("Data końcowa nie może być wcześniejsza niż początkowa");
+        }
+        log.info("Eksport sprzedaży z okresu {} - {} przez admina", from, to);
+
+        StreamingResponseBody body = outputStream -> salesExportService.exportCsv(from, to, outputStream);
+        return ResponseEntity.ok()
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"sales-" + from + "-" + to + ".csv\"")
+                .body(body);
+    }
+}
@@ -2,13 +2,24 @@ package pl.cinemaparadiso.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import pl.cinemaparadiso.service.StatisticsService;
+import pl.cinemaparadiso.dto.SalesQueryResultDTO;
+import pl.cinemaparadiso.enums.SalesDimension;
+import pl.cinemaparadiso.service.DailySalesService;
+import pl.cinemaparadiso.service.SalesColumnStore;
+import pl.cinemaparadiso.service.StatisticsSnapshot;
+import pl.cinemaparadiso.service.StatisticsSnapshotService;
 
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -21,10 +32,12 @@ import java.util.Map;
 @PreAuthorize("hasRole('ADMIN')")
 public class StatisticsController {
     
-    private final StatisticsService statisticsService;
+    private final StatisticsSnapshotService statisticsSnapshotService;
+    private final DailySalesService dailySalesService;
+    private final SalesColumnStore salesColumnStore;
     
     /**
-     * Pobiera wszystkie statystyki
+     * Pobiera wszystkie statystyki (z migawki odświeżanej w tle, generatedAt = chwila wyliczenia)
      * 
      * GET /api/admin/statistics
      * Tylko ADMIN
@@ -34,8 +47,42 @@ public class StatisticsController {
     @GetMapping
     public ResponseEntity<Map<String, Object>> getAllStatistics() {
         log.debug("Pobieranie statystyk przez admina");
-        Map<String, Object> statistics = statisticsService.getAllStatistics();
+        StatisticsSnapshot snapshot = statisticsSnapshotService.getSnapshot();
+        Map<String, Object> statistics = new LinkedHashMap<>(snapshot.statistics());
+        statistics.put("generatedAt", snapshot.computedAt().toString());
         return ResponseEntity.ok(statistics);
     }
+    
+    /**
+     * Przelicza od nowa dzienne agregaty sprzedaży (np. po ręcznych zmianach w bazie)
+     * 
+     * POST /api/admin/statistics/daily-sales/rebuild
+     * Tylko ADMIN
+     * 
+     * @return liczba wliczonych opłaconych rezerwacji
+     */
+    @PostMapping("/daily-sales/rebuild")
+    public ResponseEntity<Map<String, Integer>> rebuildDailySales() {
+        log.info("Przebudowa dziennych agregatów sprzedaży uruchomiona przez admina");
+        return ResponseEntity.ok(Map.of("paidReservations", dailySalesService.rebuild()));
+    }
+    
+    /**
+     * Analiza sprzedaży ad hoc z magazynu kolumnowego w pamięci (bez zapytań do tabel rezerwacji)
+     * 
+     * GET /api/admin/statistics/query?groupBy=MOVIE,WEEKDAY&from=2026-01-01&to=2026-03-31
+     * Tylko ADMIN
+     * 
+     * @param groupBy - wymiary: MOVIE, ROOM, WEEKDAY, HOUR, TICKET_TYPE, PAYMENT_METHOD
+     * @param from - pierwszy dzień seansu (opcjonalnie)
+     * @param to - ostatni dzień seansu (opcjonalnie, włącznie)
+     * @return grupy z liczbą miejsc i przychodem
+     */
+    @GetMapping("/query")
+    public ResponseEntity<SalesQueryResultDTO> querySales(
+            @RequestParam(required = false, defaultValue = "") List<SalesDimension> groupBy,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(salesColumnStore.query(groupBy, from, to));
+    }
 }
-
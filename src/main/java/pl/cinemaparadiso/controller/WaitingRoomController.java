@@ -0,0 +1,106 @@
+package pl.cinemaparadiso.controller;
+
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import pl.cinemaparadiso.dto.WaitingRoomDTO;
+import pl.cinemaparadiso.dto.WaitingRoomSettingsDTO;
+import pl.cinemaparadiso.dto.WaitingRoomStatusDTO;
+import pl.cinemaparadiso.service.WaitingRoomService;
+
+import java.util.List;
+
+/**
+ * Controller dla wirtualnej poczekalni seansów
+ *
+ * Endpointy klienta: /api/waiting-room/... (publiczne)
+ * Endpointy administratora: /api/admin/waiting-rooms/... (tylko ADMIN)
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api")
+@RequiredArgsConstructor
+public class WaitingRoomController {
+
+    private final WaitingRoomService waitingRoomService;
+
+    /**
+     * Dołącza do kolejki seansu
+     *
+     * POST /api/waiting-room/screenings/{screeningId}/join
+     * Publiczny endpoint
+     *
+     * @param screeningId - ID seansu
+     * @return token kolejki i pozycja (admitted = true gdy seans nie ma poczekalni)
+     */
+    @PostMapping("/waiting-room/screenings/{screeningId}/join")
+    public ResponseEntity<WaitingRoomStatusDTO> join(@PathVariable Long screeningId) {
+        return ResponseEntity.ok(waitingRoomService.join(screeningId));
+    }
+
+    /**
+     * Sprawdza pozycję w kolejce
+     *
+     * GET /api/waiting-room/screenings/{screeningId}/status
+     * Publiczny endpoint, token w nagłówku X-Queue-Token
+     *
+     * @param screeningId - ID seansu
+     * @return pozycja w kolejce i informacja, czy użytkownik został wpuszczony
+     */
+    @GetMapping("/waiting-room/screenings/{screeningId}/status")
+    public ResponseEntity<WaitingRoomStatusDTO> getStatus(
+            @PathVariable Long screeningId,
+            @RequestHeader(value = WaitingRoomService.TOKEN_HEADER, required = false) String queueToken) {
+        return ResponseEntity.ok(waitingRoomService.getStatus(screeningId, queueToken));
+    }
+
+    /**
+     * Pobiera aktywne poczekalnie
+     *
+     * GET /api/admin/waiting-rooms
+     * Tylko ADMIN
+     */
+    @GetMapping("/admin/waiting-rooms")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<WaitingRoomDTO>> getWaitingRooms() {
+        return ResponseEntity.ok(waitingRoomService.getWaitingRooms());
+    }
+
+    /**
+     * Włącza poczekalnię dla seansu lub zmienia tempo wpuszczania
+     *
+     * PUT /api/admin/waiting-rooms/{screeningId}
+     * Tylko ADMIN
+     *
+     * @param screeningId - ID seansu
+     * @param settings - liczba osób wpuszczanych na sekundę
+     * @return stan poczekalni
+     */
+    @PutMapping("/admin/waiting-rooms/{screeningId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<WaitingRoomDTO> enableWaitingRoom(@PathVariable Long screeningId,
+                                                            @Valid @RequestBody WaitingRoomSettingsDTO settings) {
+        log.info("Włączanie poczekalni dla seansu ID: {}", screeningId);
+        return ResponseEntity.ok(waitingRoomService.enable(screeningId, settings.getAdmitPerSecond()));
+    }
+
+    /**
+     * Wyłącza poczekalnię seansu
+     *
+     * DELETE /api/admin/waiting-rooms/{screeningId}
+     * Tylko ADMIN
+     *
+     * @param screeningId - ID seansu
+     * @return 204 No Content
+     */
+    @DeleteMapping("/admin/waiting-rooms/{screeningId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Void> disableWaitingRoom(@PathVariable Long screeningId) {
+        log.info("Wyłączanie poczekalni dla seansu ID: {}", screeningId);
+        waitingRoomService.disable(screeningId);
+        return ResponseEntity.noContent().build();
+    }
+}
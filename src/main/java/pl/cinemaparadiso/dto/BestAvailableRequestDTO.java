@@ -0,0 +1,39 @@
+package pl.cinemaparadiso.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import pl.cinemaparadiso.enums.SeatType;
+import pl.cinemaparadiso.enums.TicketType;
+
+import java.util.List;
+
+/**
+ * DTO do automatycznego wyboru najlepszych sąsiadujących miejsc i ich rezerwacji
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BestAvailableRequestDTO {
+    
+    @NotNull(message = "ID seansu jest wymagane")
+    @Positive(message = "ID seansu musi być dodatnie")
+    private Long screeningId;
+    
+    @NotNull(message = "Liczba osób jest wymagana")
+    @Min(value = 1, message = "Liczba osób musi wynosić co najmniej 1")
+    @Max(value = 10, message = "Można zarezerwować maksymalnie 10 miejsc obok siebie")
+    private Integer partySize;
+    
+    private SeatType seatType; // Opcjonalnie - tylko miejsca tego typu (STANDARD lub VIP)
+    
+    private Integer preferredRow; // Opcjonalnie - numer preferowanego rzędu
+    
+    private List<TicketType> ticketTypes; // Opcjonalnie - typ biletu dla każdej osoby (domyślnie NORMAL)
+}
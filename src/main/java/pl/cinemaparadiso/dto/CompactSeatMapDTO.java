@@ -0,0 +1,28 @@
+package pl.cinemaparadiso.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Zwarta postać planu sali dla seansu (GET .../seats?format=compact)
+ * 
+ * Każdy rząd to maska bitowa zapisana szesnastkowo: jedna cyfra na 4 kolejne miejsca
+ * rzędu (w kolejności z RoomLayoutDTO), najstarszy bit cyfry = pierwsze z tych miejsc.
+ * Bit 1 oznacza miejsce wolne (niezarezerwowane), 0 - zajęte.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CompactSeatMapDTO {
+    
+    private Long screeningId;
+    private Long roomId;
+    private String layoutVersion; // Wersja układu sali, z którym trzeba połączyć maski
+    private Long version; // Wersja zajętości miejsc
+    private List<String> rows;
+}
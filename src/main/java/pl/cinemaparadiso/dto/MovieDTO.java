@@ -14,7 +14,7 @@ import java.time.LocalDate;
  * DTO zawiera tylko te pola, które chcemy pokazać w API (bez wrażliwych danych)
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class MovieDTO {
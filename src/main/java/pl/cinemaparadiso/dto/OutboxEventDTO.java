@@ -0,0 +1,27 @@
+package pl.cinemaparadiso.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import pl.cinemaparadiso.enums.OutboxEventType;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO zdarzenia skrzynki nadawczej (lista martwych zdarzeń w panelu admina)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEventDTO {
+    
+    private Long id;
+    private OutboxEventType eventType;
+    private Long reservationId;
+    private Integer attempts; // Liczba nieudanych prób dostarczenia
+    private String lastError; // Błąd ostatniej próby
+    private LocalDateTime createdAt;
+    private LocalDateTime failedAt; // Kiedy zdarzenie zostało uznane za martwe
+}
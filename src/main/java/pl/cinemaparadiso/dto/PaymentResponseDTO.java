@@ -5,12 +5,15 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import pl.cinemaparadiso.enums.PaymentMethod;
+import pl.cinemaparadiso.enums.ReservationStatus;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 /**
  * DTO dla odpowiedzi z płatności
+ * 
+ * success = true tylko dla opłaconej rezerwacji; w trakcie przetwarzania reservationStatus = PAYMENT_PROCESSING
  */
 @Data
 @Builder
@@ -20,6 +23,7 @@ public class PaymentResponseDTO {
     
     private Long reservationId;
     private boolean success;
+    private ReservationStatus reservationStatus;
     private String message;
     private PaymentMethod paymentMethod;
     private String transactionId;
@@ -0,0 +1,27 @@
+package pl.cinemaparadiso.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import pl.cinemaparadiso.enums.ReconciliationIssue;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * DTO podsumowania uzgadniania płatności za jeden dzień
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconciliationReportDTO {
+    
+    private LocalDate day;
+    private Long paymentsChecked; // Płatności przez bramki zapisane w systemie
+    private Long settlementEntries; // Transakcje z plików rozliczeniowych bramek
+    private Long matched; // Zgodne pary płatność - transakcja
+    private Map<ReconciliationIssue, Long> discrepancies; // Liczba rozbieżności według rodzaju
+    private String reportFile; // Ścieżka raportu CSV z listą rozbieżności
+}
@@ -28,6 +28,7 @@ public class ReservationDTO {
     private String roomNumber;
     private LocalDateTime screeningStartTime;
     private LocalDateTime createdAt;
+    private LocalDateTime expiresAt; // Termin płatności dla nieopłaconej rezerwacji
     private ReservationStatus status;
     private BigDecimal totalPrice;
     private List<ReservationSeatDTO> seats; // Lista zarezerwowanych miejsc
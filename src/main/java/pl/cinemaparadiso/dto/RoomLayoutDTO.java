@@ -0,0 +1,35 @@
+package pl.cinemaparadiso.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO statycznego układu sali (wspólny dla wszystkich seansów w sali, długo cache'owany)
+ * Kolejność miejsc w rzędzie odpowiada kolejności bitów w CompactSeatMapDTO
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RoomLayoutDTO {
+    
+    private Long roomId;
+    private String layoutVersion; // Skrót układu - zmienia się przy zmianie miejsc (ETag)
+    private List<Row> rows;
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Row {
+        private Integer rowNumber;
+        private List<Long> seatIds;
+        private List<Integer> seatNumbers;
+        private String seatTypes; // Jeden znak na miejsce: S - STANDARD, V - VIP
+        private String enabled; // Jeden znak na miejsce: 1 - włączone, 0 - zablokowane
+    }
+}
@@ -0,0 +1,39 @@
+package pl.cinemaparadiso.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import pl.cinemaparadiso.enums.SalesDimension;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * DTO wyniku zapytania analitycznego o sprzedaż
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesQueryResultDTO {
+    
+    private List<SalesDimension> groupBy;
+    private List<Group> groups; // Posortowane malejąco po przychodzie
+    private Long rowsScanned; // Liczba przejrzanych sprzedanych miejsc
+    private Long elapsedMicros; // Czas skanowania
+    private Boolean complete; // false, dopóki magazyn jest ładowany po starcie aplikacji
+    
+    /**
+     * Jedna grupa wyniku
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Group {
+        private List<String> keys; // Wartości wymiarów w kolejności groupBy
+        private Long seats;
+        private BigDecimal revenue;
+    }
+}
@@ -0,0 +1,23 @@
+package pl.cinemaparadiso.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO zmiany zajętości miejsc wysyłanej w strumieniu SSE (zdarzenie "delta")
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SeatMapDeltaDTO {
+    
+    private Long screeningId;
+    private Long version;
+    private List<Long> takenSeatIds; // Miejsca właśnie zajęte
+    private List<Long> releasedSeatIds; // Miejsca właśnie zwolnione
+}
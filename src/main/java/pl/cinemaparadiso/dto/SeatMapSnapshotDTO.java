@@ -0,0 +1,22 @@
+package pl.cinemaparadiso.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO pełnego planu sali wysyłanego w strumieniu SSE (zdarzenie "snapshot")
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SeatMapSnapshotDTO {
+    
+    private Long screeningId;
+    private Long version; // Wersja stanu - późniejsze zmiany (delta) mają wyższą wersję
+    private List<SeatAvailabilityDTO> seats;
+}
@@ -0,0 +1,22 @@
+package pl.cinemaparadiso.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO stanu poczekalni seansu (panel administratora)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WaitingRoomDTO {
+    
+    private Long screeningId;
+    private Integer admitPerSecond;
+    private Long issuedTokens; // Ile osób weszło do kolejki
+    private Long admittedTokens; // Ile osób zostało wpuszczonych
+    private Long waiting; // Ile osób nadal czeka
+}
@@ -0,0 +1,24 @@
+package pl.cinemaparadiso.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO ustawień poczekalni seansu (panel administratora)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WaitingRoomSettingsDTO {
+    
+    @NotNull(message = "Liczba wpuszczanych osób na sekundę jest wymagana")
+    @Min(value = 1, message = "Trzeba wpuszczać co najmniej 1 osobę na sekundę")
+    @Max(value = 10000, message = "Można wpuszczać maksymalnie 10000 osób na sekundę")
+    private Integer admitPerSecond;
+}
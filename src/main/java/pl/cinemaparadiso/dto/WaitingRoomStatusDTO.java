@@ -0,0 +1,22 @@
+package pl.cinemaparadiso.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO stanu użytkownika w poczekalni seansu
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WaitingRoomStatusDTO {
+    
+    private Long screeningId;
+    private String token; // Token kolejki - wysyłany w nagłówku X-Queue-Token (null gdy poczekalnia wyłączona)
+    private Boolean admitted; // Czy użytkownik może już rezerwować
+    private Long position; // Liczba osób przed użytkownikiem (0 gdy wpuszczony)
+    private Long estimatedWaitSeconds;
+}
@@ -0,0 +1,48 @@
+package pl.cinemaparadiso.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Dzienny agregat sprzedaży dla jednego filmu i metody płatności
+ * Wiersze są aktualizowane wyłącznie atomowym SQL w DailySalesRepository
+ */
+@Entity
+@Table(name = "daily_sales",
+        uniqueConstraints = @UniqueConstraint(name = "uk_daily_sales_bucket",
+                columnNames = {"sales_date", "payment_method", "movie_id"}))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailySales {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "sales_date", nullable = false)
+    private LocalDate salesDate;
+
+    // Nazwa PaymentMethod (UNKNOWN dla starych rezerwacji bez metody płatności)
+    @Column(name = "payment_method", nullable = false, length = 50)
+    private String paymentMethod;
+
+    @Column(name = "movie_id", nullable = false)
+    private Long movieId;
+
+    @Column(name = "paid_reservations", nullable = false)
+    private Long paidReservations;
+
+    @Column(name = "paid_seats", nullable = false)
+    private Long paidSeats;
+
+    @Column(nullable = false, precision = 12, scale = 2)
+    private BigDecimal revenue;
+}
@@ -6,6 +6,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.envers.Audited;
+import org.hibernate.envers.NotAudited;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
@@ -44,6 +45,22 @@ public class Movie {
     @Column(name = "poster_path")
     private String posterPath;
 
+    // Agregaty ocen - zmieniane tylko atomowym UPDATE (MovieRepository.applyRatingChange), nigdy przez zapis encji
+    @NotAudited
+    @Column(name = "rating_sum", nullable = false, insertable = false, updatable = false)
+    @Builder.Default
+    private Long ratingSum = 0L;
+
+    @NotAudited
+    @Column(name = "rating_count", nullable = false, insertable = false, updatable = false)
+    @Builder.Default
+    private Long ratingCount = 0L;
+
+    // Średnia ocena (null, jeśli film nie ma ocen)
+    @NotAudited
+    @Column(name = "average_rating", insertable = false, updatable = false)
+    private Double averageRating;
+
     @OneToMany(mappedBy = "movie", cascade = CascadeType.ALL, orphanRemoval = true)
     @Builder.Default
     private List<Screening> screenings = new ArrayList<>();
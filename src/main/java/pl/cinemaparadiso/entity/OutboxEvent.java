@@ -0,0 +1,68 @@
+package pl.cinemaparadiso.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import pl.cinemaparadiso.enums.OutboxEventType;
+
+import java.time.LocalDateTime;
+
+/**
+ * Zdarzenie w skrzynce nadawczej - czeka na dostarczenie przez OutboxRelay
+ */
+@Entity
+@Table(name = "outbox_events")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false, length = 50)
+    private OutboxEventType eventType;
+
+    // ID rezerwacji, której dotyczy zdarzenie
+    @Column(name = "aggregate_id", nullable = false)
+    private Long aggregateId;
+
+    // Treść zdarzenia (ReservationDomainEvent) w JSON
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(name = "published_at")
+    private LocalDateTime publishedAt;
+
+    // Ustawiane po wyczerpaniu limitu prób - martwe zdarzenie nie wstrzymuje kolejnych zdarzeń rezerwacji
+    @Column(name = "failed_at")
+    private LocalDateTime failedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+        if (nextAttemptAt == null) {
+            nextAttemptAt = createdAt;
+        }
+    }
+}
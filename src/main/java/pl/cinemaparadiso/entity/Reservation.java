@@ -43,6 +43,12 @@ public class Reservation {
     @Builder.Default
     private ReservationStatus status = ReservationStatus.PENDING_PAYMENT;
 
+    /**
+     * Termin płatności - po nim nieopłacona rezerwacja jest anulowana (ReservationExpiryService)
+     */
+    @Column(name = "expires_at")
+    private LocalDateTime expiresAt;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "payment_method")
     private PaymentMethod paymentMethod;
@@ -68,6 +74,16 @@ public class Reservation {
     @Builder.Default
     private List<ReservationSeat> reservationSeats = new ArrayList<>();
 
+    /**
+     * Zmienia status rezerwacji i synchronizuje flagę is_active jej miejsc
+     * (aktywne miejsca są chronione częściowym indeksem unikalnym w reservation_seats)
+     */
+    public void changeStatus(ReservationStatus newStatus) {
+        this.status = newStatus;
+        boolean active = newStatus.holdsSeats();
+        reservationSeats.forEach(rs -> rs.setIsActive(active));
+    }
+
     public BigDecimal getTotalPrice() {
         return reservationSeats.stream()
                 .map(ReservationSeat::getPrice)
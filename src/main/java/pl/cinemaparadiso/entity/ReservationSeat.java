@@ -31,6 +31,16 @@ public class ReservationSeat {
     @JoinColumn(name = "seat_id", nullable = false)
     private Seat seat;
 
+    // Zdenormalizowany seans rezerwacji - częściowy indeks unikalny (screening_id, seat_id) WHERE is_active
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "screening_id", nullable = false)
+    private Screening screening;
+
+    // Czy miejsce jest zajęte (rezerwacja w statusie PAID, PENDING_PAYMENT lub PAYMENT_PROCESSING)
+    @Column(name = "is_active", nullable = false)
+    @Builder.Default
+    private Boolean isActive = true;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private TicketType ticketType;
@@ -0,0 +1,14 @@
+package pl.cinemaparadiso.enums;
+
+/**
+ * Typ zdarzenia domenowego zapisywanego w skrzynce nadawczej (outbox_events)
+ * 
+ * RESERVATION_CREATED - utworzono rezerwację
+ * PAYMENT_COMPLETED - rezerwacja została opłacona
+ * RESERVATION_CANCELLED - użytkownik anulował rezerwację
+ */
+public enum OutboxEventType {
+    RESERVATION_CREATED,
+    PAYMENT_COMPLETED,
+    RESERVATION_CANCELLED
+}
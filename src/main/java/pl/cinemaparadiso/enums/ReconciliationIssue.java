@@ -0,0 +1,20 @@
+package pl.cinemaparadiso.enums;
+
+/**
+ * Rodzaj rozbieżności wykrytej przy uzgadnianiu płatności
+ * 
+ * MISSING_IN_SETTLEMENT - rezerwacja opłacona w systemie, a bramka nie rozliczyła transakcji
+ * MISSING_IN_SYSTEM - bramka obciążyła klienta, a żadna rezerwacja nie jest opłacona tą transakcją
+ * STATUS_MISMATCH - transakcja rozliczona, ale rezerwacja nie ma statusu PAID (np. anulowana - do zwrotu)
+ * AMOUNT_MISMATCH - kwota rozliczona przez bramkę różni się od ceny rezerwacji
+ * MISSING_TRANSACTION_ID - rezerwacja opłacona przez bramkę bez zapisanego ID transakcji
+ * STALE_PAYMENT - rezerwacja zawieszona w PAYMENT_FAILED / PAYMENT_PROCESSING po terminie wygaśnięcia
+ */
+public enum ReconciliationIssue {
+    MISSING_IN_SETTLEMENT,
+    MISSING_IN_SYSTEM,
+    STATUS_MISMATCH,
+    AMOUNT_MISMATCH,
+    MISSING_TRANSACTION_ID,
+    STALE_PAYMENT
+}
@@ -4,14 +4,30 @@ package pl.cinemaparadiso.enums;
  * Status rezerwacji
  * 
  * PENDING_PAYMENT - rezerwacja oczekuje na płatność
+ * PAYMENT_PROCESSING - płatność została przekazana do bramki i czeka na wynik
  * PAID - rezerwacja opłacona (aktywna)
  * CANCELLED - anulowana rezerwacja
  * PAYMENT_FAILED - płatność nie powiodła się
  */
 public enum ReservationStatus {
     PENDING_PAYMENT,
+    PAYMENT_PROCESSING,
     PAID,
     CANCELLED,
-    PAYMENT_FAILED
+    PAYMENT_FAILED;
+    
+    /**
+     * Czy rezerwacja w tym statusie blokuje swoje miejsca na seansie
+     * (zgodnie z flagą is_active w reservation_seats: PENDING_PAYMENT, PAYMENT_PROCESSING i PAID)
+     */
+    public boolean holdsSeats() {
+        return this == PENDING_PAYMENT || this == PAYMENT_PROCESSING || this == PAID;
+    }
+    
+    /**
+     * Czy rezerwację w tym statusie można (ponownie) opłacić
+     */
+    public boolean awaitsPayment() {
+        return this == PENDING_PAYMENT || this == PAYMENT_FAILED;
+    }
 }
-
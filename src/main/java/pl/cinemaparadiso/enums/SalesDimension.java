@@ -0,0 +1,20 @@
+package pl.cinemaparadiso.enums;
+
+/**
+ * Wymiar, według którego można grupować sprzedaż w zapytaniach analitycznych
+ * 
+ * MOVIE - film
+ * ROOM - sala
+ * WEEKDAY - dzień tygodnia seansu
+ * HOUR - godzina rozpoczęcia seansu
+ * TICKET_TYPE - typ biletu
+ * PAYMENT_METHOD - metoda płatności
+ */
+public enum SalesDimension {
+    MOVIE,
+    ROOM,
+    WEEKDAY,
+    HOUR,
+    TICKET_TYPE,
+    PAYMENT_METHOD
+}
@@ -0,0 +1,16 @@
+package pl.cinemaparadiso.exception;
+
+/**
+ * Wyjątek rzucany gdy kolejka rezerwacji seansu nie obsłużyła żądania w wyznaczonym czasie
+ * (np. wcześniejsza operacja czeka na blokadę wiersza w bazie)
+ */
+public class BookingBusyException extends RuntimeException {
+    
+    public BookingBusyException(String message) {
+        super(message);
+    }
+    
+    public BookingBusyException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
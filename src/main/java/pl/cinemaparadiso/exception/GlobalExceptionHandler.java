@@ -180,6 +180,70 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
     }
     
+    /**
+     * Obsługuje IdempotencyConflictException
+     * Zwraca HTTP 409 Conflict
+     */
+    @ExceptionHandler(IdempotencyConflictException.class)
+    public ResponseEntity<ErrorResponse> handleIdempotencyConflict(IdempotencyConflictException ex) {
+        ErrorResponse error = ErrorResponse.builder()
+                .timestamp(LocalDateTime.now())
+                .status(HttpStatus.CONFLICT.value())
+                .error("Request In Progress")
+                .message(ex.getMessage())
+                .build();
+        
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+    }
+    
+    /**
+     * Obsługuje WaitingRoomException
+     * Zwraca HTTP 429 Too Many Requests (klient ma czekać w poczekalni seansu)
+     */
+    @ExceptionHandler(WaitingRoomException.class)
+    public ResponseEntity<ErrorResponse> handleWaitingRoom(WaitingRoomException ex) {
+        ErrorResponse error = ErrorResponse.builder()
+                .timestamp(LocalDateTime.now())
+                .status(HttpStatus.TOO_MANY_REQUESTS.value())
+                .error("Waiting Room")
+                .message(ex.getMessage())
+                .build();
+        
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(error);
+    }
+    
+    /**
+     * Obsługuje PaymentGatewayException
+     * Zwraca HTTP 503 Service Unavailable (bramka wybranej metody płatności jest chwilowo niedostępna)
+     */
+    @ExceptionHandler(PaymentGatewayException.class)
+    public ResponseEntity<ErrorResponse> handlePaymentGateway(PaymentGatewayException ex) {
+        ErrorResponse error = ErrorResponse.builder()
+                .timestamp(LocalDateTime.now())
+                .status(HttpStatus.SERVICE_UNAVAILABLE.value())
+                .error("Payment Gateway Unavailable")
+                .message(ex.getMessage())
+                .build();
+        
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(error);
+    }
+    
+    /**
+     * Obsługuje BookingBusyException
+     * Zwraca HTTP 503 Service Unavailable (kolejka rezerwacji seansu jest chwilowo przeciążona)
+     */
+    @ExceptionHandler(BookingBusyException.class)
+    public ResponseEntity<ErrorResponse> handleBookingBusy(BookingBusyException ex) {
+        ErrorResponse error = ErrorResponse.builder()
+                .timestamp(LocalDateTime.now())
+                .status(HttpStatus.SERVICE_UNAVAILABLE.value())
+                .error("Booking Busy")
+                .message(ex.getMessage())
+                .build();
+        
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(error);
+    }
+    
     /**
      * Obsługuje IllegalArgumentException
      * Zwraca HTTP 400 Bad Request
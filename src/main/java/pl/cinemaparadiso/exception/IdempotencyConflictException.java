@@ -0,0 +1,11 @@
+package pl.cinemaparadiso.exception;
+
+/**
+ * Wyjątek rzucany gdy żądanie z tym samym kluczem Idempotency-Key jest nadal przetwarzane
+ */
+public class IdempotencyConflictException extends RuntimeException {
+    
+    public IdempotencyConflictException(String message) {
+        super(message);
+    }
+}
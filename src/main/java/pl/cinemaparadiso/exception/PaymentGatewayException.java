@@ -0,0 +1,16 @@
+package pl.cinemaparadiso.exception;
+
+/**
+ * Wyjątek rzucany gdy bramka płatności jest niedostępna (przekroczony czas, przeciążenie, otwarty bezpiecznik)
+ * Odrzucenie płatności przez bramkę nie jest błędem - to zwykły wynik płatności
+ */
+public class PaymentGatewayException extends RuntimeException {
+    
+    public PaymentGatewayException(String message) {
+        super(message);
+    }
+    
+    public PaymentGatewayException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
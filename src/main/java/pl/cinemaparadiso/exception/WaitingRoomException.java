@@ -0,0 +1,11 @@
+package pl.cinemaparadiso.exception;
+
+/**
+ * Wyjątek rzucany gdy użytkownik nie został jeszcze wpuszczony z poczekalni seansu
+ */
+public class WaitingRoomException extends RuntimeException {
+    
+    public WaitingRoomException(String message) {
+        super(message);
+    }
+}
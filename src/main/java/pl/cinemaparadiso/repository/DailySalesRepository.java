@@ -0,0 +1,139 @@
+package pl.cinemaparadiso.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import pl.cinemaparadiso.entity.DailySales;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface DailySalesRepository extends JpaRepository<DailySales, Long> {
+    
+    /**
+     * Wlicza opłaconą rezerwację do agregatu jej dnia, metody płatności i filmu
+     * Wpis w daily_sales_entries powstaje tylko raz (ON CONFLICT DO NOTHING), więc ponowne
+     * wywołanie dla tej samej rezerwacji nic nie zmienia; rezerwacja już nieopłacona jest pomijana
+     *
+     * @return 1 jeśli rezerwacja została wliczona, 0 w przeciwnym razie
+     */
+    @Modifying
+    @Query(value = "WITH entry AS (" +
+                   "  INSERT INTO daily_sales_entries (reservation_id, sales_date, payment_method, movie_id, seats, revenue) " +
+                   "  SELECT r.id, CAST(COALESCE(r.payment_date, r.created_at) AS DATE), " +
+                   "         COALESCE(r.payment_method, 'UNKNOWN'), s.movie_id, COUNT(rs.id), COALESCE(SUM(rs.price), 0) " +
+                   "  FROM reservations r " +
+                   "  JOIN screenings s ON s.id = r.screening_id " +
+                   "  LEFT JOIN reservation_seats rs ON rs.reservation_id = r.id " +
+                   "  WHERE r.id = :reservationId AND r.status = 'PAID' " +
+                   "  GROUP BY r.id, s.movie_id " +
+                   "  ON CONFLICT (reservation_id) DO NOTHING " +
+                   "  RETURNING sales_date, payment_method, movie_id, seats, revenue" +
+                   ") " +
+                   "INSERT INTO daily_sales (sales_date, payment_method, movie_id, paid_reservations, paid_seats, revenue) " +
+                   "SELECT sales_date, payment_method, movie_id, 1, seats, revenue FROM entry " +
+                   "ON CONFLICT (sales_date, payment_method, movie_id) DO UPDATE SET " +
+                   "  paid_reservations = daily_sales.paid_reservations + EXCLUDED.paid_reservations, " +
+                   "  paid_seats = daily_sales.paid_seats + EXCLUDED.paid_seats, " +
+                   "  revenue = daily_sales.revenue + EXCLUDED.revenue", nativeQuery = true)
+    int addPaidReservation(@Param("reservationId") Long reservationId);
+    
+    /**
+     * Odejmuje z agregatu rezerwację, która przestała być opłacona (anulowanie)
+     * Wystarczy usunąć wpis - wyzwalacz trg_daily_sales_entries_subtract odejmuje z daily_sales
+     * dokładnie wartości zapisane przy wliczeniu, niezależnie od późniejszych zmian rezerwacji
+     *
+     * @return 1 jeśli rezerwacja została odjęta, 0 jeśli nie była wliczona
+     */
+    @Modifying
+    @Query(value = "DELETE FROM daily_sales_entries e " +
+                   "USING reservations r " +
+                   "WHERE e.reservation_id = :reservationId AND r.id = e.reservation_id AND r.status <> 'PAID'",
+           nativeQuery = true)
+    int removeCancelledReservation(@Param("reservationId") Long reservationId);
+    
+    /**
+     * Blokuje agregaty na czas przebudowy - równoległe wliczanie rezerwacji czeka na jej koniec
+     */
+    @Modifying
+    @Query(value = "LOCK TABLE daily_sales_entries, daily_sales IN EXCLUSIVE MODE", nativeQuery = true)
+    void lockForRebuild();
+    
+    @Modifying
+    @Query(value = "DELETE FROM daily_sales_entries", nativeQuery = true)
+    int deleteAllEntries();
+    
+    @Modifying
+    @Query(value = "DELETE FROM daily_sales", nativeQuery = true)
+    int deleteAllSales();
+    
+    /**
+     * Wylicza wpisy od nowa ze wszystkich opłaconych rezerwacji
+     */
+    @Modifying
+    @Query(value = "INSERT INTO daily_sales_entries (reservation_id, sales_date, payment_method, movie_id, seats, revenue) " +
+                   "SELECT r.id, CAST(COALESCE(r.payment_date, r.created_at) AS DATE), " +
+                   "       COALESCE(r.payment_method, 'UNKNOWN'), s.movie_id, COUNT(rs.id), COALESCE(SUM(rs.price), 0) " +
+                   "FROM reservations r " +
+                   "JOIN screenings s ON s.id = r.screening_id " +
+                   "LEFT JOIN reservation_seats rs ON rs.reservation_id = r.id " +
+                   "WHERE r.status = 'PAID' " +
+                   "GROUP BY r.id, s.movie_id", nativeQuery = true)
+    int insertEntriesFromReservations();
+    
+    @Modifying
+    @Query(value = "INSERT INTO daily_sales (sales_date, payment_method, movie_id, paid_reservations, paid_seats, revenue) " +
+                   "SELECT sales_date, payment_method, movie_id, COUNT(*), SUM(seats), SUM(revenue) " +
+                   "FROM daily_sales_entries " +
+                   "GROUP BY sales_date, payment_method, movie_id", nativeQuery = true)
+    int insertSalesFromEntries();
+    
+    @Query("SELECT COALESCE(SUM(d.revenue), 0) FROM DailySales d")
+    BigDecimal sumRevenue();
+    
+    @Query("SELECT COALESCE(SUM(d.revenue), 0) FROM DailySales d WHERE d.salesDate >= :from")
+    BigDecimal sumRevenueSince(@Param("from") LocalDate from);
+    
+    /**
+     * Sprzedaż według dnia (bucket = yyyy-MM-dd) w przedziale [from, to)
+     */
+    @Query(value = "SELECT CAST(sales_date AS TEXT) AS bucket, SUM(revenue) AS revenue, " +
+                   "SUM(paid_reservations) AS \"paidReservations\", SUM(paid_seats) AS \"paidSeats\" " +
+                   "FROM daily_sales " +
+                   "WHERE sales_date >= :from AND sales_date < :to " +
+                   "GROUP BY sales_date", nativeQuery = true)
+    List<SalesBucket> sumByDay(@Param("from") LocalDate from, @Param("to") LocalDate to);
+    
+    /**
+     * Sprzedaż według miesiąca (bucket = yyyy-MM) od podanego dnia
+     */
+    @Query(value = "SELECT to_char(date_trunc('month', sales_date), 'YYYY-MM') AS bucket, SUM(revenue) AS revenue, " +
+                   "SUM(paid_reservations) AS \"paidReservations\", SUM(paid_seats) AS \"paidSeats\" " +
+                   "FROM daily_sales " +
+                   "WHERE sales_date >= :from " +
+                   "GROUP BY date_trunc('month', sales_date)", nativeQuery = true)
+    List<SalesBucket> sumByMonth(@Param("from") LocalDate from);
+    
+    /**
+     * Sprzedaż według metody płatności (bucket = nazwa PaymentMethod)
+     */
+    @Query(value = "SELECT payment_method AS bucket, SUM(revenue) AS revenue, " +
+                   "SUM(paid_reservations) AS \"paidReservations\", SUM(paid_seats) AS \"paidSeats\" " +
+                   "FROM daily_sales " +
+                   "GROUP BY payment_method", nativeQuery = true)
+    List<SalesBucket> sumByPaymentMethod();
+    
+    /**
+     * Zsumowana sprzedaż dla jednego przedziału (dnia, miesiąca lub metody płatności)
+     */
+    interface SalesBucket {
+        String getBucket();
+        BigDecimal getRevenue();
+        Long getPaidReservations();
+        Long getPaidSeats();
+    }
+}
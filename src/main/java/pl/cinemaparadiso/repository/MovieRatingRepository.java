@@ -1,11 +1,15 @@
 package pl.cinemaparadiso.repository;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import pl.cinemaparadiso.entity.MovieRating;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -19,6 +23,21 @@ public interface MovieRatingRepository extends JpaRepository<MovieRating, Long>
      */
     Optional<MovieRating> findByUserIdAndMovieId(Long userId, Long movieId);
     
+    /**
+     * Znajduje ocenę użytkownika dla danego filmu z blokadą wiersza
+     * Zmiana oceny odejmuje starą wartość od agregatu filmu, więc nie może się przeplatać z inną zmianą
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT mr FROM MovieRating mr WHERE mr.user.id = :userId AND mr.movie.id = :movieId")
+    Optional<MovieRating> findByUserIdAndMovieIdForUpdate(@Param("userId") Long userId, @Param("movieId") Long movieId);
+    
+    /**
+     * Zwraca pary (ID filmu, ocena) użytkownika dla podanych filmów - jedno zapytanie dla całej strony
+     */
+    @Query("SELECT mr.movie.id, mr.rating FROM MovieRating mr WHERE mr.user.id = :userId AND mr.movie.id IN :movieIds")
+    List<Object[]> findRatingsByUserIdAndMovieIds(@Param("userId") Long userId,
+                                                  @Param("movieIds") Collection<Long> movieIds);
+    
     /**
      * Sprawdza czy użytkownik już ocenił film
      */
@@ -36,6 +55,12 @@ public interface MovieRatingRepository extends JpaRepository<MovieRating, Long>
     @Query("SELECT COUNT(mr) FROM MovieRating mr WHERE mr.movie.id = :movieId")
     Long getRatingCountByMovieId(@Param("movieId") Long movieId);
     
+    /**
+     * Oblicza średnią ze wszystkich ocen w systemie (null, jeśli nie ma ocen)
+     */
+    @Query("SELECT AVG(mr.rating) FROM MovieRating mr")
+    Double getAverageRating();
+    
     /**
      * Liczy wszystkie oceny w systemie
      */
@@ -3,7 +3,9 @@ package pl.cinemaparadiso.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import pl.cinemaparadiso.entity.Movie;
 
@@ -28,22 +30,35 @@ import java.util.List;
 public interface MovieRepository extends JpaRepository<Movie, Long> {
     
     /**
-     * Wyszukuje filmy po tytule (case-insensitive, częściowe dopasowanie)
-     * Spring Data JPA automatycznie tworzy implementację na podstawie nazwy metody
+     * Wyszukiwanie pełnotekstowe po tytule, reżyserze, gatunku i opisie (indeks GIN idx_movies_search_vector)
+     * Wyniki od najlepiej dopasowanych - trafienie w tytule waży więcej niż w opisie
      * 
-     * @param title - tytuł do wyszukania
-     * @return lista filmów pasujących do tytułu
+     * @param query - zapytanie tsquery (np. "incep:* & nolan:*"), budowane z frazy w MovieService
+     * @param pageable - parametry paginacji (bez sortowania - kolejność wyznacza ranking)
+     * @return strona z filmami
      */
-    List<Movie> findByTitleContainingIgnoreCase(String title);
+    @Query(value = "SELECT m.* FROM movies m " +
+                   "WHERE m.search_vector @@ to_tsquery('simple', :query) " +
+                   "ORDER BY ts_rank(m.search_vector, to_tsquery('simple', :query)) DESC, m.id",
+           countQuery = "SELECT COUNT(*) FROM movies m WHERE m.search_vector @@ to_tsquery('simple', :query)",
+           nativeQuery = true)
+    Page<Movie> searchFullText(@Param("query") String query, Pageable pageable);
     
     /**
-     * Wyszukuje filmy po tytule z paginacją
+     * Wyszukiwanie pełnotekstowe z sortowaniem po ocenie
+     * Filmy bez ocen są traktowane jak najniżej oceniane (jak w sortowaniu katalogu po ocenie)
      * 
-     * @param title - tytuł do wyszukania
-     * @param pageable - parametry paginacji
+     * @param query - zapytanie tsquery
+     * @param sign - 1 dla sortowania malejącego, -1 dla rosnącego
+     * @param pageable - parametry paginacji (bez sortowania)
      * @return strona z filmami
      */
-    Page<Movie> findByTitleContainingIgnoreCase(String title, Pageable pageable);
+    @Query(value = "SELECT m.* FROM movies m " +
+                   "WHERE m.search_vector @@ to_tsquery('simple', :query) " +
+                   "ORDER BY COALESCE(m.average_rating, 0) * :sign DESC, m.rating_count * :sign DESC, m.id * :sign DESC",
+           countQuery = "SELECT COUNT(*) FROM movies m WHERE m.search_vector @@ to_tsquery('simple', :query)",
+           nativeQuery = true)
+    Page<Movie> searchFullTextSortedByRating(@Param("query") String query, @Param("sign") int sign, Pageable pageable);
     
     /**
      * Wyszukuje filmy po gatunku
@@ -91,15 +106,77 @@ public interface MovieRepository extends JpaRepository<Movie, Long> {
     /**
      * Pobiera najpopularniejsze filmy (sortowane po średniej ocenie, najwyższe najpierw)
      * Uwzględnia tylko filmy, które mają co najmniej jedną ocenę
+     * Używa zdenormalizowanych kolumn ocen i indeksu idx_movies_rating_sort (bez łączenia z movie_ratings)
      * 
      * @param pageable - parametry paginacji (użyj PageRequest.of(0, limit))
      * @return lista filmów
      */
     @Query("SELECT m FROM Movie m " +
-           "LEFT JOIN MovieRating mr ON mr.movie.id = m.id " +
-           "GROUP BY m.id " +
-           "HAVING COUNT(mr.id) > 0 " +
-           "ORDER BY AVG(mr.rating) DESC, COUNT(mr.id) DESC")
+           "WHERE m.ratingCount > 0 " +
+           "ORDER BY m.averageRating DESC NULLS LAST, m.ratingCount DESC, m.id DESC")
     List<Movie> findMostPopularMovies(Pageable pageable);
+    
+    /**
+     * Wszystkie filmy od najwyżej ocenianych (filmy bez ocen na końcu)
+     * Kolejność odpowiada indeksowi idx_movies_rating_sort
+     * 
+     * @param pageable - parametry paginacji (bez sortowania - kolejność jest w zapytaniu)
+     * @return strona z filmami
+     */
+    @Query("SELECT m FROM Movie m " +
+           "ORDER BY m.averageRating DESC NULLS LAST, m.ratingCount DESC, m.id DESC")
+    Page<Movie> findAllOrderByRatingDesc(Pageable pageable);
+    
+    /**
+     * Wszystkie filmy od najniżej ocenianych (filmy bez ocen na początku)
+     * Skan wsteczny indeksu idx_movies_rating_sort
+     * 
+     * @param pageable - parametry paginacji (bez sortowania - kolejność jest w zapytaniu)
+     * @return strona z filmami
+     */
+    @Query("SELECT m FROM Movie m " +
+           "ORDER BY m.averageRating ASC NULLS FIRST, m.ratingCount ASC, m.id ASC")
+    Page<Movie> findAllOrderByRatingAsc(Pageable pageable);
+    
+    /**
+     * Filmy danego gatunku od najwyżej ocenianych (filmy bez ocen na końcu)
+     * 
+     * @param genre - gatunek filmu
+     * @param pageable - parametry paginacji (bez sortowania - kolejność jest w zapytaniu)
+     * @return strona z filmami
+     */
+    @Query("SELECT m FROM Movie m WHERE m.genre = :genre " +
+           "ORDER BY m.averageRating DESC NULLS LAST, m.ratingCount DESC, m.id DESC")
+    Page<Movie> findByGenreOrderByRatingDesc(@Param("genre") String genre, Pageable pageable);
+    
+    /**
+     * Filmy danego gatunku od najniżej ocenianych (filmy bez ocen na początku)
+     * 
+     * @param genre - gatunek filmu
+     * @param pageable - parametry paginacji (bez sortowania - kolejność jest w zapytaniu)
+     * @return strona z filmami
+     */
+    @Query("SELECT m FROM Movie m WHERE m.genre = :genre " +
+           "ORDER BY m.averageRating ASC NULLS FIRST, m.ratingCount ASC, m.id ASC")
+    Page<Movie> findByGenreOrderByRatingAsc(@Param("genre") String genre, Pageable pageable);
+    
+    /**
+     * Atomowo zmienia agregaty ocen filmu o podane różnice (suma i liczba ocen) i wylicza nową średnią
+     * Pojedynczy UPDATE - równoległe oceny tego samego filmu nie gubią się nawzajem
+     * 
+     * @param movieId - ID filmu
+     * @param sumDelta - zmiana sumy ocen (nowa ocena albo różnica przy zmianie oceny)
+     * @param countDelta - zmiana liczby ocen (1 dla nowej oceny, 0 przy zmianie)
+     * @return liczba zmienionych wierszy
+     */
+    @Modifying
+    @Query(value = "UPDATE movies SET " +
+                   "rating_sum = rating_sum + :sumDelta, " +
+                   "rating_count = rating_count + :countDelta, " +
+                   "average_rating = CASE WHEN rating_count + :countDelta > 0 " +
+                   "THEN CAST(rating_sum + :sumDelta AS DOUBLE PRECISION) / (rating_count + :countDelta) END " +
+                   "WHERE id = :movieId", nativeQuery = true)
+    int applyRatingChange(@Param("movieId") Long movieId,
+                          @Param("sumDelta") long sumDelta,
+                          @Param("countDelta") long countDelta);
 }
-
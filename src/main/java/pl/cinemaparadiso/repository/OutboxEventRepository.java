@@ -0,0 +1,53 @@
+package pl.cinemaparadiso.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import pl.cinemaparadiso.entity.OutboxEvent;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+    
+    /**
+     * Blokuje paczkę zdarzeń gotowych do dostarczenia (najstarsze najpierw)
+     * SKIP LOCKED - kilka instancji aplikacji może opróżniać skrzynkę równolegle bez czekania na siebie
+     * 
+     * Bierze tylko najstarsze niedostarczone zdarzenie każdej rezerwacji - kolejne czekają, aż wcześniejsze
+     * zostanie dostarczone (także gdy czeka na ponowienie albo jest zablokowane przez inną instancję),
+     * więc słuchacze dostają zdarzenia rezerwacji zawsze w kolejności zapisu
+     * Martwe zdarzenia (failed_at) nie są pobierane i nie wstrzymują kolejnych
+     */
+    @Query(value = "SELECT * FROM outbox_events e " +
+                   "WHERE e.published_at IS NULL " +
+                   "AND e.failed_at IS NULL " +
+                   "AND e.next_attempt_at <= :now " +
+                   "AND NOT EXISTS (SELECT 1 FROM outbox_events earlier " +
+                   "WHERE earlier.aggregate_id = e.aggregate_id " +
+                   "AND earlier.published_at IS NULL " +
+                   "AND earlier.failed_at IS NULL " +
+                   "AND earlier.id < e.id) " +
+                   "ORDER BY id " +
+                   "LIMIT :limit " +
+                   "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<OutboxEvent> lockNextBatch(@Param("now") LocalDateTime now,
+                                    @Param("limit") int limit);
+    
+    /**
+     * Martwe zdarzenia - niedostarczone po wyczerpaniu limitu prób (najstarsze najpierw)
+     */
+    List<OutboxEvent> findByFailedAtIsNotNullAndPublishedAtIsNullOrderById();
+    
+    /**
+     * Usuwa dostarczone zdarzenia starsze niż podana data
+     */
+    @Modifying
+    @Query("DELETE FROM OutboxEvent e WHERE e.publishedAt IS NOT NULL AND e.publishedAt < :before")
+    int deletePublishedBefore(@Param("before") LocalDateTime before);
+    
+    long countByPublishedAtIsNull();
+}
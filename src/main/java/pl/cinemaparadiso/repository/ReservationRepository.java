@@ -1,16 +1,25 @@
 package pl.cinemaparadiso.repository;
 
 import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import pl.cinemaparadiso.entity.Reservation;
+import pl.cinemaparadiso.enums.PaymentMethod;
+import pl.cinemaparadiso.enums.ReservationStatus;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ReservationRepository extends JpaRepository<Reservation, Long> {
@@ -26,6 +35,9 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
     @Query("SELECT r FROM Reservation r WHERE r.id = :id")
     Optional<Reservation> findByIdWithLock(@Param("id") Long id);
     
+    @Query("SELECT r.screening.id FROM Reservation r WHERE r.id = :id")
+    Optional<Long> findScreeningIdById(@Param("id") Long id);
+    
     @Query("SELECT DISTINCT r FROM Reservation r " +
            "LEFT JOIN FETCH r.reservationSeats " +
            "WHERE r.status = 'PAID'")
@@ -41,6 +53,249 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
     List<Reservation> findPaidReservationsByPaymentDateRange(
             @Param("startDate") LocalDateTime startDate,
             @Param("endDate") LocalDateTime endDate);
+    
+    /**
+     * Zwraca ID nieopłaconych rezerwacji, których termin płatności minął (najstarsze najpierw)
+     * Korzysta z częściowego indeksu idx_reservations_pending_expires_at
+     */
+    @Query(value = "SELECT id FROM reservations " +
+                   "WHERE status IN ('PENDING_PAYMENT', 'PAYMENT_PROCESSING', 'PAYMENT_FAILED') " +
+                   "AND expires_at <= :now " +
+                   "ORDER BY expires_at " +
+                   "LIMIT :limit", nativeQuery = true)
+    List<Long> findExpiredReservationIds(@Param("now") LocalDateTime now, @Param("limit") int limit);
+    
+    /**
+     * Blokuje te z podanych rezerwacji, które nadal czekają na płatność i których termin minął
+     * SKIP LOCKED pomija rezerwacje zablokowane właśnie przez płatność (PaymentService)
+     */
+    @Query(value = "SELECT id FROM reservations " +
+                   "WHERE id IN (:ids) " +
+                   "AND status IN ('PENDING_PAYMENT', 'PAYMENT_PROCESSING', 'PAYMENT_FAILED') " +
+                   "AND expires_at <= :now " +
+                   "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockExpiredReservations(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+    
+    /**
+     * Dane rezerwacji potrzebne do zdarzeń w skrzynce nadawczej (dla zmian wykonywanych zapytaniami masowymi)
+     */
+    @Query("SELECT r.id AS id, r.user.id AS userId, r.screening.id AS screeningId, " +
+           "COALESCE(SUM(rs.price), 0) AS totalPrice, r.paymentMethod AS paymentMethod " +
+           "FROM Reservation r LEFT JOIN r.reservationSeats rs " +
+           "WHERE r.id IN :ids " +
+           "GROUP BY r.id, r.user.id, r.screening.id, r.paymentMethod " +
+           "ORDER BY r.id")
+    List<OutboxEventSource> findOutboxEventSources(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Zmienia status wielu rezerwacji jednym zapytaniem (z podbiciem wersji dla optymistycznego blokowania)
+     * Uwaga: zapytanie masowe omija Envers - zmiana nie trafia do reservations_AUD
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Reservation r SET r.status = :status, r.version = r.version + 1 WHERE r.id IN :ids")
+    int updateStatusForIds(@Param("ids") Collection<Long> ids, @Param("status") ReservationStatus status);
+    
+    /**
+     * Płatności danych metod z podanego okresu do uzgodnienia z plikiem rozliczeniowym bramki
+     * Strumień z kursorem po stronie serwera (fetch size) - wymaga transakcji i zamknięcia strumienia.
+     * Kolejność jak w pliku rozliczeniowym: najpierw wiersze bez ID transakcji, potem rosnąco po ID (porównanie bajtowe)
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(value = "SELECT r.id AS id, r.status AS status, r.payment_method AS \"paymentMethod\", " +
+                   "r.payment_transaction_id AS \"transactionId\", r.payment_date AS \"paymentDate\", " +
+                   "(SELECT COALESCE(SUM(rs.price), 0) FROM reservation_seats rs WHERE rs.reservation_id = r.id) AS amount " +
+                   "FROM reservations r " +
+                   "WHERE r.payment_method IN (:paymentMethods) " +
+                   "AND r.payment_date >= :from AND r.payment_date < :to " +
+                   "ORDER BY r.payment_transaction_id COLLATE \"C\" NULLS FIRST", nativeQuery = true)
+    Stream<PaymentReconciliationRow> streamPaymentsForReconciliation(
+            @Param("paymentMethods") Collection<String> paymentMethods,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to);
+    
+    @Query(value = "SELECT r.id AS id, r.status AS status, r.payment_method AS \"paymentMethod\", " +
+                   "r.payment_transaction_id AS \"transactionId\", r.payment_date AS \"paymentDate\", " +
+                   "(SELECT COALESCE(SUM(rs.price), 0) FROM reservation_seats rs WHERE rs.reservation_id = r.id) AS amount " +
+                   "FROM reservations r WHERE r.id = :id", nativeQuery = true)
+    Optional<PaymentReconciliationRow> findPaymentForReconciliation(@Param("id") Long id);
+    
+    /**
+     * Rezerwacje zawieszone w PAYMENT_FAILED / PAYMENT_PROCESSING dłużej, niż powinny (pominięte przez wygaszanie)
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(value = "SELECT r.id AS id, r.status AS status, r.payment_method AS \"paymentMethod\", " +
+                   "r.payment_transaction_id AS \"transactionId\", r.payment_date AS \"paymentDate\", " +
+                   "(SELECT COALESCE(SUM(rs.price), 0) FROM reservation_seats rs WHERE rs.reservation_id = r.id) AS amount " +
+                   "FROM reservations r " +
+                   "WHERE r.status IN ('PAYMENT_FAILED', 'PAYMENT_PROCESSING') " +
+                   "AND (r.expires_at IS NULL OR r.expires_at < :staleBefore) " +
+                   "ORDER BY r.id", nativeQuery = true)
+    Stream<PaymentReconciliationRow> streamStalePayments(@Param("staleBefore") LocalDateTime staleBefore);
+    
+    long countByStatus(ReservationStatus status);
+    
+    long countByCreatedAtGreaterThanEqual(LocalDateTime from);
+    
+    /**
+     * Liczba rezerwacji w danym statusie według metody płatności (bucket = nazwa PaymentMethod)
+     */
+    @Query(value = "SELECT payment_method AS bucket, COUNT(*) AS count " +
+                   "FROM reservations " +
+                   "WHERE status = :status AND payment_method IS NOT NULL " +
+                   "GROUP BY payment_method", nativeQuery = true)
+    List<CountBucket> countByPaymentMethod(@Param("status") String status);
+    
+    /**
+     * Liczba utworzonych rezerwacji (wszystkie statusy) według miesiąca utworzenia (bucket = yyyy-MM) od podanej daty
+     */
+    @Query(value = "SELECT to_char(date_trunc('month', created_at), 'YYYY-MM') AS bucket, COUNT(*) AS count " +
+                   "FROM reservations " +
+                   "WHERE created_at >= :from " +
+                   "GROUP BY date_trunc('month', created_at)", nativeQuery = true)
+    List<CountBucket> countCreatedByMonth(@Param("from") LocalDateTime from);
+    
+    /**
+     * Liczba utworzonych rezerwacji (wszystkie statusy) według dnia utworzenia w przedziale [from, to)
+     */
+    @Query(value = "SELECT CAST(CAST(created_at AS DATE) AS TEXT) AS bucket, COUNT(*) AS count " +
+                   "FROM reservations " +
+                   "WHERE created_at >= :from AND created_at < :to " +
+                   "GROUP BY CAST(created_at AS DATE)", nativeQuery = true)
+    List<CountBucket> countCreatedByDay(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+    
+    /**
+     * Kolejna strona sprzedaży do eksportu CSV - jeden wiersz na miejsce w rezerwacji
+     * Paginacja po kluczu (reservation_id, reservation_seat_id): każda strona to krótkie zapytanie,
+     * niezależnie od tego, jak daleko jest eksport (warunek klucza rozpisany na r.id >= ..., żeby był
+     * zakresem indeksu rezerwacji - porównanie wierszy z dwóch tabel nim nie jest)
+     */
+    @Query(value = "SELECT r.id AS \"reservationId\", rs.id AS \"reservationSeatId\", r.user_id AS \"userId\", " +
+                   "r.created_at AS \"createdAt\", r.status AS status, r.payment_method AS \"paymentMethod\", " +
+                   "r.payment_date AS \"paymentDate\", r.payment_transaction_id AS \"transactionId\", " +
+                   "s.id AS \"screeningId\", s.start_time AS \"screeningStart\", m.title AS \"movieTitle\", " +
+                   "ro.room_number AS \"roomNumber\", se.row_number AS \"rowNumber\", se.seat_number AS \"seatNumber\", " +
+                   "rs.ticket_type AS \"ticketType\", rs.price AS price " +
+                   "FROM reservations r " +
+                   "JOIN reservation_seats rs ON rs.reservation_id = r.id " +
+                   "JOIN screenings s ON s.id = r.screening_id " +
+                   "JOIN movies m ON m.id = s.movie_id " +
+                   "JOIN rooms ro ON ro.id = s.room_id " +
+                   "JOIN seats se ON se.id = rs.seat_id " +
+                   "WHERE r.created_at >= :from AND r.created_at < :to " +
+                   "AND r.id >= :afterReservationId " +
+                   "AND (r.id > :afterReservationId OR rs.id > :afterSeatId) " +
+                   "ORDER BY r.id, rs.id " +
+                   "LIMIT :limit", nativeQuery = true)
+    List<SalesExportRow> findSalesExportPage(@Param("from") LocalDateTime from,
+                                             @Param("to") LocalDateTime to,
+                                             @Param("afterReservationId") long afterReservationId,
+                                             @Param("afterSeatId") long afterSeatId,
+                                             @Param("limit") int limit);
+    
+    /**
+     * Kolejna strona sprzedanych (opłaconych) miejsc do załadowania magazynu kolumnowego, paginacja po kluczu
+     * Warunek klucza rozpisany na r.id >= ... - porównanie wierszy (r.id, rs.id) z dwóch tabel nie jest
+     * zakresem indeksu i każda strona skanowałaby rezerwacje od początku
+     */
+    @Query(value = "SELECT r.id AS \"reservationId\", rs.id AS \"reservationSeatId\", " +
+                   "s.movie_id AS \"movieId\", m.title AS \"movieTitle\", s.room_id AS \"roomId\", " +
+                   "ro.room_number AS \"roomNumber\", s.start_time AS \"screeningStart\", " +
+                   "rs.ticket_type AS \"ticketType\", r.payment_method AS \"paymentMethod\", rs.price AS price " +
+                   "FROM reservations r " +
+                   "JOIN reservation_seats rs ON rs.reservation_id = r.id " +
+                   "JOIN screenings s ON s.id = r.screening_id " +
+                   "JOIN movies m ON m.id = s.movie_id " +
+                   "JOIN rooms ro ON ro.id = s.room_id " +
+                   "WHERE r.status = 'PAID' AND r.id >= :afterReservationId " +
+                   "AND (r.id > :afterReservationId OR rs.id > :afterSeatId) " +
+                   "ORDER BY r.id, rs.id " +
+                   "LIMIT :limit", nativeQuery = true)
+    List<SeatSaleRow> findPaidSeatSalesPage(@Param("afterReservationId") long afterReservationId,
+                                            @Param("afterSeatId") long afterSeatId,
+                                            @Param("limit") int limit);
+    
+    /**
+     * Sprzedane miejsca jednej opłaconej rezerwacji (pusta lista, jeśli rezerwacja nie jest opłacona)
+     */
+    @Query(value = "SELECT r.id AS \"reservationId\", rs.id AS \"reservationSeatId\", " +
+                   "s.movie_id AS \"movieId\", m.title AS \"movieTitle\", s.room_id AS \"roomId\", " +
+                   "ro.room_number AS \"roomNumber\", s.start_time AS \"screeningStart\", " +
+                   "rs.ticket_type AS \"ticketType\", r.payment_method AS \"paymentMethod\", rs.price AS price " +
+                   "FROM reservations r " +
+                   "JOIN reservation_seats rs ON rs.reservation_id = r.id " +
+                   "JOIN screenings s ON s.id = r.screening_id " +
+                   "JOIN movies m ON m.id = s.movie_id " +
+                   "JOIN rooms ro ON ro.id = s.room_id " +
+                   "WHERE r.id = :reservationId AND r.status = 'PAID' " +
+                   "ORDER BY rs.id", nativeQuery = true)
+    List<SeatSaleRow> findPaidSeatSales(@Param("reservationId") Long reservationId);
+    
+    /**
+     * Projekcja rezerwacji do uzgadniania płatności (bez ładowania encji)
+     */
+    interface PaymentReconciliationRow {
+        Long getId();
+        String getStatus();
+        String getPaymentMethod();
+        String getTransactionId();
+        LocalDateTime getPaymentDate();
+        BigDecimal getAmount();
+    }
+    
+    /**
+     * Rezerwacja jako źródło zdarzenia domenowego (bez ładowania encji)
+     */
+    interface OutboxEventSource {
+        Long getId();
+        Long getUserId();
+        Long getScreeningId();
+        BigDecimal getTotalPrice();
+        PaymentMethod getPaymentMethod();
+    }
+    
+    /**
+     * Liczba rezerwacji w jednym przedziale (np. dniu)
+     */
+    interface CountBucket {
+        String getBucket();
+        Long getCount();
+    }
+    
+    /**
+     * Wiersz eksportu sprzedaży (miejsce w rezerwacji z danymi seansu i płatności)
+     */
+    interface SalesExportRow {
+        Long getReservationId();
+        Long getReservationSeatId();
+        Long getUserId();
+        LocalDateTime getCreatedAt();
+        String getStatus();
+        String getPaymentMethod();
+        LocalDateTime getPaymentDate();
+        String getTransactionId();
+        Long getScreeningId();
+        LocalDateTime getScreeningStart();
+        String getMovieTitle();
+        String getRoomNumber();
+        Integer getRowNumber();
+        Integer getSeatNumber();
+        String getTicketType();
+        BigDecimal getPrice();
+    }
+    
+    /**
+     * Sprzedane miejsce do analiz (magazyn kolumnowy SalesColumnStore)
+     */
+    interface SeatSaleRow {
+        Long getReservationId();
+        Long getReservationSeatId();
+        Long getMovieId();
+        String getMovieTitle();
+        Long getRoomId();
+        String getRoomNumber();
+        LocalDateTime getScreeningStart();
+        String getTicketType();
+        String getPaymentMethod();
+        BigDecimal getPrice();
+    }
 }
-
-
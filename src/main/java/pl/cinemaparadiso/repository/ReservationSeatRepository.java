@@ -1,11 +1,14 @@
 package pl.cinemaparadiso.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import pl.cinemaparadiso.entity.ReservationSeat;
+import pl.cinemaparadiso.enums.ReservationStatus;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -16,38 +19,78 @@ public interface ReservationSeatRepository extends JpaRepository<ReservationSeat
     
     /**
      * Znajduje wszystkie zarezerwowane miejsca dla danego seansu
-     * Uwzględnia rezerwacje: PAID (opłacone) i PENDING_PAYMENT (oczekujące na płatność)
+     * Aktywne (is_active) są miejsca rezerwacji: PAID (opłacone) i PENDING_PAYMENT (oczekujące na płatność)
      * Nie uwzględnia: CANCELLED, PAYMENT_FAILED
      */
     @Query("SELECT rs FROM ReservationSeat rs " +
-           "WHERE rs.reservation.screening.id = :screeningId " +
-           "AND rs.reservation.status IN ('PAID', 'PENDING_PAYMENT')")
+           "WHERE rs.screening.id = :screeningId " +
+           "AND rs.isActive = true")
     List<ReservationSeat> findReservedSeatsByScreeningId(@Param("screeningId") Long screeningId);
     
+    /**
+     * Zwraca same ID zarezerwowanych miejsc dla danego seansu (bez ładowania encji)
+     * Używane do budowy bitmapy zajętości w SeatInventoryService
+     */
+    @Query("SELECT rs.seat.id FROM ReservationSeat rs " +
+           "WHERE rs.screening.id = :screeningId " +
+           "AND rs.isActive = true")
+    List<Long> findReservedSeatIdsByScreeningId(@Param("screeningId") Long screeningId);
+    
     /**
      * Sprawdza czy miejsce jest już zarezerwowane na dany seans
-     * Uwzględnia rezerwacje: PAID (opłacone) i PENDING_PAYMENT (oczekujące na płatność)
-     * Nie uwzględnia: CANCELLED, PAYMENT_FAILED
+     * Uwzględnia tylko aktywne miejsca (rezerwacje PAID i PENDING_PAYMENT)
      */
     @Query("SELECT COUNT(rs) > 0 FROM ReservationSeat rs " +
            "WHERE rs.seat.id = :seatId " +
-           "AND rs.reservation.screening.id = :screeningId " +
-           "AND rs.reservation.status IN ('PAID', 'PENDING_PAYMENT')")
+           "AND rs.screening.id = :screeningId " +
+           "AND rs.isActive = true")
     boolean isSeatReservedForScreening(@Param("seatId") Long seatId, @Param("screeningId") Long screeningId);
     
+    /**
+     * Zwraca te z podanych miejsc, które są już zarezerwowane na dany seans (jedno zapytanie dla całego zbioru)
+     * Uwzględnia tylko aktywne miejsca (rezerwacje PAID i PENDING_PAYMENT)
+     */
+    @Query("SELECT rs.seat.id FROM ReservationSeat rs " +
+           "WHERE rs.seat.id IN :seatIds " +
+           "AND rs.screening.id = :screeningId " +
+           "AND rs.isActive = true")
+    List<Long> findReservedSeatIdsForScreening(@Param("seatIds") Collection<Long> seatIds,
+                                               @Param("screeningId") Long screeningId);
+    
     /**
      * Sprawdza czy miejsce jest zarezerwowane przez INNĄ rezerwację (nie podaną)
      * Używane do weryfikacji przed finalizacją płatności
-     * Uwzględnia rezerwacje: PAID (opłacone) i PENDING_PAYMENT (oczekujące na płatność)
+     * Uwzględnia tylko aktywne miejsca (rezerwacje PAID i PENDING_PAYMENT)
      */
     @Query("SELECT COUNT(rs) > 0 FROM ReservationSeat rs " +
            "WHERE rs.seat.id = :seatId " +
-           "AND rs.reservation.screening.id = :screeningId " +
+           "AND rs.screening.id = :screeningId " +
            "AND rs.reservation.id != :excludeReservationId " +
-           "AND rs.reservation.status IN ('PAID', 'PENDING_PAYMENT')")
+           "AND rs.isActive = true")
     boolean isSeatReservedByOtherReservation(@Param("seatId") Long seatId, 
                                              @Param("screeningId") Long screeningId,
                                              @Param("excludeReservationId") Long excludeReservationId);
+    
+    /**
+     * Zwraca pary (ID seansu, ID miejsca) aktywnych miejsc podanych rezerwacji
+     */
+    @Query("SELECT rs.screening.id, rs.seat.id FROM ReservationSeat rs " +
+           "WHERE rs.reservation.id IN :reservationIds " +
+           "AND rs.isActive = true")
+    List<Object[]> findActiveSeatClaimsByReservationIds(@Param("reservationIds") Collection<Long> reservationIds);
+    
+    /**
+     * Zwalnia miejsca podanych rezerwacji jednym zapytaniem
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ReservationSeat rs SET rs.isActive = false " +
+           "WHERE rs.reservation.id IN :reservationIds " +
+           "AND rs.isActive = true")
+    int deactivateByReservationIds(@Param("reservationIds") Collection<Long> reservationIds);
+    
+    /**
+     * Liczy miejsca rezerwacji w danym statusie
+     */
+    @Query("SELECT COUNT(rs) FROM ReservationSeat rs WHERE rs.reservation.status = :status")
+    long countByReservationStatus(@Param("status") ReservationStatus status);
 }
-
-
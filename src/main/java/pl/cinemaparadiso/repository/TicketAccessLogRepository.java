@@ -14,5 +14,7 @@ public interface TicketAccessLogRepository extends JpaRepository<TicketAccessLog
     List<TicketAccessLog> findByUserIdOrderByCreatedAtDesc(Long userId);
     
     long countByReservationId(Long reservationId);
+    
+    boolean existsByReservationIdAndActionType(Long reservationId, String actionType);
 }
 
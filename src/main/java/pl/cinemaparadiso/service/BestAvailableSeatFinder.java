@@ -0,0 +1,93 @@
+package pl.cinemaparadiso.service;
+
+import pl.cinemaparadiso.enums.SeatType;
+
+import java.util.BitSet;
+
+/**
+ * Wyszukiwanie najlepszego bloku N sąsiadujących wolnych miejsc w migawce planu sali
+ *
+ * Jedno przejście po wszystkich miejscach (okno przesuwne w każdym rzędzie), bez alokacji
+ * w pętli - dla sali z 1000 miejsc to pojedyncze mikrosekundy. Blok jest oceniany karą
+ * (im mniejsza, tym lepiej) za odległość od preferowanego rzędu i od środka rzędu.
+ */
+public final class BestAvailableSeatFinder {
+
+    /**
+     * Domyślny preferowany rząd jako ułamek głębokości sali (0 = pierwszy rząd przy ekranie)
+     */
+    private static final double DEFAULT_PREFERRED_ROW_FRACTION = 0.6;
+    private static final double ROW_WEIGHT = 1.0;
+    private static final double CENTRE_WEIGHT = 0.8;
+
+    private BestAvailableSeatFinder() {
+    }
+
+    /**
+     * @param snapshot - migawka planu sali
+     * @param partySize - liczba sąsiadujących miejsc
+     * @param seatType - wymagany typ miejsc lub null (dowolny)
+     * @param preferredRowNumber - numer preferowanego rzędu lub null (domyślnie ok. 60% głębokości sali)
+     * @param excluded - indeksy miejsc do pominięcia (np. przegrane przy konflikcie), może być null
+     * @return indeks pierwszego miejsca najlepszego bloku lub -1 jeśli nie ma wolnego bloku
+     */
+    public static int findBestBlock(SeatMapSnapshot snapshot, int partySize, SeatType seatType,
+                                    Integer preferredRowNumber, BitSet excluded) {
+        RoomLayout layout = snapshot.getLayout();
+        int rowCount = layout.rowCount();
+        if (rowCount == 0 || partySize <= 0) {
+            return -1;
+        }
+
+        double preferredRow = preferredRowIndex(layout, preferredRowNumber);
+        int bestStart = -1;
+        double bestPenalty = Double.MAX_VALUE;
+
+        for (int row = 0; row < rowCount; row++) {
+            int start = layout.rowStart(row);
+            int end = layout.rowEnd(row);
+            if (end - start < partySize) {
+                continue;
+            }
+
+            double rowPenalty = ROW_WEIGHT * Math.abs(row - preferredRow) / rowCount;
+            if (rowPenalty >= bestPenalty) {
+                continue; // nawet idealnie wyśrodkowany blok w tym rzędzie nie będzie lepszy
+            }
+            double rowCentre = (start + end - 1) / 2.0;
+            double rowLength = end - start;
+
+            int run = 0;
+            for (int i = start; i < end; i++) {
+                boolean usable = snapshot.isFree(i)
+                        && (seatType == null || layout.seatType(i) == seatType)
+                        && (excluded == null || !excluded.get(i));
+                // Sąsiedztwo wymaga kolejnych numerów miejsc (przerwa w numeracji = przejście)
+                boolean adjacent = run > 0 && layout.seatNumber(i) == layout.seatNumber(i - 1) + 1;
+                run = usable ? (adjacent ? run + 1 : 1) : 0;
+
+                if (run >= partySize) {
+                    int blockStart = i - partySize + 1;
+                    double blockCentre = blockStart + (partySize - 1) / 2.0;
+                    double penalty = rowPenalty + CENTRE_WEIGHT * Math.abs(blockCentre - rowCentre) / rowLength;
+                    if (penalty < bestPenalty) {
+                        bestPenalty = penalty;
+                        bestStart = blockStart;
+                    }
+                }
+            }
+        }
+        return bestStart;
+    }
+
+    private static double preferredRowIndex(RoomLayout layout, Integer preferredRowNumber) {
+        if (preferredRowNumber != null) {
+            for (int row = 0; row < layout.rowCount(); row++) {
+                if (layout.rowNumber(layout.rowStart(row)) == preferredRowNumber) {
+                    return row;
+                }
+            }
+        }
+        return (layout.rowCount() - 1) * DEFAULT_PREFERRED_ROW_FRACTION;
+    }
+}
@@ -0,0 +1,382 @@
+package pl.cinemaparadiso.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.cinemaparadiso.dto.CreateReservationDTO;
+import pl.cinemaparadiso.dto.PaymentRequestDTO;
+import pl.cinemaparadiso.dto.PaymentResponseDTO;
+import pl.cinemaparadiso.dto.ReservationDTO;
+import pl.cinemaparadiso.exception.BookingBusyException;
+import pl.cinemaparadiso.exception.ReservationNotFoundException;
+import pl.cinemaparadiso.exception.SeatNotAvailableException;
+import pl.cinemaparadiso.repository.ReservationRepository;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Sekwencer rezerwacji - jeden "pisarz" na seans (tryb opcjonalny: booking.sequencer.enabled)
+ *
+ * Wszystkie operacje zmieniające miejsca danego seansu (utworzenie rezerwacji, anulowanie,
+ * rozpoczęcie i finalizacja płatności) trafiają do kolejki seansu i są wykonywane po kolei przez jeden wątek.
+ * Zamiast wielu wątków Tomcata walczących o blokady wierszy w PostgreSQL:
+ * - dostępność miejsc sprawdzana jest w pamięci (bitmapa seansu + miejsca zajęte w bieżącej paczce),
+ *   więc konflikty są odrzucane bez dotykania bazy,
+ * - zaakceptowane rezerwacje z jednej paczki zapisywane są w jednej transakcji
+ *   (przy błędzie paczka jest powtarzana rezerwacja po rezerwacji).
+ * Wywołanie bramki płatności odbywa się poza kolejką (PaymentProcessingService).
+ * Żądanie czeka na wynik najwyżej booking.sequencer.await-timeout-ms (potem 503) - polecenie,
+ * które do tego czasu nie zostało rozpoczęte, jest pomijane przez kolejkę.
+ *
+ * Gdy tryb jest wyłączony, metody delegują bezpośrednio do ReservationService i PaymentService.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BookingSequencer {
+
+    private final ReservationService reservationService;
+    private final PaymentService paymentService;
+    private final SeatInventoryService seatInventoryService;
+    private final ReservationRepository reservationRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${booking.sequencer.enabled:false}")
+    private boolean enabled;
+
+    @Value("${booking.sequencer.max-batch-size:64}")
+    private int maxBatchSize;
+
+    @Value("${booking.sequencer.await-timeout-ms:10000}")
+    private long awaitTimeoutMillis;
+
+    private final Map<Long, Lane> lanes = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public ReservationDTO createReservation(CreateReservationDTO createDTO, Long userId) {
+        if (!enabled) {
+            return reservationService.createReservation(createDTO, userId);
+        }
+        ReserveCommand command = new ReserveCommand(createDTO, userId);
+        submit(createDTO.getScreeningId(), command);
+        return await(command.result);
+    }
+
+    public void cancelReservation(Long reservationId, Long userId) {
+        if (!enabled) {
+            reservationService.cancelReservation(reservationId, userId);
+            return;
+        }
+        runInLane(reservationId, () -> {
+            reservationService.cancelReservation(reservationId, userId);
+            return null;
+        });
+    }
+
+    public PaymentResponseDTO startPayment(PaymentRequestDTO paymentRequest, Long userId) {
+        if (!enabled) {
+            return paymentService.startPayment(paymentRequest, userId);
+        }
+        return runInLane(paymentRequest.getReservationId(), () -> paymentService.startPayment(paymentRequest, userId));
+    }
+
+    public PaymentResponseDTO finalizePayment(Long reservationId, PaymentGatewayResult gatewayResult) {
+        if (!enabled) {
+            return paymentService.finalizePayment(reservationId, gatewayResult);
+        }
+        return runInLane(reservationId, () -> paymentService.finalizePayment(reservationId, gatewayResult));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Wykonuje operację na istniejącej rezerwacji w kolejce jej seansu
+     */
+    private <T> T runInLane(Long reservationId, Supplier<T> task) {
+        Long screeningId = reservationRepository.findScreeningIdById(reservationId)
+                .orElseThrow(() -> new ReservationNotFoundException("Rezerwacja o ID " + reservationId + " nie istnieje"));
+        TaskCommand<T> command = new TaskCommand<>(task);
+        submit(screeningId, command);
+        return await(command.result);
+    }
+
+    /**
+     * Dodaje polecenie do kolejki seansu (tworzy ją, jeśli seans nie ma aktywnej kolejki)
+     * Pod blokadą klucza mapy - bezczynna kolejka nie zostanie usunięta w trakcie dodawania
+     */
+    private void submit(Long screeningId, Command<?> command) {
+        lanes.compute(screeningId, (id, lane) -> {
+            Lane target = lane != null ? lane : new Lane(id);
+            target.submit(command);
+            return target;
+        });
+    }
+
+    /**
+     * Czeka na wynik polecenia najwyżej awaitTimeoutMillis
+     * Po przekroczeniu czasu polecenie jest oznaczane jako zakończone - kolejka pominie je, jeśli jeszcze nie ruszyło
+     *
+     * @throws BookingBusyException jeśli kolejka seansu nie obsłużyła polecenia na czas
+     */
+    private <T> T await(CompletableFuture<T> result) {
+        try {
+            return result.get(awaitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (!result.completeExceptionally(e)) {
+                return join(result); // wynik doszedł w ostatniej chwili
+            }
+            log.warn("Polecenie sekwencera nie zostało obsłużone w ciągu {} ms", awaitTimeoutMillis);
+            throw new BookingBusyException("Rezerwacje na ten seans są chwilowo przeciążone - spróbuj ponownie za chwilę", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.completeExceptionally(e);
+            throw new BookingBusyException("Przerwano oczekiwanie na obsługę rezerwacji", e);
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Przetwarza paczkę poleceń jednego seansu z zachowaniem kolejności
+     * Kolejne polecenia utworzenia rezerwacji są grupowane i zapisywane razem
+     */
+    private void process(Long screeningId, List<Command<?>> batch) {
+        List<ReserveCommand> reserves = new ArrayList<>();
+        for (Command<?> command : batch) {
+            if (command.result.isDone()) {
+                continue; // wołający przestał czekać (przekroczony czas) - nie wykonujemy polecenia
+            }
+            if (command instanceof ReserveCommand reserve) {
+                reserves.add(reserve);
+                continue;
+            }
+            flushReserves(screeningId, reserves);
+            reserves.clear();
+            ((TaskCommand<?>) command).run();
+        }
+        flushReserves(screeningId, reserves);
+    }
+
+    private void flushReserves(Long screeningId, List<ReserveCommand> commands) {
+        if (commands.isEmpty()) {
+            return;
+        }
+
+        SeatMapSnapshot snapshot;
+        try {
+            snapshot = seatInventoryService.getSnapshot(screeningId);
+        } catch (RuntimeException e) {
+            commands.forEach(command -> command.result.completeExceptionally(e));
+            return;
+        }
+
+        RoomLayout layout = snapshot.getLayout();
+        BitSet claimedInBatch = new BitSet(layout.size());
+        List<ReserveCommand> accepted = new ArrayList<>();
+
+        for (ReserveCommand command : commands) {
+            BitSet requested = new BitSet(layout.size());
+            String conflict = null;
+            for (CreateReservationDTO.SeatSelectionDTO selection : command.createDTO.getSeats()) {
+                int index = layout.indexOf(selection.getSeatId());
+                if (index < 0) {
+                    continue; // błędne miejsce - odrzuci je walidacja w ReservationService
+                }
+                if (snapshot.isOccupied(index) || claimedInBatch.get(index)) {
+                    conflict = "Miejsce rząd " + layout.rowNumber(index) + ", miejsce " + layout.seatNumber(index) +
+                            " jest już zarezerwowane";
+                    break;
+                }
+                requested.set(index);
+            }
+
+            if (conflict != null) {
+                command.result.completeExceptionally(new SeatNotAvailableException(conflict));
+            } else {
+                claimedInBatch.or(requested);
+                accepted.add(command);
+            }
+        }
+
+        persist(accepted);
+    }
+
+    /**
+     * Zapisuje zaakceptowane rezerwacje w jednej transakcji
+     * Jeśli którakolwiek się nie powiedzie, cała paczka jest wycofywana i powtarzana pojedynczo,
+     * żeby błąd jednej rezerwacji nie dotknął pozostałych
+     */
+    private void persist(List<ReserveCommand> accepted) {
+        if (accepted.isEmpty()) {
+            return;
+        }
+        if (accepted.size() == 1) {
+            persistSingle(accepted.get(0));
+            return;
+        }
+
+        List<ReservationDTO> created;
+        try {
+            created = transactionTemplate.execute(status -> accepted.stream()
+                    .map(command -> reservationService.createReservation(command.createDTO, command.userId))
+                    .toList());
+        } catch (RuntimeException e) {
+            log.warn("Zapis paczki {} rezerwacji nie powiódł się ({}), ponawianie pojedynczo",
+                    accepted.size(), e.getMessage());
+            accepted.forEach(this::persistSingle);
+            return;
+        }
+
+        for (int i = 0; i < accepted.size(); i++) {
+            accepted.get(i).result.complete(created.get(i));
+        }
+    }
+
+    private void persistSingle(ReserveCommand command) {
+        try {
+            command.result.complete(reservationService.createReservation(command.createDTO, command.userId));
+        } catch (RuntimeException e) {
+            command.result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Kolejka poleceń jednego seansu
+     * Co najwyżej jeden wątek naraz opróżnia kolejkę (flaga draining)
+     */
+    private final class Lane {
+
+        private final Long screeningId;
+        private final Queue<Command<?>> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        Lane(Long screeningId) {
+            this.screeningId = screeningId;
+        }
+
+        void submit(Command<?> command) {
+            queue.add(command);
+            if (draining.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                List<Command<?>> batch = new ArrayList<>();
+                Command<?> command;
+                while (batch.size() < maxBatchSize && (command = queue.poll()) != null) {
+                    batch.add(command);
+                }
+
+                if (batch.isEmpty()) {
+                    // Polecenie mogło dojść między poll() a usunięciem kolejki - wtedy przetwarzamy dalej
+                    if (retireIfIdle()) {
+                        return;
+                    }
+                    continue;
+                }
+
+                try {
+                    process(screeningId, batch);
+                } catch (RuntimeException e) {
+                    log.error("Błąd sekwencera dla seansu ID: {}", screeningId, e);
+                    batch.forEach(failed -> failed.result.completeExceptionally(e));
+                }
+            }
+        }
+
+        /**
+         * Usuwa pustą kolejkę z mapy - seanse bez ruchu nie zajmują pamięci do końca działania aplikacji
+         * Następne polecenie dla seansu utworzy nową kolejkę
+         *
+         * @return true, jeśli kolejka była pusta i została usunięta
+         */
+        private boolean retireIfIdle() {
+            boolean[] retired = {true};
+            lanes.compute(screeningId, (id, lane) -> {
+                if (lane != this) {
+                    return lane;
+                }
+                if (!queue.isEmpty()) {
+                    retired[0] = false;
+                    return lane;
+                }
+                return null;
+            });
+            if (retired[0]) {
+                draining.set(false);
+            }
+            return retired[0];
+        }
+    }
+
+    private abstract static class Command<T> {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+    }
+
+    private static final class ReserveCommand extends Command<ReservationDTO> {
+        final CreateReservationDTO createDTO;
+        final Long userId;
+
+        ReserveCommand(CreateReservationDTO createDTO, Long userId) {
+            this.createDTO = createDTO;
+            this.userId = userId;
+        }
+    }
+
+    private static final class TaskCommand<T> extends Command<T> {
+        final Supplier<T> task;
+
+        TaskCommand(Supplier<T> task) {
+            this.task = task;
+        }
+
+        void run() {
+            try {
+                result.complete(task.get());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+}
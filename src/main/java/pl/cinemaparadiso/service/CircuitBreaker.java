@@ -0,0 +1,127 @@
+package pl.cinemaparadiso.service;
+
+/**
+ * Prosty bezpiecznik (circuit breaker) z oknem ostatnich wywołań
+ *
+ * CLOSED - wywołania przechodzą, wynik ostatnich windowSize wywołań jest zapamiętywany;
+ *          gdy odsetek błędów osiągnie próg (przy co najmniej minimumCalls wywołaniach), bezpiecznik się otwiera.
+ * OPEN - wywołania są od razu odrzucane przez openMillis.
+ * HALF_OPEN - przepuszczane jest jedno wywołanie próbne; sukces zamyka bezpiecznik, błąd otwiera go ponownie.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openMillis;
+
+    private final boolean[] failures;
+    private int nextSlot;
+    private int recordedCalls;
+    private int recordedFailures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, long openMillis) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Rozmiar okna bezpiecznika musi być dodatni");
+        }
+        this.windowSize = windowSize;
+        this.minimumCalls = Math.min(Math.max(1, minimumCalls), windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openMillis = openMillis;
+        this.failures = new boolean[windowSize];
+    }
+
+    /**
+     * Czy wywołanie zostałoby teraz przepuszczone (bez rezerwowania wywołania próbnego)
+     */
+    public synchronized boolean isCallPermitted(long nowMillis) {
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> nowMillis - openedAt >= openMillis;
+            case HALF_OPEN -> !trialInFlight;
+        };
+    }
+
+    /**
+     * Prosi o zgodę na wywołanie - po zgodzie trzeba zgłosić wynik (onSuccess / onFailure)
+     */
+    public synchronized boolean tryAcquirePermission(long nowMillis) {
+        if (state == State.OPEN) {
+            if (nowMillis - openedAt < openMillis) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) {
+                return false;
+            }
+            trialInFlight = true;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            close();
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure(long nowMillis) {
+        if (state == State.HALF_OPEN) {
+            open(nowMillis);
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (recordedCalls >= minimumCalls && (double) recordedFailures / recordedCalls >= failureRateThreshold) {
+                open(nowMillis);
+            }
+        }
+        // OPEN: wynik wywołania rozpoczętego przed otwarciem nic nie zmienia
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void record(boolean failure) {
+        if (recordedCalls == windowSize) {
+            if (failures[nextSlot]) {
+                recordedFailures--;
+            }
+        } else {
+            recordedCalls++;
+        }
+        failures[nextSlot] = failure;
+        if (failure) {
+            recordedFailures++;
+        }
+        nextSlot = (nextSlot + 1) % windowSize;
+    }
+
+    private void open(long nowMillis) {
+        state = State.OPEN;
+        openedAt = nowMillis;
+        trialInFlight = false;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        trialInFlight = false;
+        nextSlot = 0;
+        recordedCalls = 0;
+        recordedFailures = 0;
+    }
+}
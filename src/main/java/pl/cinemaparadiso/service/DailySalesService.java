@@ -0,0 +1,71 @@
+package pl.cinemaparadiso.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import pl.cinemaparadiso.repository.DailySalesRepository;
+
+/**
+ * Przyrostowe dzienne agregaty sprzedaży (daily_sales) dla statystyk panelu admina
+ *
+ * Po PAYMENT_COMPLETED rezerwacja jest dodawana do agregatu swojego dnia płatności, metody płatności
+ * i filmu, a po RESERVATION_CANCELLED odejmowana. Każda zmiana to jedno atomowe zapytanie SQL,
+ * a daily_sales_entries pamięta, które rezerwacje są wliczone - ponownie dostarczone zdarzenie
+ * niczego nie zmienia. Agregaty można w każdej chwili przeliczyć od nowa (rebuild).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DailySalesService {
+
+    private final DailySalesRepository dailySalesRepository;
+
+    @EventListener
+    @Transactional
+    public void onReservationEvent(ReservationDomainEvent event) {
+        switch (event.type()) {
+            case PAYMENT_COMPLETED -> {
+                if (dailySalesRepository.addPaidReservation(event.reservationId()) > 0) {
+                    log.debug("Rezerwacja ID: {} wliczona do dziennej sprzedaży", event.reservationId());
+                }
+            }
+            case RESERVATION_CANCELLED -> {
+                if (dailySalesRepository.removeCancelledReservation(event.reservationId()) > 0) {
+                    log.debug("Rezerwacja ID: {} odjęta od dziennej sprzedaży", event.reservationId());
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Okresowa przebudowa agregatów (domyślnie wyłączona, statistics.daily-sales.rebuild-cron)
+     */
+    @Scheduled(cron = "${statistics.daily-sales.rebuild-cron:-}")
+    public void scheduledRebuild() {
+        rebuild();
+    }
+
+    /**
+     * Przelicza agregaty od nowa ze wszystkich opłaconych rezerwacji
+     * Na czas przebudowy tabele są zablokowane, więc równolegle obsługiwane zdarzenia czekają
+     * i po niej są wliczane (albo pomijane, jeśli przebudowa już je uwzględniła)
+     *
+     * @return liczba wliczonych rezerwacji
+     */
+    @Transactional
+    public int rebuild() {
+        log.info("Przebudowa dziennych agregatów sprzedaży");
+        dailySalesRepository.lockForRebuild();
+        dailySalesRepository.deleteAllSales();
+        dailySalesRepository.deleteAllEntries();
+        int reservations = dailySalesRepository.insertEntriesFromReservations();
+        int buckets = dailySalesRepository.insertSalesFromEntries();
+        log.info("Przebudowano dzienne agregaty sprzedaży: {} rezerwacji w {} wierszach", reservations, buckets);
+        return reservations;
+    }
+}
@@ -0,0 +1,84 @@
+package pl.cinemaparadiso.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Prosty haszowany zegar (hashed timing wheel) dla terminów wygaśnięcia
+ *
+ * Czas jest dzielony na takty o długości tickMillis, a każdy takt trafia do jednego z
+ * wheelSize kubełków (tick mod wheelSize). Dodanie terminu i zebranie terminów, które
+ * minęły, kosztuje O(1) na wpis - nie trzeba sortować ani przeszukiwać wszystkich wpisów.
+ * Wpisy z terminem dalszym niż jeden obrót zegara czekają w kubełku na kolejne obroty.
+ *
+ * schedule() może być wołane z wielu wątków, advance() z jednego wątku (schedulera).
+ * Obie metody są synchronizowane - schedule() musi widzieć aktualny takt zegara,
+ * żeby nie wstawić wpisu do kubełka, który advance() właśnie minął.
+ */
+public class HashedTimingWheel {
+
+    private final long tickMillis;
+    private final Queue<Entry>[] buckets;
+    private final int mask;
+    private long lastTick;
+
+    @SuppressWarnings("unchecked")
+    public HashedTimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("Rozmiar zegara musi być potęgą dwójki: " + wheelSize);
+        }
+        this.tickMillis = tickMillis;
+        this.buckets = new Queue[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.mask = wheelSize - 1;
+        this.lastTick = startMillis / tickMillis;
+    }
+
+    /**
+     * Dodaje identyfikator z terminem wygaśnięcia (epoch millis)
+     * Terminy z przeszłości zostaną zwrócone przy najbliższym advance()
+     */
+    public synchronized void schedule(long id, long deadlineMillis) {
+        long deadlineTick = Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis);
+        // Termin z przeszłości trafia do najbliższego taktu - kubełek jego własnego taktu
+        // został już minięty i wpis czekałby w nim na kolejny obrót zegara
+        long bucketTick = Math.max(deadlineTick, lastTick + 1);
+        buckets[(int) (bucketTick & mask)].add(new Entry(id, deadlineTick));
+    }
+
+    /**
+     * Przesuwa zegar do podanej chwili i zwraca identyfikatory, których termin minął
+     */
+    public synchronized List<Long> advance(long nowMillis) {
+        long currentTick = nowMillis / tickMillis;
+        List<Long> expired = new ArrayList<>();
+        if (currentTick <= lastTick) {
+            return expired;
+        }
+
+        // Wystarczy jeden pełny obrót - dalsze takty trafiają w te same kubełki
+        long fromTick = Math.max(lastTick, currentTick - buckets.length);
+        for (long tick = fromTick; tick <= currentTick; tick++) {
+            Queue<Entry> bucket = buckets[(int) (tick & mask)];
+            List<Entry> pending = new ArrayList<>();
+            Entry entry;
+            while ((entry = bucket.poll()) != null) {
+                if (entry.deadlineTick <= currentTick) {
+                    expired.add(entry.id);
+                } else {
+                    pending.add(entry);
+                }
+            }
+            bucket.addAll(pending);
+        }
+        lastTick = currentTick;
+        return expired;
+    }
+
+    private record Entry(long id, long deadlineTick) {
+    }
+}
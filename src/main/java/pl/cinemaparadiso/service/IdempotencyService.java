@@ -0,0 +1,191 @@
+package pl.cinemaparadiso.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import pl.cinemaparadiso.exception.IdempotencyConflictException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Obsługa nagłówka Idempotency-Key dla tworzenia rezerwacji i płatności
+ *
+ * Pierwsze żądanie z danym kluczem wykonuje operację, a jej wynik (DTO) jest zapamiętywany.
+ * Powtórzenie żądania (np. ponowienie po timeoucie w aplikacji mobilnej) zwraca zapamiętany
+ * wynik bez dotykania tabel rezerwacji. Powtórzenie w trakcie przetwarzania czeka na wynik
+ * pierwszego żądania. Klucze są rozdzielne per użytkownik i endpoint.
+ *
+ * Magazyn jest ograniczony (najstarsze zakończone wpisy są usuwane - wpis żądania w trakcie
+ * przetwarzania nigdy, więc duplikat nie może go wyprzedzić) i wpisy wygasają po TTL.
+ * Jeśli operacja zakończy się błędem, wpis jest usuwany - ponowienie wykona ją jeszcze raz.
+ *
+ * Treść żądania jest porównywana przez SHA-256 jej postaci JSON (bez trzymania w pamięci
+ * samego żądania, np. danych płatności).
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    @Value("${idempotency.ttl-minutes:60}")
+    private long ttlMinutes;
+
+    @Value("${idempotency.wait-timeout-seconds:30}")
+    private long waitTimeoutSeconds;
+
+    // Kolejność wstawiania = kolejność wieku, więc najstarsze wpisy są na początku
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final int maxEntries;
+    private final ObjectMapper fingerprintMapper;
+
+    public IdempotencyService(@Value("${idempotency.max-entries:10000}") int maxEntries, ObjectMapper objectMapper) {
+        this.maxEntries = maxEntries;
+        // Stała kolejność kluczy map - ta sama treść daje zawsze ten sam JSON
+        this.fingerprintMapper = objectMapper.copy().enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+    }
+
+    /**
+     * Wykonuje operację najwyżej raz dla danego klucza
+     *
+     * @param scope - nazwa endpointu (klucze różnych endpointów się nie mieszają)
+     * @param userId - ID użytkownika
+     * @param key - wartość nagłówka Idempotency-Key (null = zwykłe wykonanie)
+     * @param request - treść żądania (ten sam klucz z inną treścią jest odrzucany)
+     * @param operation - właściwa operacja
+     */
+    @SuppressWarnings("unchecked")
+    public <T> IdempotentResult<T> execute(String scope, Long userId, String key, Object request, Supplier<T> operation) {
+        if (key == null || key.isBlank()) {
+            return new IdempotentResult<>(operation.get(), false);
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Klucz Idempotency-Key może mieć maksymalnie " + MAX_KEY_LENGTH + " znaków");
+        }
+
+        String storeKey = scope + ":" + userId + ":" + key;
+        byte[] fingerprint = fingerprint(request);
+        Entry mine = new Entry(fingerprint, System.currentTimeMillis());
+        Entry existing;
+
+        synchronized (entries) {
+            removeExpired(mine.createdAt);
+            existing = entries.putIfAbsent(storeKey, mine);
+            if (existing == null) {
+                evictCompleted();
+            }
+        }
+
+        if (existing != null) {
+            if (!MessageDigest.isEqual(existing.fingerprint, fingerprint)) {
+                throw new IllegalArgumentException("Klucz Idempotency-Key został już użyty dla innego żądania");
+            }
+            log.info("Powtórzone żądanie {} z kluczem Idempotency-Key dla użytkownika ID: {}", scope, userId);
+            return new IdempotentResult<>((T) awaitResult(existing), true);
+        }
+
+        try {
+            T result = operation.get();
+            mine.result.complete(result);
+            return new IdempotentResult<>(result, false);
+        } catch (RuntimeException e) {
+            synchronized (entries) {
+                entries.remove(storeKey, mine);
+            }
+            mine.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private Object awaitResult(Entry entry) {
+        try {
+            return entry.result.get(waitTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            throw new IdempotencyConflictException("Żądanie z tym kluczem Idempotency-Key jest nadal przetwarzane");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException("Przerwano oczekiwanie na wynik żądania");
+        }
+    }
+
+    /**
+     * SHA-256 typu i treści żądania w JSON
+     */
+    private byte[] fingerprint(Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            String type = request != null ? request.getClass().getName() : "null";
+            digest.update(type.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            return digest.digest(fingerprintMapper.writeValueAsBytes(request));
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Nie udało się wyliczyć skrótu żądania", e);
+        }
+    }
+
+    /**
+     * Usuwa najstarsze zakończone wpisy ponad limit
+     * Wpisy w trakcie przetwarzania zostają - przy samych takich wpisach limit jest chwilowo przekroczony
+     */
+    private void evictCompleted() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            if (iterator.next().result.isDone()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private void removeExpired(long now) {
+        long ttlMillis = TimeUnit.MINUTES.toMillis(ttlMinutes);
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (now - entry.createdAt <= ttlMillis) {
+                break; // dalsze wpisy są młodsze
+            }
+            if (entry.result.isDone()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Wynik operacji i informacja, czy pochodzi z zapamiętanej odpowiedzi
+     */
+    public record IdempotentResult<T>(T value, boolean replayed) {
+    }
+
+    private static final class Entry {
+
+        private final byte[] fingerprint;
+        private final long createdAt;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        Entry(byte[] fingerprint, long createdAt) {
+            this.fingerprint = fingerprint;
+            this.createdAt = createdAt;
+        }
+    }
+}
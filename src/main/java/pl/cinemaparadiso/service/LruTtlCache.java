@@ -0,0 +1,112 @@
+package pl.cinemaparadiso.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Ograniczona pamięć podręczna LRU z czasem życia wpisów i licznikami trafień
+ *
+ * Po przekroczeniu maxSize usuwany jest najdawniej używany wpis, a wpis starszy niż ttlMillis
+ * jest traktowany jak brak (i usuwany przy odczycie). Wartości są wczytywane poza blokadą
+ * (get -> zapytanie -> put), a każde unieważnienie podbija generację - put z wartością
+ * wczytaną przed unieważnieniem jest odrzucany, więc stara wartość nie wraca do pamięci.
+ */
+public class LruTtlCache<K, V> {
+
+    private final String name;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    public LruTtlCache(String name, int maxSize, long ttlMillis) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Rozmiar pamięci podręcznej " + name + " musi być dodatni");
+        }
+        this.name = name;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        // accessOrder = true - kolejność od najdawniej używanego
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Zwraca wartość albo null, jeśli jej nie ma lub wygasła
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (entry.expiresAt() <= System.currentTimeMillis()) {
+            entries.remove(key);
+            expirations++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value();
+    }
+
+    /**
+     * Generacja do przekazania do put - pobierana przed wczytaniem wartości
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Zapisuje wartość, jeśli od pobrania generacji nic nie zostało unieważnione
+     */
+    public synchronized void put(K key, V value, long loadedAtGeneration) {
+        if (loadedAtGeneration != generation) {
+            return;
+        }
+        entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttlMillis));
+        while (entries.size() > maxSize) {
+            Iterator<K> eldest = entries.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized void invalidate(K key) {
+        generation++;
+        entries.remove(key);
+    }
+
+    public synchronized void invalidateIf(Predicate<K> predicate) {
+        generation++;
+        entries.keySet().removeIf(predicate);
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+    }
+
+    public synchronized Stats stats() {
+        long requests = hits + misses;
+        return new Stats(name, entries.size(), maxSize, hits, misses,
+                requests > 0 ? (double) hits / requests : 0.0, evictions, expirations);
+    }
+
+    private record Entry<V>(V value, long expiresAt) {
+    }
+
+    /**
+     * Liczniki pamięci podręcznej (od startu aplikacji)
+     */
+    public record Stats(String name, int size, int maxSize, long hits, long misses,
+                        double hitRate, long evictions, long expirations) {
+    }
+}
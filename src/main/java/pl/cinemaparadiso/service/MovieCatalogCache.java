@@ -0,0 +1,159 @@
+package pl.cinemaparadiso.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import pl.cinemaparadiso.dto.MovieDTO;
+
+import java.util.List;
+
+/**
+ * Pamięć podręczna katalogu filmów
+ *
+ * Przechowuje dwa rodzaje wpisów:
+ * - szkielety MovieDTO (bez oceny zalogowanego użytkownika - ta jest dokładana per żądanie),
+ * - listy ID filmów dla stron katalogu, popularnych i najnowszych (wraz z liczbą wszystkich wyników).
+ * Listy zawierają tylko ID, więc zmiana jednego filmu unieważnia jeden szkielet, a nie wszystkie listy,
+ * w których film występuje.
+ *
+ * Unieważnianie po zatwierdzeniu transakcji zapisu:
+ * - nowy film: wszystkie listy,
+ * - zmiana lub usunięcie filmu: jego szkielet i wszystkie listy,
+ * - zmiana okładki: tylko szkielet,
+ * - ocena: szkielet i listy zależne od ocen (popularne, sortowanie po ocenie).
+ */
+@Slf4j
+@Service
+public class MovieCatalogCache {
+
+    private static final String RATING_DEPENDENT = "R|";
+    private static final String RATING_INDEPENDENT = "S|";
+
+    @Value("${movies.cache.max-movies:1000}")
+    private int maxMovies;
+
+    @Value("${movies.cache.max-lists:500}")
+    private int maxLists;
+
+    @Value("${movies.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private LruTtlCache<Long, MovieDTO> movies;
+    private LruTtlCache<String, MovieIdPage> lists;
+
+    @PostConstruct
+    void init() {
+        movies = new LruTtlCache<>("movies", maxMovies, ttlSeconds * 1000);
+        lists = new LruTtlCache<>("movie-lists", maxLists, ttlSeconds * 1000);
+    }
+
+    /**
+     * Klucz listy filmów
+     *
+     * @param ratingDependent - czy kolejność lub zawartość listy zależy od ocen
+     * @param parts - elementy klucza (rodzaj listy, parametry zapytania)
+     */
+    public static String listKey(boolean ratingDependent, Object... parts) {
+        StringBuilder key = new StringBuilder(ratingDependent ? RATING_DEPENDENT : RATING_INDEPENDENT);
+        for (Object part : parts) {
+            // Długość przed wartością - wartości z żądania (np. wyszukiwana fraza) nie skleją się w cudzy klucz
+            String value = String.valueOf(part);
+            key.append(value.length()).append(':').append(value).append('|');
+        }
+        return key.toString();
+    }
+
+    /**
+     * Zwraca kopię szkieletu filmu albo null
+     * Kopia - szkielety są współdzielone między żądaniami, a DTO jest modyfikowalne
+     */
+    public MovieDTO getMovie(Long id) {
+        MovieDTO skeleton = movies.get(id);
+        return skeleton != null ? skeleton.toBuilder().build() : null;
+    }
+
+    public long movieGeneration() {
+        return movies.generation();
+    }
+
+    public void putMovie(MovieDTO skeleton, long loadedAtGeneration) {
+        movies.put(skeleton.getId(), skeleton.toBuilder().userRating(null).build(), loadedAtGeneration);
+    }
+
+    public MovieIdPage getList(String key) {
+        return lists.get(key);
+    }
+
+    public long listGeneration() {
+        return lists.generation();
+    }
+
+    public void putList(String key, MovieIdPage page, long loadedAtGeneration) {
+        lists.put(key, page, loadedAtGeneration);
+    }
+
+    /**
+     * Po dodaniu filmu - zmieniają się wszystkie listy
+     */
+    public void movieCreated() {
+        runAfterCommit(lists::invalidateAll);
+    }
+
+    /**
+     * Po zmianie lub usunięciu filmu - jego szkielet i wszystkie listy
+     * (zmiana tytułu, gatunku czy daty premiery może zmienić skład i kolejność dowolnej listy)
+     */
+    public void movieChanged(Long movieId) {
+        runAfterCommit(() -> {
+            movies.invalidate(movieId);
+            lists.invalidateAll();
+        });
+    }
+
+    /**
+     * Po zmianie okładki - tylko szkielet (listy nie zależą od okładki)
+     */
+    public void posterChanged(Long movieId) {
+        runAfterCommit(() -> movies.invalidate(movieId));
+    }
+
+    /**
+     * Po ocenie filmu - szkielet (średnia i liczba ocen) oraz listy zależne od ocen
+     */
+    public void ratingChanged(Long movieId) {
+        runAfterCommit(() -> {
+            movies.invalidate(movieId);
+            lists.invalidateIf(key -> key.startsWith(RATING_DEPENDENT));
+        });
+    }
+
+    public List<LruTtlCache.Stats> stats() {
+        return List.of(movies.stats(), lists.stats());
+    }
+
+    /**
+     * Unieważnia po zatwierdzeniu transakcji - wcześniej inne żądania widzą jeszcze stare dane,
+     * a odczyt rozpoczęty przed unieważnieniem nie zapisze ich ponownie (sprawdzenie generacji)
+     */
+    private void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * ID filmów jednej listy (w kolejności) i liczba wszystkich wyników zapytania
+     */
+    public record MovieIdPage(List<Long> ids, long total) {
+    }
+}
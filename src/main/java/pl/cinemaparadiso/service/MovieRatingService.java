@@ -17,6 +17,9 @@ import pl.cinemaparadiso.repository.MovieRatingRepository;
 import pl.cinemaparadiso.repository.MovieRepository;
 import pl.cinemaparadiso.repository.UserRepository;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -31,36 +34,33 @@ public class MovieRatingService {
     private final MovieRatingRepository ratingRepository;
     private final MovieRepository movieRepository;
     private final UserRepository userRepository;
+    private final MovieCatalogCache catalogCache;
     
     /**
      * Ocenia film (lub aktualizuje istniejącą ocenę)
      */
     public MovieRatingDTO rateMovie(Long movieId, RateMovieDTO dto) {
-        // Pobierz zalogowanego użytkownika
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        if (auth == null || !auth.isAuthenticated()) {
-            throw new UnauthorizedException("Musisz być zalogowany, aby ocenić film");
-        }
-        
-        String username = auth.getName();
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new UnauthorizedException("Użytkownik nie znaleziony"));
+        // Zalogowany użytkownik z principala (bez zapytania o użytkownika po nazwie)
+        Long userId = currentUserId()
+                .orElseThrow(() -> new UnauthorizedException("Musisz być zalogowany, aby ocenić film"));
+        User user = userRepository.getReferenceById(userId);
         
         // Sprawdź czy film istnieje
         Movie movie = movieRepository.findById(movieId)
                 .orElseThrow(() -> new MovieNotFoundException(movieId));
         
-        // Sprawdź czy użytkownik już ocenił ten film
+        // Sprawdź czy użytkownik już ocenił ten film (z blokadą - stara ocena jest odejmowana od agregatu)
         Optional<MovieRating> existingRating = ratingRepository
-                .findByUserIdAndMovieId(user.getId(), movieId);
+                .findByUserIdAndMovieIdForUpdate(userId, movieId);
         
         MovieRating rating;
         if (existingRating.isPresent()) {
             // Aktualizuj istniejącą ocenę
             rating = existingRating.get();
+            movieRepository.applyRatingChange(movieId, dto.getRating() - rating.getRating(), 0);
             rating.setRating(dto.getRating());
-            log.info("Aktualizacja oceny filmu {} przez użytkownika {}: {} gwiazdek", 
-                    movieId, username, dto.getRating());
+            log.info("Aktualizacja oceny filmu {} przez użytkownika ID {}: {} gwiazdek", 
+                    movieId, userId, dto.getRating());
         } else {
             // Utwórz nową ocenę
             rating = MovieRating.builder()
@@ -68,11 +68,14 @@ public class MovieRatingService {
                     .movie(movie)
                     .rating(dto.getRating())
                     .build();
-            log.info("Nowa ocena filmu {} przez użytkownika {}: {} gwiazdek", 
-                    movieId, username, dto.getRating());
+            movieRepository.applyRatingChange(movieId, dto.getRating(), 1);
+            log.info("Nowa ocena filmu {} przez użytkownika ID {}: {} gwiazdek", 
+                    movieId, userId, dto.getRating());
         }
         
         rating = ratingRepository.save(rating);
+        // Średnia i liczba ocen filmu się zmieniły - szkielet filmu i listy zależne od ocen do odświeżenia
+        catalogCache.ratingChanged(movieId);
         return toDTO(rating);
     }
     
@@ -81,19 +84,28 @@ public class MovieRatingService {
      */
     @Transactional(readOnly = true)
     public Optional<Integer> getUserRating(Long movieId) {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        if (auth == null || !auth.isAuthenticated()) {
-            return Optional.empty();
+        return currentUserId()
+                .flatMap(userId -> ratingRepository.findByUserIdAndMovieId(userId, movieId))
+                .map(MovieRating::getRating);
+    }
+    
+    /**
+     * Pobiera oceny zalogowanego użytkownika dla podanych filmów (jedno zapytanie)
+     * 
+     * @return mapa ID filmu -> ocena (pusta dla niezalogowanego; filmy bez oceny są pomijane)
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, Integer> getUserRatings(Collection<Long> movieIds) {
+        Optional<Long> userId = currentUserId();
+        if (userId.isEmpty() || movieIds.isEmpty()) {
+            return Map.of();
         }
         
-        String username = auth.getName();
-        User user = userRepository.findByUsername(username).orElse(null);
-        if (user == null) {
-            return Optional.empty();
+        Map<Long, Integer> ratings = new HashMap<>();
+        for (Object[] row : ratingRepository.findRatingsByUserIdAndMovieIds(userId.get(), movieIds)) {
+            ratings.put((Long) row[0], (Integer) row[1]);
         }
-        
-        return ratingRepository.findByUserIdAndMovieId(user.getId(), movieId)
-                .map(MovieRating::getRating);
+        return ratings;
     }
     
     /**
@@ -120,6 +132,18 @@ public class MovieRatingService {
         return ratingRepository.count();
     }
     
+    /**
+     * ID zalogowanego użytkownika z principala (encja User ustawiana przy uwierzytelnieniu)
+     * Pusty dla niezalogowanego (anonymousUser)
+     */
+    private Optional<Long> currentUserId() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !auth.isAuthenticated() || !(auth.getPrincipal() instanceof User user)) {
+            return Optional.empty();
+        }
+        return Optional.of(user.getId());
+    }
+    
     private MovieRatingDTO toDTO(MovieRating rating) {
         return MovieRatingDTO.builder()
                 .id(rating.getId())
@@ -16,9 +16,15 @@ import pl.cinemaparadiso.entity.Movie;
 import pl.cinemaparadiso.exception.MovieAlreadyExistsException;
 import pl.cinemaparadiso.exception.MovieNotFoundException;
 import pl.cinemaparadiso.repository.MovieRepository;
+import pl.cinemaparadiso.service.MovieCatalogCache.MovieIdPage;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 
 /**
  * Service layer dla filmów - logika biznesowa
@@ -36,25 +42,163 @@ public class MovieService {
     
     private final MovieRepository movieRepository;
     private final MovieRatingService ratingService;
+    private final MovieCatalogCache catalogCache;
+    
+    // Pola sortowania zależne od ocen - listy posortowane po nich są unieważniane przy każdej ocenie
+    private static final Set<String> RATING_SORT_PROPERTIES = Set.of("averageRating", "ratingCount", "ratingSum");
     
     /**
-     * Konwertuje encję Movie na DTO
+     * Konwertuje encję Movie na DTO (z oceną zalogowanego użytkownika)
      * 
      * @param movie - encja Movie
      * @return MovieDTO
      */
     private MovieDTO toDTO(Movie movie) {
-        Long movieId = movie.getId();
+        return toDTO(movie, ratingService.getUserRating(movie.getId()).orElse(null));
+    }
+    
+    /**
+     * Strona filmów przez pamięć podręczną katalogu
+     * Przy trafieniu filmy są składane ze szkieletów DTO; przy braku wynik zapytania jest zapamiętywany
+     * 
+     * @param key - klucz listy (MovieCatalogCache.listKey)
+     * @param loader - zapytanie wykonywane przy braku w pamięci podręcznej
+     */
+    private Page<MovieDTO> cachedPage(String key, Pageable pageable, Supplier<Page<Movie>> loader) {
+        MovieIdPage cached = catalogCache.getList(key);
+        if (cached != null) {
+            return new PageImpl<>(withUserRatings(hydrate(cached.ids())), pageable, cached.total());
+        }
         
-        // Pobierz statystyki ocen
-        Double avgRating = ratingService.getAverageRating(movieId);
-        Long totalRatings = ratingService.getRatingCount(movieId);
-        java.util.Optional<Integer> userRating = ratingService.getUserRating(movieId);
+        long listGeneration = catalogCache.listGeneration();
+        long movieGeneration = catalogCache.movieGeneration();
+        Page<Movie> movies = loader.get();
+        List<MovieDTO> skeletons = cacheSkeletons(movies.getContent(), movieGeneration);
+        catalogCache.putList(key, new MovieIdPage(idsOf(skeletons), movies.getTotalElements()), listGeneration);
+        return new PageImpl<>(withUserRatings(skeletons), pageable, movies.getTotalElements());
+    }
+    
+    /**
+     * Lista filmów (bez paginacji) przez pamięć podręczną katalogu
+     */
+    private List<MovieDTO> cachedList(String key, Supplier<List<Movie>> loader) {
+        MovieIdPage cached = catalogCache.getList(key);
+        if (cached != null) {
+            return withUserRatings(hydrate(cached.ids()));
+        }
         
+        long listGeneration = catalogCache.listGeneration();
+        long movieGeneration = catalogCache.movieGeneration();
+        List<MovieDTO> skeletons = cacheSkeletons(loader.get(), movieGeneration);
+        catalogCache.putList(key, new MovieIdPage(idsOf(skeletons), skeletons.size()), listGeneration);
+        return withUserRatings(skeletons);
+    }
+    
+    /**
+     * Składa filmy listy ze szkieletów - brakujące (wygasłe lub unieważnione) pobiera jednym zapytaniem
+     * Filmy, których już nie ma w bazie, są pomijane
+     */
+    private List<MovieDTO> hydrate(List<Long> ids) {
+        Map<Long, MovieDTO> byId = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            MovieDTO skeleton = catalogCache.getMovie(id);
+            if (skeleton != null) {
+                byId.put(id, skeleton);
+            } else {
+                missing.add(id);
+            }
+        }
+        
+        if (!missing.isEmpty()) {
+            long movieGeneration = catalogCache.movieGeneration();
+            for (MovieDTO skeleton : cacheSkeletons(movieRepository.findAllById(missing), movieGeneration)) {
+                byId.put(skeleton.getId(), skeleton);
+            }
+        }
+        
+        List<MovieDTO> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            MovieDTO movie = byId.get(id);
+            if (movie != null) {
+                result.add(movie);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Konwertuje filmy na szkielety DTO (bez oceny użytkownika) i zapamiętuje je
+     * 
+     * @param movieGeneration - generacja pobrana przed zapytaniem o filmy
+     */
+    private List<MovieDTO> cacheSkeletons(List<Movie> movies, long movieGeneration) {
+        List<MovieDTO> skeletons = new ArrayList<>(movies.size());
+        for (Movie movie : movies) {
+            MovieDTO skeleton = toDTO(movie, null);
+            catalogCache.putMovie(skeleton, movieGeneration);
+            skeletons.add(skeleton);
+        }
+        return skeletons;
+    }
+    
+    /**
+     * Uzupełnia DTO o oceny zalogowanego użytkownika - jedno zapytanie dla całej listy
+     * DTO muszą być kopiami należącymi do bieżącego żądania (nie szkieletami z pamięci podręcznej)
+     */
+    private List<MovieDTO> withUserRatings(List<MovieDTO> movies) {
+        Map<Long, Integer> userRatings = ratingService.getUserRatings(idsOf(movies));
+        for (MovieDTO movie : movies) {
+            movie.setUserRating(userRatings.get(movie.getId()));
+        }
+        return movies;
+    }
+    
+    private static List<Long> idsOf(List<MovieDTO> movies) {
+        return movies.stream().map(MovieDTO::getId).toList();
+    }
+    
+    /**
+     * Buduje zapytanie tsquery z frazy wpisanej przez użytkownika
+     * Zostają tylko litery i cyfry (znaki specjalne tsquery nie przechodzą), słowa są łączone przez AND
+     * i dopasowywane jako prefiks - "incep nol" znajdzie "Inception" Christophera Nolana
+     * 
+     * @return zapytanie tsquery albo pusty napis, jeśli fraza nie zawiera żadnego słowa
+     */
+    private static String toSearchQuery(String search) {
+        StringBuilder query = new StringBuilder();
+        for (String word : search.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (!query.isEmpty()) {
+                query.append(" & ");
+            }
+            query.append(word).append(":*");
+        }
+        return query.toString();
+    }
+    
+    /**
+     * Czy wynik zapytania z podanym sortowaniem zależy od ocen filmów
+     */
+    private static boolean dependsOnRatings(Sort sort) {
+        return sort.stream().anyMatch(order -> RATING_SORT_PROPERTIES.contains(order.getProperty()));
+    }
+    
+    /**
+     * Konwertuje encję Movie na DTO
+     * Statystyki ocen pochodzą ze zdenormalizowanych kolumn filmu (bez dodatkowych zapytań)
+     * 
+     * @param movie - encja Movie
+     * @param userRating - ocena zalogowanego użytkownika (null jeśli nie ocenił)
+     * @return MovieDTO
+     */
+    private MovieDTO toDTO(Movie movie, Integer userRating) {
         // Zaokrąglij średnią ocenę do 1 miejsca po przecinku
         Double roundedAvgRating = null;
-        if (avgRating != null) {
-            roundedAvgRating = Math.round(avgRating * 10.0) / 10.0;
+        if (movie.getAverageRating() != null) {
+            roundedAvgRating = Math.round(movie.getAverageRating() * 10.0) / 10.0;
         }
         
         return MovieDTO.builder()
@@ -68,8 +212,8 @@ public class MovieService {
                 .year(movie.getYear())
                 .posterPath(movie.getPosterPath())
                 .averageRating(roundedAvgRating)
-                .totalRatings(totalRatings)
-                .userRating(userRating.orElse(null))
+                .totalRatings(movie.getRatingCount() != null ? movie.getRatingCount() : 0L)
+                .userRating(userRating)
                 .build();
     }
     
@@ -81,9 +225,7 @@ public class MovieService {
     @Transactional(readOnly = true)
     public List<MovieDTO> getAllMovies() {
         log.debug("Pobieranie wszystkich filmów");
-        return movieRepository.findAll().stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
+        return cachedList(MovieCatalogCache.listKey(false, "all"), movieRepository::findAll);
     }
     
     /**
@@ -95,22 +237,30 @@ public class MovieService {
     @Transactional(readOnly = true)
     public Page<MovieDTO> getAllMovies(Pageable pageable) {
         log.debug("Pobieranie filmów z paginacją: page={}, size={}", pageable.getPageNumber(), pageable.getPageSize());
-        return movieRepository.findAll(pageable)
-                .map(this::toDTO);
+        String key = MovieCatalogCache.listKey(dependsOnRatings(pageable.getSort()),
+                "page", pageable.getPageNumber(), pageable.getPageSize(), pageable.getSort());
+        return cachedPage(key, pageable, () -> movieRepository.findAll(pageable));
     }
     
     /**
-     * Wyszukuje filmy po tytule (z paginacją)
+     * Wyszukuje filmy pełnotekstowo po tytule, reżyserze, gatunku i opisie (z paginacją)
+     * Wyniki są posortowane od najlepiej dopasowanych (sortowanie z pageable jest pomijane)
      * 
-     * @param title - tytuł do wyszukania (częściowe dopasowanie, case-insensitive)
+     * @param search - wyszukiwana fraza (każde słowo musi pasować, także jako początek słowa)
      * @param pageable - parametry paginacji
-     * @return strona z filmami jako DTO
+     * @return strona z filmami jako DTO (pusta, jeśli fraza nie zawiera żadnego słowa)
      */
     @Transactional(readOnly = true)
-    public Page<MovieDTO> searchMoviesByTitle(String title, Pageable pageable) {
-        log.debug("Wyszukiwanie filmów po tytule: '{}'", title);
-        return movieRepository.findByTitleContainingIgnoreCase(title, pageable)
-                .map(this::toDTO);
+    public Page<MovieDTO> searchMovies(String search, Pageable pageable) {
+        log.debug("Wyszukiwanie filmów: '{}'", search);
+        String query = toSearchQuery(search);
+        if (query.isEmpty()) {
+            return Page.empty(pageable);
+        }
+        
+        Pageable unsorted = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+        String key = MovieCatalogCache.listKey(false, "search", query, pageable.getPageNumber(), pageable.getPageSize());
+        return cachedPage(key, unsorted, () -> movieRepository.searchFullText(query, unsorted));
     }
     
     /**
@@ -123,8 +273,9 @@ public class MovieService {
     @Transactional(readOnly = true)
     public Page<MovieDTO> searchMoviesByGenre(String genre, Pageable pageable) {
         log.debug("Wyszukiwanie filmów po gatunku: '{}'", genre);
-        return movieRepository.findByGenre(genre, pageable)
-                .map(this::toDTO);
+        String key = MovieCatalogCache.listKey(dependsOnRatings(pageable.getSort()), "genre",
+                genre, pageable.getPageNumber(), pageable.getPageSize(), pageable.getSort());
+        return cachedPage(key, pageable, () -> movieRepository.findByGenre(genre, pageable));
     }
     
     /**
@@ -137,9 +288,15 @@ public class MovieService {
     @Transactional(readOnly = true)
     public MovieDTO getMovieById(Long id) {
         log.debug("Pobieranie filmu o ID: {}", id);
-        return movieRepository.findById(id)
-                .map(this::toDTO)
-                .orElseThrow(() -> new MovieNotFoundException(id));
+        MovieDTO movie = catalogCache.getMovie(id);
+        if (movie == null) {
+            long movieGeneration = catalogCache.movieGeneration();
+            movie = toDTO(movieRepository.findById(id)
+                    .orElseThrow(() -> new MovieNotFoundException(id)), null);
+            catalogCache.putMovie(movie, movieGeneration);
+        }
+        movie.setUserRating(ratingService.getUserRating(id).orElse(null));
+        return movie;
     }
     
     /**
@@ -173,6 +330,7 @@ public class MovieService {
         // Zapisz w bazie
         Movie savedMovie = movieRepository.save(movie);
         log.info("Film utworzony pomyślnie: ID={}, tytuł={}", savedMovie.getId(), savedMovie.getTitle());
+        catalogCache.movieCreated();
         
         // Zwróć jako DTO
         return toDTO(savedMovie);
@@ -225,6 +383,7 @@ public class MovieService {
         // Zapisz zmiany
         Movie updatedMovie = movieRepository.save(movie);
         log.info("Film zaktualizowany pomyślnie: ID={}, tytuł={}", updatedMovie.getId(), updatedMovie.getTitle());
+        catalogCache.movieChanged(id);
         
         // Zwróć jako DTO
         return toDTO(updatedMovie);
@@ -247,6 +406,7 @@ public class MovieService {
         
         movieRepository.deleteById(id);
         log.info("Film usunięty pomyślnie: ID={}, tytuł={}", id, movie.getTitle());
+        catalogCache.movieChanged(id);
         
         // Zwróć ścieżkę do pliku, aby można było go usunąć
         return posterPath;
@@ -271,6 +431,7 @@ public class MovieService {
         Movie updatedMovie = movieRepository.save(movie);
         
         log.info("Okładka zaktualizowana: ID={}, nowa ścieżka={}", id, posterPath);
+        catalogCache.posterChanged(id);
         
         return new UpdatePosterResult(toDTO(updatedMovie), oldPosterPath);
     }
@@ -285,9 +446,8 @@ public class MovieService {
     public List<MovieDTO> getMostPopularMovies(int limit) {
         log.debug("Pobieranie {} najpopularniejszych filmów", limit);
         Pageable pageable = PageRequest.of(0, limit);
-        return movieRepository.findMostPopularMovies(pageable).stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
+        return cachedList(MovieCatalogCache.listKey(true, "popular", limit),
+                () -> movieRepository.findMostPopularMovies(pageable));
     }
     
     /**
@@ -300,19 +460,20 @@ public class MovieService {
     public List<MovieDTO> getLatestReleases(int limit) {
         log.debug("Pobieranie {} najnowszych premier", limit);
         Pageable pageable = PageRequest.of(0, limit);
-        return movieRepository.findLatestReleases(pageable).stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
+        return cachedList(MovieCatalogCache.listKey(false, "latest", limit),
+                () -> movieRepository.findLatestReleases(pageable));
     }
     
     /**
      * Pobiera filmy posortowane po średniej ocenie
-     * Wymaga pobrania wszystkich filmów i posortowania w pamięci (oceny są w osobnej tabeli)
+     * Sortowanie i paginacja w bazie po zdenormalizowanych kolumnach ocen (indeks idx_movies_rating_sort),
+     * tak samo tanie jak sortowanie po tytule. Przy równej średniej wyżej jest film z większą liczbą ocen,
+     * a filmy bez ocen są traktowane jak najniżej oceniane.
      * 
      * @param page - numer strony
      * @param size - rozmiar strony
      * @param direction - kierunek sortowania (ASC/DESC)
-     * @param search - wyszukiwanie po tytule (opcjonalne)
+     * @param search - wyszukiwanie pełnotekstowe (opcjonalne)
      * @param genre - filtrowanie po gatunku (opcjonalne)
      * @return strona z filmami posortowanymi po ocenach
      */
@@ -320,43 +481,30 @@ public class MovieService {
     public Page<MovieDTO> getAllMoviesSortedByRating(int page, int size, Sort.Direction direction, String search, String genre) {
         log.debug("Pobieranie filmów posortowanych po ocenach: page={}, size={}, direction={}", page, size, direction);
         
-        // Pobierz wszystkie filmy (lub przefiltrowane)
-        List<Movie> allMovies;
+        // Kolejność zapisana w zapytaniach (z NULLS LAST/FIRST) - pageable tylko do paginacji
+        Pageable pageable = PageRequest.of(page, size);
+        boolean descending = direction == Sort.Direction.DESC;
+        
         if (search != null && !search.trim().isEmpty()) {
-            allMovies = movieRepository.findByTitleContainingIgnoreCase(search.trim());
-        } else if (genre != null && !genre.trim().isEmpty()) {
-            allMovies = movieRepository.findByGenre(genre.trim());
-        } else {
-            allMovies = movieRepository.findAll();
+            String query = toSearchQuery(search);
+            if (query.isEmpty()) {
+                return Page.empty(pageable);
+            }
+            int sign = descending ? 1 : -1;
+            return cachedPage(MovieCatalogCache.listKey(true, "rating", direction, "search", query, page, size),
+                    pageable, () -> movieRepository.searchFullTextSortedByRating(query, sign, pageable));
         }
-        
-        // Konwertuj na DTO i posortuj po średniej ocenie
-        List<MovieDTO> sortedMovies = allMovies.stream()
-                .map(this::toDTO)
-                .sorted((m1, m2) -> {
-                    Double rating1 = m1.getAverageRating() != null ? m1.getAverageRating() : 0.0;
-                    Double rating2 = m2.getAverageRating() != null ? m2.getAverageRating() : 0.0;
-                    
-                    // Jeśli oceny są równe, sortuj po liczbie ocen (więcej ocen = wyżej)
-                    int comparison = rating1.compareTo(rating2);
-                    if (comparison == 0) {
-                        Long count1 = m1.getTotalRatings() != null ? m1.getTotalRatings() : 0L;
-                        Long count2 = m2.getTotalRatings() != null ? m2.getTotalRatings() : 0L;
-                        comparison = count1.compareTo(count2);
-                    }
-                    
-                    return direction == Sort.Direction.DESC ? -comparison : comparison;
-                })
-                .collect(Collectors.toList());
-        
-        // Zastosuj paginację
-        int start = page * size;
-        int end = Math.min(start + size, sortedMovies.size());
-        List<MovieDTO> pageContent = start < sortedMovies.size() 
-                ? sortedMovies.subList(start, end) 
-                : List.of();
-        
-        return new PageImpl<>(pageContent, PageRequest.of(page, size), sortedMovies.size());
+        if (genre != null && !genre.trim().isEmpty()) {
+            String trimmedGenre = genre.trim();
+            return cachedPage(MovieCatalogCache.listKey(true, "rating", direction, "genre", trimmedGenre, page, size),
+                    pageable, () -> descending
+                            ? movieRepository.findByGenreOrderByRatingDesc(trimmedGenre, pageable)
+                            : movieRepository.findByGenreOrderByRatingAsc(trimmedGenre, pageable));
+        }
+        return cachedPage(MovieCatalogCache.listKey(true, "rating", direction, page, size), pageable,
+                () -> descending
+                        ? movieRepository.findAllOrderByRatingDesc(pageable)
+                        : movieRepository.findAllOrderByRatingAsc(pageable));
     }
     
     /**
@@ -0,0 +1,201 @@
+package pl.cinemaparadiso.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.cinemaparadiso.entity.OutboxEvent;
+import pl.cinemaparadiso.repository.OutboxEventRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Przekaźnik skrzynki nadawczej - dostarcza zdarzenia z outbox_events do słuchaczy w aplikacji
+ *
+ * Co chwilę blokuje paczkę niedostarczonych zdarzeń (FOR UPDATE SKIP LOCKED) i publikuje je
+ * jako ReservationDomainEvent na puli wątków słuchaczy. Zdarzenia różnych rezerwacji są
+ * dostarczane równolegle. Zdarzenie jest oznaczane jako dostarczone dopiero gdy wszyscy
+ * słuchacze zakończą je bez błędu; w przeciwnym razie wraca do skrzynki z rosnącym odstępem
+ * między próbami (co najmniej raz, nie dokładnie raz).
+ *
+ * Zdarzenia jednej rezerwacji są dostarczane w kolejności zapisu, także między paczkami
+ * i instancjami: paczka zawiera tylko najstarsze niedostarczone zdarzenie każdej rezerwacji
+ * (OutboxEventRepository.lockNextBatch). Zdarzenie czekające na ponowienie wstrzymuje kolejne
+ * zdarzenia swojej rezerwacji. Po max-attempts nieudanych próbach zdarzenie staje się martwe (failed_at) -
+ * kolejne zdarzenia rezerwacji są dostarczane dalej, a martwe zdarzenie administrator może ponowić
+ * albo pominąć (OutboxService, /api/admin/outbox/dead).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OutboxRelay {
+
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxService outboxService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${outbox.relay.batch-size:100}")
+    private int batchSize;
+
+    @Value("${outbox.relay.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${outbox.relay.listener-timeout-ms:30000}")
+    private long listenerTimeoutMillis;
+
+    @Value("${outbox.relay.retention-days:7}")
+    private long retentionDays;
+
+    @Value("${outbox.relay.listener-threads:4}")
+    private int listenerThreads;
+
+    private ExecutorService listenerExecutor;
+
+    @PostConstruct
+    void initListenerExecutor() {
+        AtomicInteger threadCounter = new AtomicInteger();
+        listenerExecutor = Executors.newFixedThreadPool(listenerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "outbox-listener-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opróżnia skrzynkę paczkami, dopóki są w niej zdarzenia gotowe do dostarczenia
+     * Paczka może być niepełna mimo kolejnych zdarzeń (jedno zdarzenie rezerwacji na paczkę),
+     * więc kończymy dopiero na pustej paczce
+     */
+    @Scheduled(fixedDelayString = "${outbox.relay.poll-ms:1000}")
+    public void relayPendingEvents() {
+        while (true) {
+            Integer relayed = transactionTemplate.execute(status -> relayBatch());
+            if (relayed == null || relayed == 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Usuwa dostarczone zdarzenia starsze niż outbox.relay.retention-days
+     */
+    @Scheduled(cron = "${outbox.relay.cleanup-cron:0 30 3 * * *}")
+    public void removePublishedEvents() {
+        LocalDateTime before = LocalDateTime.now().minusDays(retentionDays);
+        Integer removed = transactionTemplate.execute(status -> outboxEventRepository.deletePublishedBefore(before));
+        log.info("Usunięto {} dostarczonych zdarzeń ze skrzynki nadawczej", removed);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        listenerExecutor.shutdown();
+    }
+
+    private int relayBatch() {
+        List<OutboxEvent> batch = outboxEventRepository.lockNextBatch(LocalDateTime.now(), batchSize);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        Map<Long, List<OutboxEvent>> byReservation = new LinkedHashMap<>();
+        batch.forEach(event -> byReservation.computeIfAbsent(event.getAggregateId(), id -> new ArrayList<>()).add(event));
+
+        List<List<OutboxEvent>> groups = new ArrayList<>(byReservation.values());
+        List<Future<DispatchResult>> dispatches = groups.stream()
+                .map(events -> listenerExecutor.submit(() -> dispatchInOrder(events)))
+                .toList();
+
+        // Wynik zapisujemy w wątku przekaźnika - wątki słuchaczy nie zmieniają encji
+        long deadline = System.currentTimeMillis() + listenerTimeoutMillis;
+        int delivered = 0;
+        for (int group = 0; group < groups.size(); group++) {
+            List<OutboxEvent> events = groups.get(group);
+            Future<DispatchResult> dispatch = dispatches.get(group);
+            DispatchResult result;
+            try {
+                result = dispatch.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                dispatch.cancel(true);
+                result = new DispatchResult(0, "Przekroczono czas obsługi zdarzenia (" + listenerTimeoutMillis + " ms)");
+            } catch (ExecutionException e) {
+                result = new DispatchResult(0, e.getCause().toString());
+            } catch (InterruptedException e) {
+                // Zamykanie aplikacji - niedostarczone zdarzenia zostaną w skrzynce
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            LocalDateTime now = LocalDateTime.now();
+            for (int i = 0; i < events.size(); i++) {
+                if (i < result.delivered()) {
+                    events.get(i).setPublishedAt(now);
+                    delivered++;
+                } else {
+                    scheduleRetry(events.get(i), result.error());
+                }
+            }
+        }
+
+        if (delivered < batch.size()) {
+            log.warn("Dostarczono {} z {} zdarzeń, pozostałe zostaną ponowione", delivered, batch.size());
+        }
+        return batch.size();
+    }
+
+    /**
+     * Dostarcza zdarzenia jednej rezerwacji po kolei - po pierwszym błędzie pozostałe czekają na ponowienie
+     */
+    private DispatchResult dispatchInOrder(List<OutboxEvent> events) {
+        for (int i = 0; i < events.size(); i++) {
+            OutboxEvent event = events.get(i);
+            try {
+                eventPublisher.publishEvent(outboxService.fromJson(event));
+            } catch (RuntimeException e) {
+                log.warn("Błąd obsługi zdarzenia {} (ID: {}) dla rezerwacji ID: {}: {}",
+                        event.getEventType(), event.getId(), event.getAggregateId(), e.getMessage());
+                return new DispatchResult(i, e.getClass().getSimpleName() + ": " + e.getMessage());
+            }
+        }
+        return new DispatchResult(events.size(), null);
+    }
+
+    private void scheduleRetry(OutboxEvent event, String error) {
+        int attempts = event.getAttempts() + 1;
+        // 2, 4, 8... sekund, najwyżej 10 minut
+        long backoffSeconds = Math.min(600, 1L << Math.min(attempts, 10));
+        event.setAttempts(attempts);
+        event.setLastError(error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+        event.setNextAttemptAt(LocalDateTime.now().plusSeconds(backoffSeconds));
+        if (attempts >= maxAttempts) {
+            event.setFailedAt(LocalDateTime.now());
+            log.error("Zdarzenie {} (ID: {}) dla rezerwacji ID: {} nie zostało dostarczone po {} próbach - " +
+                            "oznaczone jako martwe, kolejne zdarzenia rezerwacji nie czekają na nie",
+                    event.getEventType(), event.getId(), event.getAggregateId(), attempts);
+        }
+    }
+
+    /**
+     * Liczba zdarzeń dostarczonych po kolei od początku listy i błąd, który przerwał dostarczanie
+     */
+    private record DispatchResult(int delivered, String error) {
+    }
+}
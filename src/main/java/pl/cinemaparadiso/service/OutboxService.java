@@ -0,0 +1,151 @@
+package pl.cinemaparadiso.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import pl.cinemaparadiso.dto.OutboxEventDTO;
+import pl.cinemaparadiso.entity.OutboxEvent;
+import pl.cinemaparadiso.entity.Reservation;
+import pl.cinemaparadiso.enums.OutboxEventType;
+import pl.cinemaparadiso.enums.PaymentMethod;
+import pl.cinemaparadiso.repository.OutboxEventRepository;
+import pl.cinemaparadiso.repository.ReservationRepository.OutboxEventSource;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Zapis zdarzeń domenowych rezerwacji do skrzynki nadawczej (outbox_events)
+ *
+ * Zdarzenie trafia do bazy w tej samej transakcji co zmiana rezerwacji - jeśli transakcja
+ * zostanie wycofana, zdarzenia nie ma; jeśli zostanie zatwierdzona, OutboxRelay na pewno je dostarczy.
+ * Skutki uboczne (bilety, logi, statystyki) nie spowalniają więc żądania HTTP.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Zapisuje zdarzenie dla rezerwacji (wymaga trwającej transakcji)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(OutboxEventType type, Reservation reservation) {
+        outboxEventRepository.save(toOutboxEvent(type, reservation.getId(), reservation.getUser().getId(),
+                reservation.getScreening().getId(), reservation.getTotalPrice(), reservation.getPaymentMethod(),
+                LocalDateTime.now()));
+
+        log.debug("Zapisano zdarzenie {} dla rezerwacji ID: {}", type, reservation.getId());
+    }
+
+    /**
+     * Zapisuje to samo zdarzenie dla wielu rezerwacji zmienionych zapytaniem masowym (wymaga trwającej transakcji)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordAll(OutboxEventType type, List<OutboxEventSource> reservations) {
+        LocalDateTime now = LocalDateTime.now();
+        outboxEventRepository.saveAll(reservations.stream()
+                .map(source -> toOutboxEvent(type, source.getId(), source.getUserId(), source.getScreeningId(),
+                        source.getTotalPrice(), source.getPaymentMethod(), now))
+                .toList());
+
+        log.debug("Zapisano {} zdarzeń {}", reservations.size(), type);
+    }
+
+    /**
+     * Martwe zdarzenia - niedostarczone po wyczerpaniu limitu prób
+     */
+    @Transactional(readOnly = true)
+    public List<OutboxEventDTO> getDeadEvents() {
+        return outboxEventRepository.findByFailedAtIsNotNullAndPublishedAtIsNullOrderById().stream()
+                .map(this::mapToDTO)
+                .toList();
+    }
+
+    /**
+     * Przywraca martwe zdarzenie do skrzynki - przekaźnik spróbuje je dostarczyć od nowa
+     * Kolejne zdarzenia rezerwacji mogły zostać już dostarczone, więc słuchacze dostaną je poza kolejnością
+     */
+    @Transactional
+    public OutboxEventDTO retryDeadEvent(Long eventId) {
+        OutboxEvent event = findDeadEvent(eventId);
+        event.setFailedAt(null);
+        event.setAttempts(0);
+        event.setNextAttemptAt(LocalDateTime.now());
+
+        log.info("Martwe zdarzenie {} (ID: {}) przywrócone do skrzynki", event.getEventType(), eventId);
+        return mapToDTO(event);
+    }
+
+    /**
+     * Pomija martwe zdarzenie - zostaje oznaczone jako dostarczone i usunięte razem z innymi dostarczonymi
+     */
+    @Transactional
+    public OutboxEventDTO skipDeadEvent(Long eventId) {
+        OutboxEvent event = findDeadEvent(eventId);
+        event.setPublishedAt(LocalDateTime.now());
+
+        log.info("Martwe zdarzenie {} (ID: {}) pominięte przez administratora", event.getEventType(), eventId);
+        return mapToDTO(event);
+    }
+
+    ReservationDomainEvent fromJson(OutboxEvent outboxEvent) {
+        try {
+            return objectMapper.readValue(outboxEvent.getPayload(), ReservationDomainEvent.class)
+                    .withEventId(outboxEvent.getId());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Nieprawidłowa treść zdarzenia ID: " + outboxEvent.getId(), e);
+        }
+    }
+
+    private OutboxEvent findDeadEvent(Long eventId) {
+        OutboxEvent event = outboxEventRepository.findById(eventId)
+                .orElseThrow(() -> new IllegalArgumentException("Zdarzenie o ID " + eventId + " nie istnieje"));
+        if (event.getFailedAt() == null || event.getPublishedAt() != null) {
+            throw new IllegalArgumentException("Zdarzenie o ID " + eventId + " nie jest martwym zdarzeniem");
+        }
+        return event;
+    }
+
+    private OutboxEventDTO mapToDTO(OutboxEvent event) {
+        return OutboxEventDTO.builder()
+                .id(event.getId())
+                .eventType(event.getEventType())
+                .reservationId(event.getAggregateId())
+                .attempts(event.getAttempts())
+                .lastError(event.getLastError())
+                .createdAt(event.getCreatedAt())
+                .failedAt(event.getFailedAt())
+                .build();
+    }
+
+    private OutboxEvent toOutboxEvent(OutboxEventType type, Long reservationId, Long userId, Long screeningId,
+                                      BigDecimal amount, PaymentMethod paymentMethod, LocalDateTime now) {
+        ReservationDomainEvent event = new ReservationDomainEvent(
+                null, type, reservationId, userId, screeningId, amount, paymentMethod, now);
+
+        return OutboxEvent.builder()
+                .eventType(type)
+                .aggregateId(reservationId)
+                .payload(toJson(event))
+                .createdAt(now)
+                .nextAttemptAt(now)
+                .build();
+    }
+
+    private String toJson(ReservationDomainEvent event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Nie udało się zapisać zdarzenia " + event.type(), e);
+        }
+    }
+}
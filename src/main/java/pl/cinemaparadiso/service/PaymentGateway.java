@@ -0,0 +1,43 @@
+package pl.cinemaparadiso.service;
+
+import pl.cinemaparadiso.dto.PaymentRequestDTO;
+import pl.cinemaparadiso.enums.PaymentMethod;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Set;
+
+/**
+ * Bramka płatności dla jednej lub kilku metod płatności (karta, BLIK, PayPal...)
+ *
+ * Implementacje są wywoływane wyłącznie przez PaymentGatewayRouter, który pilnuje
+ * limitu czasu, liczby równoczesnych wywołań i bezpiecznika danej bramki.
+ */
+public interface PaymentGateway {
+
+    /**
+     * Krótka nazwa bramki - używana w logach i w kluczach konfiguracji (payments.gateway.{name}.*)
+     */
+    String getName();
+
+    Set<PaymentMethod> getSupportedMethods();
+
+    /**
+     * Obciąża klienta
+     *
+     * @return wynik: zaakceptowana (z ID transakcji bramki) albo odrzucona (np. brak środków)
+     * @throws RuntimeException przy błędzie technicznym (liczony przez bezpiecznik bramki)
+     */
+    PaymentGatewayResult charge(PaymentRequestDTO paymentRequest, BigDecimal amount);
+
+    /**
+     * Otwiera plik rozliczeniowy bramki za dany dzień
+     * Format CSV: transaction_id,reservation_id,payment_method,amount,settled_at
+     * (wiersz nagłówka, potem transakcje posortowane rosnąco po transaction_id)
+     *
+     * @return zawartość pliku (pusta, jeśli bramka nie rozliczała w tym dniu żadnych transakcji)
+     */
+    Reader openSettlementFile(LocalDate day) throws IOException;
+}
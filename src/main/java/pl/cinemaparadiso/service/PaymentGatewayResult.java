@@ -0,0 +1,18 @@
+package pl.cinemaparadiso.service;
+
+/**
+ * Wynik obciążenia przez bramkę płatności
+ *
+ * @param approved - czy płatność została zaakceptowana
+ * @param transactionId - ID transakcji nadane przez bramkę (tylko dla zaakceptowanych)
+ */
+public record PaymentGatewayResult(boolean approved, String transactionId) {
+
+    public static PaymentGatewayResult approved(String transactionId) {
+        return new PaymentGatewayResult(true, transactionId);
+    }
+
+    public static PaymentGatewayResult declined() {
+        return new PaymentGatewayResult(false, null);
+    }
+}
@@ -0,0 +1,167 @@
+package pl.cinemaparadiso.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+import pl.cinemaparadiso.dto.PaymentRequestDTO;
+import pl.cinemaparadiso.enums.PaymentMethod;
+import pl.cinemaparadiso.exception.PaymentGatewayException;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Wybór bramki płatności dla metody płatności i ochrona przed wolnymi lub niedziałającymi bramkami
+ *
+ * Każda bramka ma własne (payments.gateway.{name}.*):
+ * - timeout-ms - limit czasu jednego wywołania (po nim wywołanie jest przerywane),
+ * - max-concurrent - limit równoczesnych wywołań (bulkhead); nadmiarowe są od razu odrzucane,
+ * - circuit-breaker.* - bezpiecznik, który po serii błędów przestaje na chwilę wołać bramkę.
+ * Dzięki temu wolny dostawca BLIK odrzuca szybko tylko płatności BLIK, a pozostałe metody działają dalej.
+ */
+@Slf4j
+@Service
+public class PaymentGatewayRouter {
+
+    private final Map<PaymentMethod, GuardedGateway> gatewaysByMethod = new EnumMap<>(PaymentMethod.class);
+    private final ExecutorService callExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public PaymentGatewayRouter(List<PaymentGateway> gateways, Environment environment) {
+        for (PaymentGateway gateway : gateways) {
+            GuardedGateway guarded = new GuardedGateway(gateway, environment);
+            for (PaymentMethod method : gateway.getSupportedMethods()) {
+                GuardedGateway previous = gatewaysByMethod.putIfAbsent(method, guarded);
+                if (previous != null) {
+                    throw new IllegalStateException("Metodę płatności " + method + " obsługują dwie bramki: " +
+                            previous.gateway.getName() + " i " + gateway.getName());
+                }
+            }
+        }
+    }
+
+    /**
+     * Sprawdza przed rozpoczęciem płatności, czy bramka metody przyjmie wywołanie
+     * (bezpiecznik nie jest otwarty i jest wolne miejsce w limicie równoczesnych wywołań)
+     *
+     * @throws PaymentGatewayException jeśli bramka jest chwilowo niedostępna
+     */
+    public void checkAvailable(PaymentMethod method) {
+        if (method == PaymentMethod.CASH) {
+            return;
+        }
+        GuardedGateway guarded = gatewayFor(method);
+        if (!guarded.breaker.isCallPermitted(System.currentTimeMillis())) {
+            throw new PaymentGatewayException(unavailableMessage(method));
+        }
+        if (guarded.bulkhead.availablePermits() == 0) {
+            throw new PaymentGatewayException(overloadedMessage(method));
+        }
+    }
+
+    /**
+     * Obciąża klienta przez bramkę jego metody płatności
+     *
+     * @return wynik bramki (zaakceptowana z ID transakcji albo odrzucona)
+     * @throws PaymentGatewayException przy przekroczonym czasie, przeciążeniu, otwartym bezpieczniku lub błędzie bramki
+     */
+    public PaymentGatewayResult charge(PaymentRequestDTO paymentRequest, BigDecimal amount) {
+        PaymentMethod method = paymentRequest.getPaymentMethod();
+        GuardedGateway guarded = gatewayFor(method);
+
+        if (!guarded.bulkhead.tryAcquire()) {
+            throw new PaymentGatewayException(overloadedMessage(method));
+        }
+        try {
+            if (!guarded.breaker.tryAcquirePermission(System.currentTimeMillis())) {
+                throw new PaymentGatewayException(unavailableMessage(method));
+            }
+            return guarded.call(paymentRequest, amount);
+        } finally {
+            guarded.bulkhead.release();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        callExecutor.shutdownNow();
+    }
+
+    private GuardedGateway gatewayFor(PaymentMethod method) {
+        GuardedGateway guarded = gatewaysByMethod.get(method);
+        if (guarded == null) {
+            throw new IllegalArgumentException("Nieobsługiwana metoda płatności: " + method);
+        }
+        return guarded;
+    }
+
+    private static String unavailableMessage(PaymentMethod method) {
+        return "Płatności metodą " + method + " są chwilowo niedostępne. Wybierz inną metodę płatności.";
+    }
+
+    private static String overloadedMessage(PaymentMethod method) {
+        return "Bramka płatności " + method + " jest przeciążona. Spróbuj ponownie za chwilę.";
+    }
+
+    /**
+     * Bramka z jej limitem czasu, limitem równoczesnych wywołań i bezpiecznikiem
+     */
+    private final class GuardedGateway {
+
+        private final PaymentGateway gateway;
+        private final long timeoutMillis;
+        private final Semaphore bulkhead;
+        private final CircuitBreaker breaker;
+
+        GuardedGateway(PaymentGateway gateway, Environment environment) {
+            String prefix = "payments.gateway." + gateway.getName() + ".";
+            this.gateway = gateway;
+            this.timeoutMillis = environment.getProperty(prefix + "timeout-ms", Long.class, 10000L);
+            this.bulkhead = new Semaphore(environment.getProperty(prefix + "max-concurrent", Integer.class, 50));
+            this.breaker = new CircuitBreaker(
+                    environment.getProperty(prefix + "circuit-breaker.window-size", Integer.class, 20),
+                    environment.getProperty(prefix + "circuit-breaker.minimum-calls", Integer.class, 10),
+                    environment.getProperty(prefix + "circuit-breaker.failure-rate", Double.class, 0.5),
+                    environment.getProperty(prefix + "circuit-breaker.open-ms", Long.class, 30000L));
+        }
+
+        PaymentGatewayResult call(PaymentRequestDTO paymentRequest, BigDecimal amount) {
+            Future<PaymentGatewayResult> future = callExecutor.submit(() -> gateway.charge(paymentRequest, amount));
+            try {
+                PaymentGatewayResult result = future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+                breaker.onSuccess();
+                return result;
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                recordFailure();
+                throw new PaymentGatewayException("Bramka płatności " + gateway.getName() +
+                        " nie odpowiedziała w ciągu " + timeoutMillis + " ms", e);
+            } catch (ExecutionException e) {
+                recordFailure();
+                throw new PaymentGatewayException("Błąd bramki płatności " + gateway.getName(), e.getCause());
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+                recordFailure();
+                throw new PaymentGatewayException("Przerwano wywołanie bramki płatności " + gateway.getName(), e);
+            }
+        }
+
+        private void recordFailure() {
+            CircuitBreaker.State before = breaker.getState();
+            breaker.onFailure(System.currentTimeMillis());
+            if (before != CircuitBreaker.State.OPEN && breaker.getState() == CircuitBreaker.State.OPEN) {
+                log.warn("Bezpiecznik bramki płatności {} otwarty - wywołania będą odrzucane", gateway.getName());
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package pl.cinemaparadiso.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import pl.cinemaparadiso.dto.PaymentRequestDTO;
+import pl.cinemaparadiso.dto.PaymentResponseDTO;
+import pl.cinemaparadiso.enums.ReservationStatus;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Nieblokujący przebieg płatności
+ *
+ * Żądanie HTTP wykonuje tylko krótki krok rozpoczęcia płatności (PaymentService.startPayment)
+ * i od razu zwraca status PAYMENT_PROCESSING. Wywołanie bramki odbywa się w tle na wątku
+ * wirtualnym - bez transakcji, bez blokady wiersza rezerwacji i bez połączenia z bazą -
+ * a jego wynik zapisuje osobna krótka transakcja (finalizePayment). Klient odpytuje o wynik
+ * endpoint stanu płatności.
+ *
+ * Jeśli wynik nie zostanie zapisany (np. restart aplikacji w trakcie), rezerwacja w statusie
+ * PAYMENT_PROCESSING wygaśnie po czasie payments.processing-timeout-minutes.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PaymentProcessingService {
+
+    private final BookingSequencer bookingSequencer;
+    private final PaymentService paymentService;
+    private final PaymentGatewayRouter paymentGatewayRouter;
+
+    private final ExecutorService gatewayExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Rozpoczyna płatność i przekazuje ją do bramki w tle
+     *
+     * @return stan płatności zaraz po rozpoczęciu (PAYMENT_PROCESSING, dla gotówki od razu PAID)
+     * @throws pl.cinemaparadiso.exception.PaymentGatewayException jeśli bramka metody płatności jest niedostępna
+     */
+    public PaymentResponseDTO submitPayment(PaymentRequestDTO paymentRequest, Long userId) {
+        // Niedostępna bramka odrzuca płatność od razu, zanim rezerwacja zmieni status
+        paymentGatewayRouter.checkAvailable(paymentRequest.getPaymentMethod());
+
+        PaymentResponseDTO started = bookingSequencer.startPayment(paymentRequest, userId);
+        if (started.getReservationStatus() != ReservationStatus.PAYMENT_PROCESSING) {
+            return started;
+        }
+
+        Long reservationId = paymentRequest.getReservationId();
+        CompletableFuture.supplyAsync(
+                        () -> paymentGatewayRouter.charge(paymentRequest, started.getAmount()), gatewayExecutor)
+                .exceptionally(error -> {
+                    // Przekroczony czas, przeciążenie lub otwarty bezpiecznik - płatność kończy się niepowodzeniem
+                    log.warn("Błąd wywołania bramki płatności dla rezerwacji ID: {}: {}",
+                            reservationId, error.getMessage());
+                    return PaymentGatewayResult.declined();
+                })
+                .thenAccept(result -> finalizePayment(reservationId, result));
+
+        return started;
+    }
+
+    public PaymentResponseDTO getPaymentStatus(Long reservationId, Long userId) {
+        return paymentService.getPaymentStatus(reservationId, userId);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        gatewayExecutor.shutdown();
+    }
+
+    private void finalizePayment(Long reservationId, PaymentGatewayResult gatewayResult) {
+        try {
+            bookingSequencer.finalizePayment(reservationId, gatewayResult);
+        } catch (RuntimeException e) {
+            log.error("Nie udało się zapisać wyniku płatności dla rezerwacji ID: {} (wynik bramki: {})",
+                    reservationId, gatewayResult, e);
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package pl.cinemaparadiso.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.cinemaparadiso.dto.ReconciliationReportDTO;
+import pl.cinemaparadiso.enums.PaymentMethod;
+import pl.cinemaparadiso.enums.ReconciliationIssue;
+import pl.cinemaparadiso.enums.ReservationStatus;
+import pl.cinemaparadiso.repository.ReservationRepository;
+import pl.cinemaparadiso.repository.ReservationRepository.PaymentReconciliationRow;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Dzienne uzgadnianie płatności z plikami rozliczeniowymi bramek
+ *
+ * Dla każdej bramki płatności z danego dnia są czytane strumieniowo z bazy (kursor po stronie
+ * serwera, posortowane po ID transakcji) i porównywane z plikiem rozliczeniowym bramki
+ * (posortowanym tak samo) algorytmem scalania - w pamięci jest zawsze tylko po jednym wierszu
+ * z każdej strony, niezależnie od liczby płatności. Na koniec wyszukiwane są rezerwacje zawieszone
+ * w PAYMENT_FAILED / PAYMENT_PROCESSING. Rozbieżności trafiają do raportu CSV.
+ *
+ * Płatność rozliczona przez bramkę tuż przed północą może zostać zapisana w systemie już następnego dnia,
+ * dlatego przed plikiem danego dnia czytany jest też plik z dnia poprzedniego. ID transakcji zaczynają się
+ * od daty rozliczenia, więc oba pliki razem nadal są posortowane; wpisy z poprzedniego dnia bez pary
+ * są pomijane - zostały już sprawdzone przy uzgadnianiu tamtego dnia.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PaymentReconciliationService {
+
+    private static final String REPORT_HEADER =
+            "issue,gateway,reservation_id,transaction_id,system_status,system_amount,settled_amount,detail";
+
+    private final ReservationRepository reservationRepository;
+    private final List<PaymentGateway> paymentGateways;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${payments.reconciliation.report-directory:reconciliation}")
+    private String reportDirectory;
+
+    @Value("${payments.reconciliation.stale-after-minutes:60}")
+    private long staleAfterMinutes;
+
+    /**
+     * Uzgadnianie poprzedniego dnia (domyślnie kwadrans po północy)
+     */
+    @Scheduled(cron = "${payments.reconciliation.cron:0 15 0 * * *}")
+    public void reconcilePreviousDay() {
+        ReconciliationReportDTO report = reconcile(LocalDate.now().minusDays(1));
+        log.info("Uzgadnianie płatności za {}: sprawdzono {}, zgodnych {}, rozbieżności: {} (raport: {})",
+                report.getDay(), report.getPaymentsChecked(), report.getMatched(),
+                report.getDiscrepancies(), report.getReportFile());
+    }
+
+    /**
+     * Uzgadnia płatności z podanego dnia i zapisuje raport rozbieżności
+     */
+    public synchronized ReconciliationReportDTO reconcile(LocalDate day) {
+        Path reportFile = Path.of(reportDirectory).resolve("reconciliation-" + day + ".csv");
+        try {
+            Files.createDirectories(reportFile.getParent());
+            try (BufferedWriter writer = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8)) {
+                Report report = new Report(writer);
+                writer.write(REPORT_HEADER);
+                writer.newLine();
+
+                for (PaymentGateway gateway : paymentGateways) {
+                    transactionTemplate.executeWithoutResult(status -> reconcileGateway(gateway, day, report));
+                }
+                transactionTemplate.executeWithoutResult(status -> reportStalePayments(report));
+
+                return ReconciliationReportDTO.builder()
+                        .day(day)
+                        .paymentsChecked(report.paymentsChecked)
+                        .settlementEntries(report.settlementEntries)
+                        .matched(report.matched)
+                        .discrepancies(report.discrepancies)
+                        .reportFile(reportFile.toAbsolutePath().toString())
+                        .build();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Nie udało się zapisać raportu uzgadniania płatności za " + day, e);
+        }
+    }
+
+    private void reconcileGateway(PaymentGateway gateway, LocalDate day, Report report) {
+        List<String> methods = gateway.getSupportedMethods().stream()
+                .map(PaymentMethod::name)
+                .toList();
+        LocalDateTime from = day.atStartOfDay();
+        LocalDateTime to = day.plusDays(1).atStartOfDay();
+
+        try (Stream<PaymentReconciliationRow> payments =
+                     reservationRepository.streamPaymentsForReconciliation(methods, from, to);
+             BufferedReader previousDayFile = new BufferedReader(gateway.openSettlementFile(day.minusDays(1)));
+             BufferedReader settlementFile = new BufferedReader(gateway.openSettlementFile(day))) {
+
+            Iterator<PaymentReconciliationRow> paymentIterator = payments.iterator();
+            SettlementReader settlement = new SettlementReader(gateway.getName(), previousDayFile, settlementFile);
+
+            PaymentReconciliationRow payment = next(paymentIterator, report);
+            // Wiersze bez ID transakcji są na początku strumienia (NULLS FIRST)
+            while (payment != null && payment.getTransactionId() == null) {
+                if (ReservationStatus.PAID.name().equals(payment.getStatus())) {
+                    report.add(ReconciliationIssue.MISSING_TRANSACTION_ID, gateway.getName(), payment, null,
+                            "Opłacona przez bramkę bez ID transakcji");
+                }
+                payment = next(paymentIterator, report);
+            }
+
+            SettlementEntry entry = settlement.next();
+            if (entry != null && !entry.previousDay()) {
+                report.settlementEntries++;
+            }
+
+            while (payment != null || entry != null) {
+                int order = payment == null ? 1
+                        : entry == null ? -1
+                        : payment.getTransactionId().compareTo(entry.transactionId());
+
+                if (order == 0) {
+                    compareMatched(gateway.getName(), payment, entry, report);
+                    payment = next(paymentIterator, report);
+                    entry = settlement.next();
+                    if (entry != null && !entry.previousDay()) {
+                        report.settlementEntries++;
+                    }
+                } else if (order < 0) {
+                    report.add(ReconciliationIssue.MISSING_IN_SETTLEMENT, gateway.getName(), payment, null,
+                            "Brak w pliku rozliczeniowym bramki");
+                    payment = next(paymentIterator, report);
+                } else {
+                    if (!entry.previousDay()) {
+                        reportUnmatchedSettlement(gateway.getName(), entry, to, report);
+                    }
+                    entry = settlement.next();
+                    if (entry != null && !entry.previousDay()) {
+                        report.settlementEntries++;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Błąd odczytu pliku rozliczeniowego bramki " + gateway.getName(), e);
+        }
+    }
+
+    private void compareMatched(String gateway, PaymentReconciliationRow payment, SettlementEntry entry, Report report) {
+        if (!ReservationStatus.PAID.name().equals(payment.getStatus())) {
+            report.add(ReconciliationIssue.STATUS_MISMATCH, gateway, payment, entry.amount(),
+                    "Transakcja rozliczona, a rezerwacja ma status " + payment.getStatus() + " - do zwrotu");
+        } else if (payment.getAmount().compareTo(entry.amount()) != 0) {
+            report.add(ReconciliationIssue.AMOUNT_MISMATCH, gateway, payment, entry.amount(),
+                    "Różne kwoty w systemie i w rozliczeniu");
+        } else {
+            report.matched++;
+        }
+    }
+
+    /**
+     * Transakcja z pliku bez płatności w oknie dnia - sprawdzamy rezerwację, której dotyczyła
+     */
+    private void reportUnmatchedSettlement(String gateway, SettlementEntry entry, LocalDateTime dayEnd, Report report) {
+        PaymentReconciliationRow reservation = reservationRepository.findPaymentForReconciliation(entry.reservationId())
+                .orElse(null);
+
+        if (reservation != null && entry.transactionId().equals(reservation.getTransactionId())) {
+            // Ta sama transakcja zapisana poza oknem dnia (np. tuż po północy) - porównujemy jak zwykłą parę
+            compareMatched(gateway, reservation, entry, report);
+            return;
+        }
+
+        String detail = reservation == null
+                ? "Bramka obciążyła klienta za nieistniejącą rezerwację"
+                : "Bramka obciążyła klienta, rezerwacja ma status " + reservation.getStatus() +
+                  (reservation.getTransactionId() != null ? " i inną transakcję " + reservation.getTransactionId() : "") +
+                  " - do zwrotu lub ręcznego potwierdzenia";
+        report.add(ReconciliationIssue.MISSING_IN_SYSTEM, gateway, entry.reservationId(), entry.transactionId(),
+                reservation != null ? reservation.getStatus() : null, null, entry.amount(), detail);
+    }
+
+    private void reportStalePayments(Report report) {
+        LocalDateTime staleBefore = LocalDateTime.now().minusMinutes(staleAfterMinutes);
+        try (Stream<PaymentReconciliationRow> stale = reservationRepository.streamStalePayments(staleBefore)) {
+            stale.forEach(payment -> report.add(ReconciliationIssue.STALE_PAYMENT, null, payment, null,
+                    "Rezerwacja nie została wygaszona - zwalnia miejsca dopiero po anulowaniu"));
+        }
+    }
+
+    private static PaymentReconciliationRow next(Iterator<PaymentReconciliationRow> iterator, Report report) {
+        if (!iterator.hasNext()) {
+            return null;
+        }
+        report.paymentsChecked++;
+        return iterator.next();
+    }
+
+    /**
+     * Transakcja z pliku rozliczeniowego
+     */
+    private record SettlementEntry(String transactionId, Long reservationId, BigDecimal amount, boolean previousDay) {
+    }
+
+    /**
+     * Czyta plik rozliczeniowy z poprzedniego dnia, a potem z danego dnia, wiersz po wierszu
+     * i pilnuje, żeby całość była posortowana (warunek scalania)
+     */
+    private static final class SettlementReader {
+
+        private final String gateway;
+        private final BufferedReader previousDayReader;
+        private final BufferedReader reader;
+        private boolean previousDayDone;
+        private String previousTransactionId;
+
+        SettlementReader(String gateway, BufferedReader previousDayReader, BufferedReader reader) {
+            this.gateway = gateway;
+            this.previousDayReader = previousDayReader;
+            this.reader = reader;
+        }
+
+        SettlementEntry next() throws IOException {
+            if (!previousDayDone) {
+                SettlementEntry entry = next(previousDayReader, true);
+                if (entry != null) {
+                    return entry;
+                }
+                previousDayDone = true;
+            }
+            return next(reader, false);
+        }
+
+        private SettlementEntry next(BufferedReader reader, boolean previousDay) throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("transaction_id,")) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                if (fields.length < 4) {
+                    throw new IllegalStateException("Nieprawidłowy wiersz pliku rozliczeniowego bramki " + gateway + ": " + line);
+                }
+                String transactionId = fields[0];
+                if (previousTransactionId != null && transactionId.compareTo(previousTransactionId) <= 0) {
+                    throw new IllegalStateException("Plik rozliczeniowy bramki " + gateway +
+                            " nie jest posortowany po ID transakcji (" + transactionId + ")");
+                }
+                previousTransactionId = transactionId;
+                return new SettlementEntry(transactionId, Long.valueOf(fields[1]), new BigDecimal(fields[3]), previousDay);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Raport rozbieżności zapisywany na bieżąco do pliku CSV (nic nie jest gromadzone w pamięci)
+     */
+    private static final class Report {
+
+        private final BufferedWriter writer;
+        private final Map<ReconciliationIssue, Long> discrepancies = new EnumMap<>(ReconciliationIssue.class);
+        private long paymentsChecked;
+        private long settlementEntries;
+        private long matched;
+
+        Report(BufferedWriter writer) {
+            this.writer = writer;
+        }
+
+        void add(ReconciliationIssue issue, String gateway, PaymentReconciliationRow payment,
+                 BigDecimal settledAmount, String detail) {
+            add(issue, gateway, payment.getId(), payment.getTransactionId(), payment.getStatus(),
+                    payment.getAmount(), settledAmount, detail);
+        }
+
+        void add(ReconciliationIssue issue, String gateway, Long reservationId, String transactionId,
+                 String systemStatus, BigDecimal systemAmount, BigDecimal settledAmount, String detail) {
+            discrepancies.merge(issue, 1L, Long::sum);
+            try {
+                writer.write(String.join(",",
+                        issue.name(),
+                        Objects.toString(gateway, ""),
+                        Objects.toString(reservationId, ""),
+                        Objects.toString(transactionId, ""),
+                        Objects.toString(systemStatus, ""),
+                        systemAmount != null ? systemAmount.toPlainString() : "",
+                        settledAmount != null ? settledAmount.toPlainString() : "",
+                        "\"" + detail.replace("\"", "\"\"") + "\""));
+                writer.newLine();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -2,24 +2,31 @@ package pl.cinemaparadiso.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import pl.cinemaparadiso.dto.PaymentRequestDTO;
 import pl.cinemaparadiso.dto.PaymentResponseDTO;
 import pl.cinemaparadiso.entity.Reservation;
+import pl.cinemaparadiso.enums.OutboxEventType;
 import pl.cinemaparadiso.enums.PaymentMethod;
 import pl.cinemaparadiso.enums.ReservationStatus;
 import pl.cinemaparadiso.exception.ReservationNotFoundException;
 import pl.cinemaparadiso.exception.SeatNotAvailableException;
 import pl.cinemaparadiso.repository.ReservationRepository;
-import pl.cinemaparadiso.service.ReservationService;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.Random;
 import java.util.UUID;
 
+/**
+ * Płatności za rezerwacje, podzielone na krótkie kroki transakcyjne
+ *
+ * 1. startPayment - blokada rezerwacji, walidacja i zmiana statusu na PAYMENT_PROCESSING
+ *    (płatność gotówką jest od razu potwierdzana),
+ * 2. wywołanie bramki płatności (PaymentGatewayRouter), bez transakcji i bez blokad w bazie,
+ * 3. finalizePayment - zapis wyniku bramki (PAID albo PAYMENT_FAILED).
+ * Wywołanie bramki w tle organizuje PaymentProcessingService, klient sprawdza wynik przez getPaymentStatus.
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
@@ -28,12 +35,25 @@ public class PaymentService {
     
     private final ReservationRepository reservationRepository;
     private final ReservationService reservationService;
-    private final Random random = new Random();
+    private final SeatInventoryService seatInventoryService;
+    private final ReservationExpiryService reservationExpiryService;
+    private final OutboxService outboxService;
     
-    public PaymentResponseDTO processPayment(PaymentRequestDTO paymentRequest, Long userId) {
-        log.info("Przetwarzanie płatności dla rezerwacji ID: {} przez użytkownika ID: {}, metoda: {}", 
+    @Value("${payments.processing-timeout-minutes:5}")
+    private long processingTimeoutMinutes;
+    
+    /**
+     * Rozpoczyna płatność - rezerwacja przechodzi w status PAYMENT_PROCESSING i czeka na wynik bramki
+     * Płatność gotówką nie przechodzi przez bramkę, więc rezerwacja jest od razu opłacona (PAID)
+     *
+     * @return stan płatności (reservationStatus: PAYMENT_PROCESSING albo PAID)
+     */
+    public PaymentResponseDTO startPayment(PaymentRequestDTO paymentRequest, Long userId) {
+        log.info("Rozpoczęcie płatności dla rezerwacji ID: {} przez użytkownika ID: {}, metoda: {}", 
                 paymentRequest.getReservationId(), userId, paymentRequest.getPaymentMethod());
         
+        validatePaymentData(paymentRequest);
+        
         Reservation reservation = reservationRepository.findByIdWithLock(paymentRequest.getReservationId())
                 .orElseThrow(() -> new ReservationNotFoundException(
                         "Rezerwacja o ID " + paymentRequest.getReservationId() + " nie istnieje"));
@@ -42,12 +62,22 @@ public class PaymentService {
             throw new IllegalArgumentException("Nie masz uprawnień do płatności za tę rezerwację");
         }
         
-        if (reservation.getStatus() != ReservationStatus.PENDING_PAYMENT && 
-            reservation.getStatus() != ReservationStatus.PAYMENT_FAILED) {
+        if (reservation.getStatus() == ReservationStatus.PAYMENT_PROCESSING) {
+            throw new IllegalArgumentException("Płatność za tę rezerwację jest już przetwarzana");
+        }
+        
+        if (!reservation.getStatus().awaitsPayment()) {
             throw new IllegalArgumentException(
                     "Rezerwacja nie oczekuje na płatność. Status: " + reservation.getStatus());
         }
         
+        if (reservation.getExpiresAt() != null && reservation.getExpiresAt().isBefore(LocalDateTime.now())) {
+            throw new IllegalArgumentException(
+                    "Czas na opłacenie rezerwacji minął. Rezerwacja zostanie anulowana, proszę wybrać miejsca ponownie.");
+        }
+        
+        ReservationStatus previousStatus = reservation.getStatus();
+        
         try {
             reservationService.verifySeatsAvailability(reservation);
             log.debug("Weryfikacja dostępności miejsc zakończona pomyślnie dla rezerwacji ID: {}", 
@@ -55,111 +85,121 @@ public class PaymentService {
         } catch (SeatNotAvailableException e) {
             log.warn("Nie można zrealizować płatności - miejsca są niedostępne. Rezerwacja ID: {}, Błąd: {}", 
                     reservation.getId(), e.getMessage());
-            reservation.setStatus(ReservationStatus.CANCELLED);
+            reservation.changeStatus(ReservationStatus.CANCELLED);
             reservationRepository.save(reservation);
+            seatInventoryService.invalidate(reservation.getScreening().getId());
             throw new IllegalArgumentException(
                     "Nie można zrealizować płatności. " + e.getMessage() + 
                     " Rezerwacja została anulowana. Proszę wybrać inne miejsca.");
         }
         
         if (paymentRequest.getPaymentMethod() == PaymentMethod.CASH) {
-            String transactionId = generateTransactionId();
-            BigDecimal amount = reservation.getTotalPrice();
-            
-            reservation.setStatus(ReservationStatus.PAID);
-            reservation.setPaymentMethod(PaymentMethod.CASH);
-            reservation.setPaymentDate(LocalDateTime.now());
-            reservation.setPaymentTransactionId(transactionId);
-            reservationRepository.save(reservation);
+            markPaid(reservation, PaymentMethod.CASH, previousStatus, generateTransactionId());
             
             log.info("Płatność gotówką zakończona sukcesem. Rezerwacja ID: {}, Transakcja ID: {}", 
-                    reservation.getId(), transactionId);
+                    reservation.getId(), reservation.getPaymentTransactionId());
             
-            return PaymentResponseDTO.builder()
-                    .reservationId(reservation.getId())
-                    .success(true)
-                    .message("Rezerwacja została potwierdzona. Płatność gotówką w kasie kina.")
-                    .paymentMethod(PaymentMethod.CASH)
-                    .transactionId(transactionId)
-                    .paymentDate(reservation.getPaymentDate())
-                    .amount(amount)
-                    .build();
+            PaymentResponseDTO response = toResponse(reservation);
+            response.setMessage("Rezerwacja została potwierdzona. Płatność gotówką w kasie kina.");
+            return response;
         }
         
-        validatePaymentData(paymentRequest);
+        // Rezerwacja nie może wygasnąć, zanim bramka odpowie
+        LocalDateTime processingDeadline = LocalDateTime.now().plusMinutes(processingTimeoutMinutes);
+        if (reservation.getExpiresAt() == null || reservation.getExpiresAt().isBefore(processingDeadline)) {
+            reservation.setExpiresAt(processingDeadline);
+        }
         
-        simulateProcessingDelay();
+        reservation.changeStatus(ReservationStatus.PAYMENT_PROCESSING);
+        reservation.setPaymentMethod(paymentRequest.getPaymentMethod());
+        reservationService.saveClaimingSeats(reservation);
+        seatInventoryService.reservationStatusChanged(reservation, previousStatus);
+        reservationExpiryService.scheduleExpiry(reservation);
         
-        boolean paymentSuccess = random.nextDouble() < 0.9;
+        log.info("Płatność przekazana do bramki. Rezerwacja ID: {}", reservation.getId());
+        return toResponse(reservation);
+    }
+    
+    /**
+     * Zapisuje wynik bramki dla rezerwacji w statusie PAYMENT_PROCESSING
+     * Jeśli rezerwacja zmieniła w międzyczasie status (np. wygasła), wynik jest tylko logowany
+     *
+     * @return aktualny stan płatności
+     */
+    public PaymentResponseDTO finalizePayment(Long reservationId, PaymentGatewayResult gatewayResult) {
+        Reservation reservation = reservationRepository.findByIdWithLock(reservationId)
+                .orElseThrow(() -> new ReservationNotFoundException(
+                        "Rezerwacja o ID " + reservationId + " nie istnieje"));
         
-        if (paymentSuccess) {
-            String transactionId = generateTransactionId();
-            BigDecimal amount = reservation.getTotalPrice();
-            
-            Reservation finalReservation = reservation;
-            try {
-                finalReservation.setStatus(ReservationStatus.PAID);
-                finalReservation.setPaymentMethod(paymentRequest.getPaymentMethod());
-                finalReservation.setPaymentDate(LocalDateTime.now());
-                finalReservation.setPaymentTransactionId(transactionId);
-                reservationRepository.save(finalReservation);
-            } catch (ObjectOptimisticLockingFailureException e) {
-                log.error("Błąd optymistycznego blokowania podczas płatności. Rezerwacja ID: {} została zmodyfikowana przez inny proces.", 
-                        finalReservation.getId());
-                try {
-                    reservationService.verifySeatsAvailability(finalReservation);
-                    Reservation freshReservation = reservationRepository.findByIdWithLock(finalReservation.getId())
-                            .orElseThrow(() -> new ReservationNotFoundException(
-                                    "Rezerwacja o ID " + finalReservation.getId() + " nie istnieje"));
-                    if (freshReservation.getStatus() == ReservationStatus.PENDING_PAYMENT || 
-                        freshReservation.getStatus() == ReservationStatus.PAYMENT_FAILED) {
-                        freshReservation.setStatus(ReservationStatus.PAID);
-                        freshReservation.setPaymentMethod(paymentRequest.getPaymentMethod());
-                        freshReservation.setPaymentDate(LocalDateTime.now());
-                        freshReservation.setPaymentTransactionId(transactionId);
-                        reservationRepository.save(freshReservation);
-                        reservation = freshReservation;
-                        log.info("Ponowna próba płatności zakończona sukcesem. Rezerwacja ID: {}", reservation.getId());
-                    } else {
-                        throw new IllegalArgumentException("Rezerwacja została już przetworzona. Status: " + freshReservation.getStatus());
-                    }
-                } catch (SeatNotAvailableException ex) {
-                    log.error("Miejsca są niedostępne po błędzie optymistycznego blokowania. Rezerwacja ID: {}", 
-                            finalReservation.getId());
-                    finalReservation.setStatus(ReservationStatus.CANCELLED);
-                    reservationRepository.save(finalReservation);
-                    throw new IllegalArgumentException(
-                            "Nie można zrealizować płatności. " + ex.getMessage() + 
-                            " Rezerwacja została anulowana. Proszę wybrać inne miejsca.");
-                }
+        if (reservation.getStatus() != ReservationStatus.PAYMENT_PROCESSING) {
+            if (gatewayResult.approved()) {
+                log.error("Bramka potwierdziła płatność za rezerwację ID: {} (transakcja {}), ale rezerwacja ma już " +
+                        "status {} - płatność wymaga zwrotu", reservationId, gatewayResult.transactionId(), reservation.getStatus());
             }
-            
+            return toResponse(reservation);
+        }
+        
+        if (gatewayResult.approved()) {
+            markPaid(reservation, reservation.getPaymentMethod(), ReservationStatus.PAYMENT_PROCESSING,
+                    gatewayResult.transactionId());
             log.info("Płatność zakończona sukcesem. Rezerwacja ID: {}, Transakcja ID: {}", 
-                    reservation.getId(), transactionId);
-            
-            return PaymentResponseDTO.builder()
-                    .reservationId(reservation.getId())
-                    .success(true)
-                    .message("Płatność zakończona sukcesem")
-                    .paymentMethod(paymentRequest.getPaymentMethod())
-                    .transactionId(transactionId)
-                    .paymentDate(reservation.getPaymentDate())
-                    .amount(amount)
-                    .build();
+                    reservation.getId(), reservation.getPaymentTransactionId());
         } else {
-            reservation.setStatus(ReservationStatus.PAYMENT_FAILED);
+            reservation.changeStatus(ReservationStatus.PAYMENT_FAILED);
             reservationRepository.save(reservation);
-            
+            seatInventoryService.reservationStatusChanged(reservation, ReservationStatus.PAYMENT_PROCESSING);
             log.warn("Płatność nie powiodła się. Rezerwacja ID: {}", reservation.getId());
-            
-            return PaymentResponseDTO.builder()
-                    .reservationId(reservation.getId())
-                    .success(false)
-                    .message("Płatność nie powiodła się. Spróbuj ponownie.")
-                    .paymentMethod(paymentRequest.getPaymentMethod())
-                    .amount(reservation.getTotalPrice())
-                    .build();
         }
+        
+        return toResponse(reservation);
+    }
+    
+    /**
+     * Zwraca stan płatności rezerwacji (do odpytywania po rozpoczęciu płatności)
+     */
+    @Transactional(readOnly = true)
+    public PaymentResponseDTO getPaymentStatus(Long reservationId, Long userId) {
+        Reservation reservation = reservationRepository.findById(reservationId)
+                .orElseThrow(() -> new ReservationNotFoundException(
+                        "Rezerwacja o ID " + reservationId + " nie istnieje"));
+        
+        if (!reservation.getUser().getId().equals(userId)) {
+            throw new IllegalArgumentException("Nie masz uprawnień do tej rezerwacji");
+        }
+        
+        return toResponse(reservation);
+    }
+    
+    private void markPaid(Reservation reservation, PaymentMethod paymentMethod, ReservationStatus previousStatus,
+                          String transactionId) {
+        reservation.changeStatus(ReservationStatus.PAID);
+        reservation.setPaymentMethod(paymentMethod);
+        reservation.setPaymentDate(LocalDateTime.now());
+        reservation.setPaymentTransactionId(transactionId);
+        reservationService.saveClaimingSeats(reservation);
+        seatInventoryService.reservationStatusChanged(reservation, previousStatus);
+        outboxService.record(OutboxEventType.PAYMENT_COMPLETED, reservation);
+    }
+    
+    private PaymentResponseDTO toResponse(Reservation reservation) {
+        String message = switch (reservation.getStatus()) {
+            case PAID -> "Płatność zakończona sukcesem";
+            case PAYMENT_PROCESSING -> "Płatność jest przetwarzana";
+            case PAYMENT_FAILED -> "Płatność nie powiodła się. Spróbuj ponownie.";
+            case PENDING_PAYMENT -> "Rezerwacja oczekuje na płatność";
+            case CANCELLED -> "Rezerwacja została anulowana";
+        };
+        
+        return PaymentResponseDTO.builder()
+                .reservationId(reservation.getId())
+                .success(reservation.getStatus() == ReservationStatus.PAID)
+                .reservationStatus(reservation.getStatus())
+                .message(message)
+                .paymentMethod(reservation.getPaymentMethod())
+                .transactionId(reservation.getPaymentTransactionId())
+                .paymentDate(reservation.getPaymentDate())
+                .amount(reservation.getTotalPrice())
+                .build();
     }
     
     private void validatePaymentData(PaymentRequestDTO request) {
@@ -208,16 +248,6 @@ public class PaymentService {
         }
     }
     
-    private void simulateProcessingDelay() {
-        try {
-            int delay = 1000 + random.nextInt(2000);
-            Thread.sleep(delay);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            log.warn("Przerwano symulację opóźnienia płatności");
-        }
-    }
-    
     private String generateTransactionId() {
         return "TXN-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase() + 
                "-" + System.currentTimeMillis();
@@ -0,0 +1,28 @@
+package pl.cinemaparadiso.service;
+
+import pl.cinemaparadiso.enums.OutboxEventType;
+import pl.cinemaparadiso.enums.PaymentMethod;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Zdarzenie domenowe rezerwacji dostarczane przez OutboxRelay do słuchaczy (@EventListener)
+ *
+ * Dostarczanie jest "co najmniej raz" - słuchacz może dostać to samo zdarzenie ponownie
+ * (eventId jest wtedy taki sam), więc jego obsługa musi być idempotentna.
+ */
+public record ReservationDomainEvent(
+        Long eventId,
+        OutboxEventType type,
+        Long reservationId,
+        Long userId,
+        Long screeningId,
+        BigDecimal amount,
+        PaymentMethod paymentMethod,
+        LocalDateTime occurredAt) {
+
+    ReservationDomainEvent withEventId(Long id) {
+        return new ReservationDomainEvent(id, type, reservationId, userId, screeningId, amount, paymentMethod, occurredAt);
+    }
+}
@@ -0,0 +1,156 @@
+package pl.cinemaparadiso.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.cinemaparadiso.entity.Reservation;
+import pl.cinemaparadiso.enums.OutboxEventType;
+import pl.cinemaparadiso.enums.ReservationStatus;
+import pl.cinemaparadiso.repository.ReservationRepository;
+import pl.cinemaparadiso.repository.ReservationSeatRepository;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Wygaszanie nieopłaconych rezerwacji (PENDING_PAYMENT, PAYMENT_PROCESSING, PAYMENT_FAILED)
+ *
+ * Każda nowa rezerwacja dostaje termin płatności (expires_at) i trafia do haszowanego
+ * zegara w pamięci. Co takt zegar zwraca rezerwacje, których termin minął, a one są
+ * anulowane w jednej transakcji kilkoma zapytaniami masowymi (nie po jednej transakcji
+ * na rezerwację). Rezerwacje, których zegar nie zna (np. sprzed restartu aplikacji),
+ * wyłapuje rzadszy przegląd bazy po indeksie na expires_at.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReservationExpiryService {
+
+    private static final int WHEEL_SIZE = 512;
+
+    private final ReservationRepository reservationRepository;
+    private final ReservationSeatRepository reservationSeatRepository;
+    private final SeatInventoryService seatInventoryService;
+    private final OutboxService outboxService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${reservations.payment-ttl-minutes:15}")
+    private long paymentTtlMinutes;
+
+    @Value("${reservations.expiry.tick-ms:1000}")
+    private long tickMillis;
+
+    @Value("${reservations.expiry.batch-size:500}")
+    private int batchSize;
+
+    private HashedTimingWheel wheel;
+
+    @PostConstruct
+    void initWheel() {
+        wheel = new HashedTimingWheel(tickMillis, WHEEL_SIZE, System.currentTimeMillis());
+    }
+
+    /**
+     * Wylicza termin płatności dla rezerwacji utworzonej w podanej chwili
+     */
+    public LocalDateTime paymentDeadline(LocalDateTime createdAt) {
+        return createdAt.plusMinutes(paymentTtlMinutes);
+    }
+
+    /**
+     * Dodaje rezerwację do zegara wygaszania
+     * Nie czekamy na zatwierdzenie transakcji - jeśli zostanie wycofana, rezerwacja
+     * po prostu nie przejdzie sprawdzenia w bazie przy wygaszaniu
+     */
+    public void scheduleExpiry(Reservation reservation) {
+        if (reservation.getExpiresAt() == null) {
+            return;
+        }
+        long deadline = reservation.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        wheel.schedule(reservation.getId(), deadline);
+    }
+
+    /**
+     * Takt zegara - anuluje rezerwacje, których termin płatności właśnie minął
+     */
+    @Scheduled(fixedDelayString = "${reservations.expiry.tick-ms:1000}")
+    public void expireDueReservations() {
+        List<Long> dueIds = wheel.advance(System.currentTimeMillis());
+        if (dueIds.isEmpty()) {
+            return;
+        }
+
+        int expired = 0;
+        for (int from = 0; from < dueIds.size(); from += batchSize) {
+            expired += expireBatch(dueIds.subList(from, Math.min(from + batchSize, dueIds.size())));
+        }
+        log.info("Wygaszono {} nieopłaconych rezerwacji (kandydaci z zegara: {})", expired, dueIds.size());
+    }
+
+    /**
+     * Przegląd bazy - wyłapuje rezerwacje spoza zegara (sprzed restartu, pominięte bo były
+     * zablokowane przez trwającą płatność itp.)
+     */
+    @Scheduled(fixedDelayString = "${reservations.expiry.sweep-ms:60000}",
+               initialDelayString = "${reservations.expiry.sweep-initial-delay-ms:10000}")
+    public void sweepExpiredReservations() {
+        int expired = 0;
+        while (true) {
+            List<Long> candidateIds = reservationRepository.findExpiredReservationIds(LocalDateTime.now(), batchSize);
+            if (candidateIds.isEmpty()) {
+                break;
+            }
+            int batchExpired = expireBatch(candidateIds);
+            expired += batchExpired;
+            // Pozostałe są zablokowane przez płatności - wrócimy do nich przy kolejnym przeglądzie
+            if (batchExpired == 0 || candidateIds.size() < batchSize) {
+                break;
+            }
+        }
+        if (expired > 0) {
+            log.info("Przegląd bazy: wygaszono {} nieopłaconych rezerwacji", expired);
+        }
+    }
+
+    /**
+     * Anuluje paczkę rezerwacji w jednej transakcji:
+     * blokada (SKIP LOCKED) -> odczyt zajętych miejsc -> UPDATE statusów -> UPDATE miejsc
+     * -> zdarzenia RESERVATION_CANCELLED w skrzynce nadawczej (jedno na rezerwację)
+     *
+     * @return liczba faktycznie anulowanych rezerwacji
+     */
+    private int expireBatch(Collection<Long> candidateIds) {
+        Integer expired = transactionTemplate.execute(status -> {
+            List<Long> lockedIds = reservationRepository.lockExpiredReservations(candidateIds, LocalDateTime.now());
+            if (lockedIds.isEmpty()) {
+                return 0;
+            }
+
+            Map<Long, List<Long>> seatIdsByScreening = new HashMap<>();
+            for (Object[] claim : reservationSeatRepository.findActiveSeatClaimsByReservationIds(lockedIds)) {
+                seatIdsByScreening.computeIfAbsent((Long) claim[0], id -> new ArrayList<>()).add((Long) claim[1]);
+            }
+
+            reservationRepository.updateStatusForIds(lockedIds, ReservationStatus.CANCELLED);
+            reservationSeatRepository.deactivateByReservationIds(lockedIds);
+            // Zapytania masowe omijają ReservationService - zdarzenia dla słuchaczy zapisujemy tutaj
+            outboxService.recordAll(OutboxEventType.RESERVATION_CANCELLED,
+                    reservationRepository.findOutboxEventSources(lockedIds));
+
+            seatIdsByScreening.forEach(seatInventoryService::releaseSeats);
+
+            log.debug("Anulowano wygasłe rezerwacje: {}", lockedIds);
+            return lockedIds.size();
+        });
+        return expired != null ? expired : 0;
+    }
+}
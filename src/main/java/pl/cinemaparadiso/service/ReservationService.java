@@ -2,19 +2,26 @@ package pl.cinemaparadiso.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import pl.cinemaparadiso.dto.*;
 import pl.cinemaparadiso.entity.*;
+import pl.cinemaparadiso.enums.OutboxEventType;
 import pl.cinemaparadiso.enums.ReservationStatus;
 import pl.cinemaparadiso.exception.*;
 import pl.cinemaparadiso.repository.*;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Slf4j
 @Service
@@ -22,37 +29,93 @@ import java.util.stream.Collectors;
 @Transactional
 public class ReservationService {
     
+    private static final String SEAT_CLAIM_CONSTRAINT = "uk_reservation_seats_active_claim";
+    
     private final ReservationRepository reservationRepository;
     private final ReservationSeatRepository reservationSeatRepository;
     private final ScreeningRepository screeningRepository;
     private final SeatRepository seatRepository;
     private final UserRepository userRepository;
+    private final SeatInventoryService seatInventoryService;
+    private final ReservationExpiryService reservationExpiryService;
+    private final OutboxService outboxService;
     
-    @Transactional(readOnly = true)
+    /**
+     * Plan sali dla seansu budowany z pamięciowej bitmapy zajętości (SeatInventoryService)
+     * SUPPORTS - nie otwiera transakcji, dla załadowanego seansu nie ma żadnego zapytania SQL
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<SeatAvailabilityDTO> getAvailableSeats(Long screeningId) {
         log.debug("Pobieranie dostępnych miejsc dla seansu ID: {}", screeningId);
         
-        Screening screening = screeningRepository.findById(screeningId)
-                .orElseThrow(() -> new ScreeningNotFoundException("Seans o ID " + screeningId + " nie istnieje"));
+        return seatInventoryService.getSnapshot(screeningId).toSeatAvailability();
+    }
+    
+    /**
+     * Zwarta postać planu sali - maski wolnych miejsc w rzędach (układ sali osobno: getRoomLayout)
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public CompactSeatMapDTO getCompactSeatMap(Long screeningId) {
+        log.debug("Pobieranie zwartego planu sali dla seansu ID: {}", screeningId);
+        
+        SeatMapSnapshot snapshot = seatInventoryService.getSnapshot(screeningId);
+        RoomLayout layout = snapshot.getLayout();
         
-        Room room = screening.getRoom();
-        List<Seat> allSeats = seatRepository.findByRoomIdOrderByRowNumberAscSeatNumberAsc(room.getId());
+        List<String> rows = IntStream.range(0, layout.rowCount())
+                .mapToObj(snapshot::rowAvailabilityHex)
+                .toList();
         
-        List<ReservationSeat> reservedSeats = reservationSeatRepository.findReservedSeatsByScreeningId(screeningId);
-        Set<Long> reservedSeatIds = reservedSeats.stream()
-                .map(rs -> rs.getSeat().getId())
-                .collect(Collectors.toSet());
-        
-        return allSeats.stream()
-                .map(seat -> SeatAvailabilityDTO.builder()
-                        .seatId(seat.getId())
-                        .rowNumber(seat.getRowNumber())
-                        .seatNumber(seat.getSeatNumber())
-                        .seatType(seat.getSeatType())
-                        .isAvailable(!reservedSeatIds.contains(seat.getId()))
-                        .isSeatEnabled(seat.getIsAvailable())
-                        .build())
-                .collect(Collectors.toList());
+        return CompactSeatMapDTO.builder()
+                .screeningId(screeningId)
+                .roomId(layout.getRoomId())
+                .layoutVersion(layout.getFingerprint())
+                .version(snapshot.getVersion())
+                .rows(rows)
+                .build();
+    }
+    
+    /**
+     * Statyczny układ sali (rzędy, miejsca, typy) - wspólny dla wszystkich seansów w sali
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public RoomLayoutDTO getRoomLayout(Long roomId) {
+        log.debug("Pobieranie układu sali ID: {}", roomId);
+        
+        RoomLayout layout = seatInventoryService.getLayout(roomId);
+        if (layout.size() == 0) {
+            throw new RoomNotFoundException(roomId);
+        }
+        
+        List<RoomLayoutDTO.Row> rows = new ArrayList<>(layout.rowCount());
+        for (int row = 0; row < layout.rowCount(); row++) {
+            int start = layout.rowStart(row);
+            int end = layout.rowEnd(row);
+            
+            List<Long> seatIds = new ArrayList<>(end - start);
+            List<Integer> seatNumbers = new ArrayList<>(end - start);
+            StringBuilder seatTypes = new StringBuilder(end - start);
+            StringBuilder enabled = new StringBuilder(end - start);
+            for (int i = start; i < end; i++) {
+                seatIds.add(layout.seatId(i));
+                seatNumbers.add(layout.seatNumber(i));
+                seatTypes.append(layout.seatType(i) == pl.cinemaparadiso.enums.SeatType.VIP ? 'V' : 'S');
+                enabled.append(layout.isEnabled(i) ? '1' : '0');
+            }
+            
+            rows.add(RoomLayoutDTO.Row.builder()
+                    .rowNumber(layout.rowNumber(start))
+                    .seatIds(seatIds)
+                    .seatNumbers(seatNumbers)
+                    .seatTypes(seatTypes.toString())
+                    .enabled(enabled.toString())
+                    .build());
+        }
+        
+        return RoomLayoutDTO.builder()
+                .roomId(roomId)
+                .layoutVersion(layout.getFingerprint())
+                .rows(rows)
+                .build();
     }
     
     public ReservationDTO createReservation(CreateReservationDTO createDTO, Long userId) {
@@ -68,45 +131,70 @@ public class ReservationService {
             throw new IllegalArgumentException("Nie można zarezerwować miejsc na seans, który już się rozpoczął");
         }
         
+        List<Long> seatIds = createDTO.getSeats().stream()
+                .map(CreateReservationDTO.SeatSelectionDTO::getSeatId)
+                .distinct()
+                .sorted()
+                .toList();
+        
+        if (seatIds.size() != createDTO.getSeats().size()) {
+            throw new IllegalArgumentException("To samo miejsce zostało wybrane więcej niż raz");
+        }
+        
+        // Bez blokad na miejscach - o zajęciu miejsca decyduje częściowy indeks unikalny przy INSERT
+        Map<Long, Seat> seatsById = seatRepository.findAllById(seatIds).stream()
+                .collect(Collectors.toMap(Seat::getId, Function.identity()));
+        
+        for (Long seatId : seatIds) {
+            Seat seat = seatsById.get(seatId);
+            
+            if (seat == null) {
+                throw new IllegalArgumentException("Miejsce o ID " + seatId + " nie istnieje");
+            }
+            
+            if (!seat.getRoom().getId().equals(screening.getRoom().getId())) {
+                throw new IllegalArgumentException("Miejsce o ID " + seatId + " nie należy do sali seansu");
+            }
+            
+            if (!seat.getIsAvailable()) {
+                throw new SeatNotAvailableException("Miejsce o ID " + seatId + " jest niedostępne (zablokowane)");
+            }
+        }
+        
+        rejectSeatsAlreadyReserved(screening.getId(), seatIds, seatsById);
+        
         List<ReservationSeat> reservationSeats = createDTO.getSeats().stream()
                 .map(seatSelection -> {
-                    Seat seat = seatRepository.findByIdWithLock(seatSelection.getSeatId())
-                            .orElseThrow(() -> new IllegalArgumentException("Miejsce o ID " + seatSelection.getSeatId() + " nie istnieje"));
-                    
-                    if (!seat.getRoom().getId().equals(screening.getRoom().getId())) {
-                        throw new IllegalArgumentException("Miejsce o ID " + seatSelection.getSeatId() + " nie należy do sali seansu");
-                    }
-                    
-                    if (!seat.getIsAvailable()) {
-                        throw new SeatNotAvailableException("Miejsce o ID " + seatSelection.getSeatId() + " jest niedostępne (zablokowane)");
-                    }
-                    
-                    if (reservationSeatRepository.isSeatReservedForScreening(seat.getId(), screening.getId())) {
-                        throw new SeatNotAvailableException("Miejsce rząd " + seat.getRowNumber() + ", miejsce " + seat.getSeatNumber() + " jest już zarezerwowane");
-                    }
+                    Seat seat = seatsById.get(seatSelection.getSeatId());
                     
                     boolean isVip = seat.getSeatType() == pl.cinemaparadiso.enums.SeatType.VIP;
                     BigDecimal price = screening.calculateFinalPrice(isVip, seatSelection.getTicketType());
                     
                     return ReservationSeat.builder()
                             .seat(seat)
+                            .screening(screening)
                             .ticketType(seatSelection.getTicketType())
                             .price(price)
                             .build();
                 })
                 .collect(Collectors.toList());
         
+        LocalDateTime now = LocalDateTime.now();
         Reservation reservation = Reservation.builder()
                 .user(user)
                 .screening(screening)
-                .createdAt(LocalDateTime.now())
+                .createdAt(now)
+                .expiresAt(reservationExpiryService.paymentDeadline(now))
                 .status(ReservationStatus.PENDING_PAYMENT)
                 .reservationSeats(reservationSeats)
                 .build();
         
         reservationSeats.forEach(rs -> rs.setReservation(reservation));
         
-        Reservation savedReservation = reservationRepository.save(reservation);
+        Reservation savedReservation = saveClaimingSeats(reservation);
+        seatInventoryService.reservationStatusChanged(savedReservation, null);
+        reservationExpiryService.scheduleExpiry(savedReservation);
+        outboxService.record(OutboxEventType.RESERVATION_CREATED, savedReservation);
         
         log.info("Utworzono rezerwację ID: {} dla użytkownika ID: {}", savedReservation.getId(), userId);
         
@@ -141,24 +229,34 @@ public class ReservationService {
         log.debug("Weryfikacja dostępności miejsc dla rezerwacji ID: {}", reservation.getId());
         
         Long screeningId = reservation.getScreening().getId();
+        List<Long> seatIds = reservation.getReservationSeats().stream()
+                .map(rs -> rs.getSeat().getId())
+                .toList();
         
-        for (ReservationSeat reservationSeat : reservation.getReservationSeats()) {
-            Long seatId = reservationSeat.getSeat().getId();
+        Map<Long, Seat> seatsById = seatRepository.findAllById(seatIds).stream()
+                .collect(Collectors.toMap(Seat::getId, Function.identity()));
+        
+        for (Long seatId : seatIds) {
+            Seat seat = seatsById.get(seatId);
             
-            Seat seat = seatRepository.findById(seatId)
-                    .orElseThrow(() -> new IllegalArgumentException(
-                            "Miejsce o ID " + seatId + " nie istnieje (może zostało usunięte)"));
+            if (seat == null) {
+                throw new IllegalArgumentException(
+                        "Miejsce o ID " + seatId + " nie istnieje (może zostało usunięte)");
+            }
             
             if (!seat.getIsAvailable()) {
                 throw new SeatNotAvailableException(
                         "Miejsce rząd " + seat.getRowNumber() + ", miejsce " + seat.getSeatNumber() + 
                         " jest niedostępne (zablokowane)");
             }
-            
-            boolean isReservedByOther = reservationSeatRepository.isSeatReservedByOtherReservation(
-                    seatId, screeningId, reservation.getId());
-            
-            if (isReservedByOther) {
+        }
+        
+        // Rezerwacja, która trzyma miejsca (is_active), ma je na wyłączność dzięki indeksowi unikalnemu.
+        // Rezerwacja bez miejsc (PAYMENT_FAILED) musi sprawdzić, czy ktoś ich w międzyczasie nie zajął.
+        if (!reservation.getStatus().holdsSeats()) {
+            List<Long> takenIds = reservationSeatRepository.findReservedSeatIdsForScreening(seatIds, screeningId);
+            if (!takenIds.isEmpty()) {
+                Seat seat = seatsById.get(takenIds.get(0));
                 throw new SeatNotAvailableException(
                         "Miejsce rząd " + seat.getRowNumber() + ", miejsce " + seat.getSeatNumber() + 
                         " zostało zajęte przez inną rezerwację");
@@ -168,6 +266,25 @@ public class ReservationService {
         log.debug("Weryfikacja dostępności miejsc zakończona pomyślnie dla rezerwacji ID: {}", reservation.getId());
     }
     
+    /**
+     * Zapisuje rezerwację od razu w bazie (flush), tak aby konflikt miejsc wyszedł w tym miejscu
+     * Aktywne miejsca są chronione częściowym indeksem unikalnym (screening_id, seat_id) WHERE is_active -
+     * naruszenie indeksu oznacza, że ktoś inny zajął miejsce i jest zamieniane na SeatNotAvailableException
+     */
+    public Reservation saveClaimingSeats(Reservation reservation) {
+        try {
+            return reservationRepository.saveAndFlush(reservation);
+        } catch (DataIntegrityViolationException e) {
+            if (isSeatClaimConflict(e)) {
+                log.warn("Konflikt miejsc przy zapisie rezerwacji dla seansu ID: {}", reservation.getScreening().getId());
+                seatInventoryService.invalidate(reservation.getScreening().getId());
+                throw new SeatNotAvailableException(
+                        "Co najmniej jedno z wybranych miejsc zostało właśnie zarezerwowane przez inną osobę");
+            }
+            throw e;
+        }
+    }
+    
     public void cancelReservation(Long reservationId, Long userId) {
         log.info("Anulowanie rezerwacji ID: {} przez użytkownika ID: {}", reservationId, userId);
         
@@ -182,16 +299,57 @@ public class ReservationService {
             throw new IllegalArgumentException("Rezerwacja jest już anulowana");
         }
         
+        if (reservation.getStatus() == ReservationStatus.PAYMENT_PROCESSING) {
+            throw new IllegalArgumentException("Nie można anulować rezerwacji w trakcie przetwarzania płatności");
+        }
+        
         if (reservation.getScreening().getStartTime().isBefore(LocalDateTime.now())) {
             throw new IllegalArgumentException("Nie można anulować rezerwacji na seans, który już się rozpoczął");
         }
         
-        reservation.setStatus(ReservationStatus.CANCELLED);
+        ReservationStatus previousStatus = reservation.getStatus();
+        reservation.changeStatus(ReservationStatus.CANCELLED);
         reservationRepository.save(reservation);
+        seatInventoryService.reservationStatusChanged(reservation, previousStatus);
+        outboxService.record(OutboxEventType.RESERVATION_CANCELLED, reservation);
         
         log.info("Anulowano rezerwację ID: {}", reservationId);
     }
     
+    /**
+     * Szybkie odrzucenie zajętych miejsc na podstawie bitmapy w pamięci (bez SQL)
+     * Bitmapa może być nieaktualna, więc zajęcie jest potwierdzane w bazie tylko gdy bitmapa zgłasza konflikt
+     */
+    private void rejectSeatsAlreadyReserved(Long screeningId, List<Long> seatIds, Map<Long, Seat> seatsById) {
+        SeatMapSnapshot snapshot = seatInventoryService.getSnapshot(screeningId);
+        boolean conflictInMemory = seatIds.stream()
+                .mapToInt(seatId -> snapshot.getLayout().indexOf(seatId))
+                .anyMatch(index -> index >= 0 && snapshot.isOccupied(index));
+        if (!conflictInMemory) {
+            return;
+        }
+        
+        List<Long> alreadyReservedIds = reservationSeatRepository.findReservedSeatIdsForScreening(seatIds, screeningId);
+        if (!alreadyReservedIds.isEmpty()) {
+            Seat seat = seatsById.get(alreadyReservedIds.get(0));
+            throw new SeatNotAvailableException("Miejsce rząd " + seat.getRowNumber() + ", miejsce " + seat.getSeatNumber() + " jest już zarezerwowane");
+        }
+        seatInventoryService.invalidate(screeningId);
+    }
+    
+    /**
+     * Czy naruszono indeks aktywnych zajęć miejsc - po nazwie ograniczenia odczytanej przez Hibernate
+     * (nie po treści komunikatu bazy)
+     */
+    private boolean isSeatClaimConflict(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                return SEAT_CLAIM_CONSTRAINT.equalsIgnoreCase(violation.getConstraintName());
+            }
+        }
+        return false;
+    }
+    
     private ReservationDTO toDTO(Reservation reservation) {
         List<ReservationSeatDTO> seatDTOs = reservation.getReservationSeats().stream()
                 .map(rs -> ReservationSeatDTO.builder()
@@ -213,6 +371,7 @@ public class ReservationService {
                 .roomNumber(reservation.getScreening().getRoom().getRoomNumber())
                 .screeningStartTime(reservation.getScreening().getStartTime())
                 .createdAt(reservation.getCreatedAt())
+                .expiresAt(reservation.getExpiresAt())
                 .status(reservation.getStatus())
                 .totalPrice(reservation.getTotalPrice())
                 .seats(seatDTOs)
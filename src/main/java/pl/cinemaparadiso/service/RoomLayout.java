@@ -0,0 +1,148 @@
+package pl.cinemaparadiso.service;
+
+import pl.cinemaparadiso.entity.Seat;
+import pl.cinemaparadiso.enums.SeatType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Niezmienny układ miejsc sali kinowej
+ *
+ * Miejsca są zapisane w tablicach w kolejności (rząd, numer miejsca), a pozycja miejsca
+ * w tych tablicach jest jego indeksem w bitmapie zajętości seansu (SeatMapSnapshot).
+ * Jeden obiekt jest współdzielony przez wszystkie seanse w danej sali.
+ */
+public final class RoomLayout {
+
+    private final Long roomId;
+    private final long[] seatIds;
+    private final int[] rowNumbers;
+    private final int[] seatNumbers;
+    private final SeatType[] seatTypes;
+    private final boolean[] enabled;
+    private final int[] rowStarts; // indeks pierwszego miejsca każdego rzędu + wartownik na końcu
+    private final Map<Long, Integer> indexBySeatId;
+    private final String fingerprint;
+
+    private RoomLayout(Long roomId, List<Seat> seats) {
+        int size = seats.size();
+        this.roomId = roomId;
+        this.seatIds = new long[size];
+        this.rowNumbers = new int[size];
+        this.seatNumbers = new int[size];
+        this.seatTypes = new SeatType[size];
+        this.enabled = new boolean[size];
+        this.indexBySeatId = new HashMap<>(size * 2);
+
+        List<Integer> starts = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Seat seat = seats.get(i);
+            seatIds[i] = seat.getId();
+            rowNumbers[i] = seat.getRowNumber();
+            seatNumbers[i] = seat.getSeatNumber();
+            seatTypes[i] = seat.getSeatType();
+            enabled[i] = Boolean.TRUE.equals(seat.getIsAvailable());
+            indexBySeatId.put(seat.getId(), i);
+
+            if (i == 0 || rowNumbers[i] != rowNumbers[i - 1]) {
+                starts.add(i);
+            }
+        }
+        starts.add(size);
+        this.rowStarts = starts.stream().mapToInt(Integer::intValue).toArray();
+        this.fingerprint = computeFingerprint();
+    }
+
+    /**
+     * Buduje układ z listy miejsc posortowanej po rzędzie i numerze miejsca
+     * (SeatRepository.findByRoomIdOrderByRowNumberAscSeatNumberAsc)
+     */
+    public static RoomLayout of(Long roomId, List<Seat> orderedSeats) {
+        return new RoomLayout(roomId, orderedSeats);
+    }
+
+    public Long getRoomId() {
+        return roomId;
+    }
+
+    /**
+     * Skrót zawartości układu - zmienia się przy każdej zmianie miejsc (używany jako ETag)
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Liczba miejsc w sali
+     */
+    public int size() {
+        return seatIds.length;
+    }
+
+    /**
+     * Indeks miejsca w układzie lub -1 jeśli miejsce nie należy do sali
+     */
+    public int indexOf(Long seatId) {
+        Integer index = indexBySeatId.get(seatId);
+        return index != null ? index : -1;
+    }
+
+    public long seatId(int index) {
+        return seatIds[index];
+    }
+
+    public int rowNumber(int index) {
+        return rowNumbers[index];
+    }
+
+    public int seatNumber(int index) {
+        return seatNumbers[index];
+    }
+
+    public SeatType seatType(int index) {
+        return seatTypes[index];
+    }
+
+    /**
+     * Czy miejsce jest włączone (nie zablokowane/uszkodzone)
+     */
+    public boolean isEnabled(int index) {
+        return enabled[index];
+    }
+
+    /**
+     * Liczba rzędów w sali
+     */
+    public int rowCount() {
+        return rowStarts.length - 1;
+    }
+
+    /**
+     * Indeks pierwszego miejsca w rzędzie (rząd liczony od 0 w kolejności układu)
+     */
+    public int rowStart(int row) {
+        return rowStarts[row];
+    }
+
+    /**
+     * Indeks za ostatnim miejscem w rzędzie (rząd liczony od 0 w kolejności układu)
+     */
+    public int rowEnd(int row) {
+        return rowStarts[row + 1];
+    }
+
+    private String computeFingerprint() {
+        long hash = roomId != null ? roomId : 0;
+        for (int i = 0; i < seatIds.length; i++) {
+            hash = 31 * hash + seatIds[i];
+            hash = 31 * hash + rowNumbers[i];
+            hash = 31 * hash + seatNumbers[i];
+            hash = 31 * hash + (seatTypes[i] != null ? seatTypes[i].ordinal() + 1 : 0);
+            hash = 31 * hash + (enabled[i] ? 1 : 0);
+        }
+        return Long.toHexString(hash);
+    }
+}
@@ -31,6 +31,7 @@ public class RoomService {
     
     private final RoomRepository roomRepository;
     private final SeatRepository seatRepository;
+    private final SeatInventoryService seatInventoryService;
     
     /**
      * Konwertuje encję Room na DTO
@@ -113,6 +114,8 @@ public class RoomService {
         
         // Zapisz salę (miejsca zostaną zapisane automatycznie dzięki cascade)
         Room savedRoom = roomRepository.save(room);
+        // Usuń ewentualny wcześniejszy stan dla tego ID (także przy tworzeniu wielu sal - createMultipleRooms)
+        seatInventoryService.evictRoom(savedRoom.getId());
         log.info("Sala utworzona pomyślnie: ID={}, numer={}, miejsc={}", 
                 savedRoom.getId(), savedRoom.getRoomNumber(), savedRoom.getSeats().size());
         
@@ -205,6 +208,7 @@ public class RoomService {
         // }
         
         roomRepository.delete(room);
+        seatInventoryService.evictRoom(id);
         log.info("Sala usunięta pomyślnie: {}", room.getRoomNumber());
     }
     
@@ -257,6 +261,7 @@ public class RoomService {
         generateSeats(newRoom);
         
         Room savedRoom = roomRepository.save(newRoom);
+        seatInventoryService.evictRoom(savedRoom.getId());
         log.info("Sala zduplikowana pomyślnie: ID={}, numer={}, miejsc={}", 
                 savedRoom.getId(), savedRoom.getRoomNumber(), savedRoom.getSeats().size());
         
@@ -0,0 +1,464 @@
+package pl.cinemaparadiso.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import pl.cinemaparadiso.dto.SalesQueryResultDTO;
+import pl.cinemaparadiso.enums.PaymentMethod;
+import pl.cinemaparadiso.enums.SalesDimension;
+import pl.cinemaparadiso.enums.TicketType;
+import pl.cinemaparadiso.repository.ReservationRepository;
+import pl.cinemaparadiso.repository.ReservationRepository.SeatSaleRow;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+
+/**
+ * Pamięciowy, kolumnowy magazyn sprzedanych miejsc do analiz ad hoc w panelu admina
+ *
+ * Każde opłacone miejsce to jeden wiersz w tablicach prymitywów: film i sala (kody ze słowników),
+ * typ biletu i metoda płatności (numery enumów), początek seansu (minuty od epoki, czas lokalny)
+ * i cena w groszach. Zapytania grupujące skanują kolumny w pamięci równolegle (fork-join),
+ * bez żadnego SQL na tabelach rezerwacji.
+ *
+ * Magazyn jest ładowany z bazy po starcie aplikacji, a potem aktualizowany zdarzeniami rezerwacji:
+ * PAYMENT_COMPLETED dopisuje miejsca rezerwacji, RESERVATION_CANCELLED oznacza je jako usunięte.
+ * Zapisy są synchronizowane, a odczyt pracuje na opublikowanej (volatile) wersji kolumn -
+ * nowe wiersze są dopisywane za jej końcem, więc skan nigdy nie widzi wiersza zapisanego w połowie.
+ * Jedynym zapisem we wspólnej części kolumn jest czyszczenie bitów w bitmapie live przy anulowaniu:
+ * skan równoległy z anulowaniem może jeszcze policzyć (albo już pominąć) miejsca tej rezerwacji.
+ *
+ * Jeśli ładowanie się nie powiedzie, magazyn jest czyszczony, a ładowanie ponawiane po
+ * statistics.sales-store.load-retry-ms (do tego czasu wyniki zapytań mają complete = false).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SalesColumnStore {
+
+    private static final int LOAD_PAGE_SIZE = 5000;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MIN_SCAN_CHUNK = 64 * 1024;
+    private static final int SCAN_BLOCK = 4096;
+    private static final int MAX_GROUPS = 1 << 18;
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final String UNKNOWN = "UNKNOWN";
+    private static final TicketType[] TICKET_TYPES = TicketType.values();
+    private static final PaymentMethod[] PAYMENT_METHODS = PaymentMethod.values();
+
+    private final ReservationRepository reservationRepository;
+
+    @Value("${statistics.sales-store.load-retry-ms:60000}")
+    private long loadRetryMs;
+
+    private final Dictionary movies = new Dictionary();
+    private final Dictionary rooms = new Dictionary();
+    // ID rezerwacji -> {pierwszy wiersz, liczba wierszy}; chronione przez this
+    private final Map<Long, int[]> rowsByReservation = new HashMap<>();
+    private final Set<Long> cancelledWhileLoading = new HashSet<>();
+
+    private volatile Columns columns = new Columns(INITIAL_CAPACITY);
+    private volatile boolean loaded;
+    private boolean loading;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadAfterStartup() {
+        Thread.ofVirtual().name("sales-column-store-load").start(this::load);
+    }
+
+    @EventListener
+    public void onReservationEvent(ReservationDomainEvent event) {
+        switch (event.type()) {
+            case PAYMENT_COMPLETED -> append(reservationRepository.findPaidSeatSales(event.reservationId()), false);
+            case RESERVATION_CANCELLED -> remove(event.reservationId());
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Grupuje sprzedaż z seansów w dniach [from, to] według podanych wymiarów
+     *
+     * @param groupBy - wymiary grupowania (pusta lista = suma całej sprzedaży)
+     * @param from - pierwszy dzień seansu (null = bez ograniczenia)
+     * @param to - ostatni dzień seansu włącznie (null = bez ograniczenia)
+     * @throws IllegalArgumentException jeśli kombinacja wymiarów daje zbyt wiele grup
+     */
+    public SalesQueryResultDTO query(List<SalesDimension> groupBy, LocalDate from, LocalDate to) {
+        long start = System.nanoTime();
+        // Najpierw kolumny, potem liczności - słowniki zawierają już wszystkie kody z tej wersji kolumn
+        Columns snapshot = columns;
+        SalesDimension[] dimensions = groupBy.stream().distinct().toArray(SalesDimension[]::new);
+
+        int[] cardinalities = new int[dimensions.length];
+        int[] strides = new int[dimensions.length];
+        long groupCount = 1;
+        for (int d = dimensions.length - 1; d >= 0; d--) {
+            cardinalities[d] = Math.max(1, cardinality(dimensions[d]));
+            strides[d] = (int) groupCount;
+            groupCount *= cardinalities[d];
+            if (groupCount > MAX_GROUPS) {
+                throw new IllegalArgumentException("Zbyt wiele grup dla wymiarów " + groupBy + " - wybierz mniej wymiarów");
+            }
+        }
+
+        int fromMinute = from != null ? toMinute(from.atStartOfDay()) : Integer.MIN_VALUE;
+        int toMinute = to != null ? toMinute(to.plusDays(1).atStartOfDay()) : Integer.MAX_VALUE;
+        int size = snapshot.size;
+        int chunkSize = Math.max(MIN_SCAN_CHUNK,
+                (size + Runtime.getRuntime().availableProcessors() - 1) / Runtime.getRuntime().availableProcessors());
+        int chunks = (size + chunkSize - 1) / chunkSize;
+        int groups = (int) groupCount;
+
+        Partial total = IntStream.range(0, chunks)
+                .parallel()
+                .mapToObj(chunk -> scan(snapshot, dimensions, strides, groups, fromMinute, toMinute,
+                        chunk * chunkSize, Math.min(size, (chunk + 1) * chunkSize)))
+                .reduce(Partial::merge)
+                .orElseGet(() -> new Partial(groups));
+
+        List<SalesQueryResultDTO.Group> result = new ArrayList<>();
+        for (int key = 0; key < groups; key++) {
+            if (total.seats[key] == 0) {
+                continue;
+            }
+            List<String> keys = new ArrayList<>(dimensions.length);
+            for (int d = 0; d < dimensions.length; d++) {
+                int code = (key / strides[d]) % cardinalities[d];
+                keys.add(label(dimensions[d], code));
+            }
+            result.add(SalesQueryResultDTO.Group.builder()
+                    .keys(keys)
+                    .seats(total.seats[key])
+                    .revenue(BigDecimal.valueOf(total.cents[key], 2))
+                    .build());
+        }
+        result.sort(Comparator.comparing(SalesQueryResultDTO.Group::getRevenue).reversed());
+
+        return SalesQueryResultDTO.builder()
+                .groupBy(List.of(dimensions))
+                .groups(result)
+                .rowsScanned((long) size)
+                .elapsedMicros((System.nanoTime() - start) / 1000)
+                .complete(loaded)
+                .build();
+    }
+
+    /**
+     * Ładuje wszystkie opłacone miejsca z bazy stronami
+     * Zdarzenia obsłużone w trakcie ładowania są uwzględniane (dopisane rezerwacje nie są dublowane,
+     * anulowane nie są dopisywane)
+     */
+    void load() {
+        synchronized (this) {
+            loading = true;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            long afterReservationId = 0;
+            long afterSeatId = 0;
+            while (true) {
+                List<SeatSaleRow> page = reservationRepository.findPaidSeatSalesPage(
+                        afterReservationId, afterSeatId, LOAD_PAGE_SIZE);
+                if (page.isEmpty()) {
+                    break;
+                }
+                append(page, true);
+                SeatSaleRow last = page.get(page.size() - 1);
+                afterReservationId = last.getReservationId();
+                afterSeatId = last.getReservationSeatId();
+                if (page.size() < LOAD_PAGE_SIZE) {
+                    break;
+                }
+            }
+            loaded = true;
+            log.info("Załadowano magazyn analiz sprzedaży: {} miejsc w {} ms",
+                    columns.size, System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.error("Nie udało się załadować magazynu analiz sprzedaży - ponowna próba za {} ms", loadRetryMs, e);
+            reset();
+            scheduleReload();
+        } finally {
+            synchronized (this) {
+                loading = false;
+                cancelledWhileLoading.clear();
+            }
+        }
+    }
+
+    /**
+     * Czyści magazyn po nieudanym ładowaniu (kolumny byłyby załadowane tylko częściowo)
+     * Rezerwacje dopisane w międzyczasie zdarzeniami wrócą z ponownym ładowaniem z bazy
+     */
+    private synchronized void reset() {
+        rowsByReservation.clear();
+        columns = new Columns(INITIAL_CAPACITY);
+    }
+
+    private void scheduleReload() {
+        Thread.ofVirtual().name("sales-column-store-reload").start(() -> {
+            try {
+                Thread.sleep(Duration.ofMillis(loadRetryMs));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            load();
+        });
+    }
+
+    private synchronized void append(List<SeatSaleRow> rows, boolean fromLoad) {
+        Columns current = columns;
+        int size = current.size;
+        int from = 0;
+        while (from < rows.size()) {
+            // Wiersze przychodzą posortowane po rezerwacji - dopisujemy rezerwację w całości albo wcale
+            Long reservationId = rows.get(from).getReservationId();
+            int to = from;
+            while (to < rows.size() && rows.get(to).getReservationId().equals(reservationId)) {
+                to++;
+            }
+            boolean skip = rowsByReservation.containsKey(reservationId)
+                    || (fromLoad && cancelledWhileLoading.contains(reservationId));
+            if (!skip) {
+                current = current.ensureCapacity(size + (to - from));
+                rowsByReservation.put(reservationId, new int[]{size, to - from});
+                for (int i = from; i < to; i++) {
+                    current.set(size++, rows.get(i), movies, rooms);
+                }
+            }
+            from = to;
+        }
+        columns = current.withSize(size);
+    }
+
+    private synchronized void remove(Long reservationId) {
+        // W trakcie ładowania zapamiętujemy każde anulowanie - także rezerwacji dopisanej już zdarzeniem,
+        // bo strona pobrana przed anulowaniem może ją jeszcze zawierać jako opłaconą
+        if (loading) {
+            cancelledWhileLoading.add(reservationId);
+        }
+        int[] range = rowsByReservation.remove(reservationId);
+        if (range == null) {
+            return;
+        }
+        Columns current = columns;
+        for (int row = range[0]; row < range[0] + range[1]; row++) {
+            current.live[row >>> 6] &= ~(1L << row);
+        }
+    }
+
+    /**
+     * Skan jednego fragmentu kolumn: najpierw klucz grupy liczony kolumna po kolumnie
+     * w krótkich blokach (proste pętle po tablicach), potem filtr i sumowanie
+     */
+    private static Partial scan(Columns c, SalesDimension[] dimensions, int[] strides, int groups,
+                                int fromMinute, int toMinute, int start, int end) {
+        Partial partial = new Partial(groups);
+        int[] keys = new int[SCAN_BLOCK];
+
+        for (int blockStart = start; blockStart < end; blockStart += SCAN_BLOCK) {
+            int length = Math.min(SCAN_BLOCK, end - blockStart);
+            Arrays.fill(keys, 0, length, 0);
+            for (int d = 0; d < dimensions.length; d++) {
+                addDimension(c, dimensions[d], strides[d], blockStart, length, keys);
+            }
+
+            for (int i = 0; i < length; i++) {
+                int row = blockStart + i;
+                int minute = c.startMinute[row];
+                if ((c.live[row >>> 6] & (1L << row)) == 0 || minute < fromMinute || minute >= toMinute) {
+                    continue;
+                }
+                partial.seats[keys[i]]++;
+                partial.cents[keys[i]] += c.priceCents[row];
+            }
+        }
+        return partial;
+    }
+
+    private static void addDimension(Columns c, SalesDimension dimension, int stride, int start, int length, int[] keys) {
+        switch (dimension) {
+            case MOVIE -> {
+                for (int i = 0; i < length; i++) {
+                    keys[i] += stride * c.movie[start + i];
+                }
+            }
+            case ROOM -> {
+                for (int i = 0; i < length; i++) {
+                    keys[i] += stride * c.room[start + i];
+                }
+            }
+            case WEEKDAY -> {
+                // 1970-01-01 to czwartek (indeks 3, licząc od poniedziałku = 0)
+                for (int i = 0; i < length; i++) {
+                    keys[i] += stride * ((c.startMinute[start + i] / MINUTES_PER_DAY + 3) % 7);
+                }
+            }
+            case HOUR -> {
+                for (int i = 0; i < length; i++) {
+                    keys[i] += stride * ((c.startMinute[start + i] % MINUTES_PER_DAY) / 60);
+                }
+            }
+            case TICKET_TYPE -> {
+                for (int i = 0; i < length; i++) {
+                    keys[i] += stride * c.ticketType[start + i];
+                }
+            }
+            case PAYMENT_METHOD -> {
+                for (int i = 0; i < length; i++) {
+                    keys[i] += stride * c.paymentMethod[start + i];
+                }
+            }
+        }
+    }
+
+    private int cardinality(SalesDimension dimension) {
+        return switch (dimension) {
+            case MOVIE -> movies.size();
+            case ROOM -> rooms.size();
+            case WEEKDAY -> 7;
+            case HOUR -> 24;
+            case TICKET_TYPE -> TICKET_TYPES.length;
+            case PAYMENT_METHOD -> PAYMENT_METHODS.length + 1; // + UNKNOWN
+        };
+    }
+
+    private String label(SalesDimension dimension, int code) {
+        return switch (dimension) {
+            case MOVIE -> movies.name(code);
+            case ROOM -> rooms.name(code);
+            case WEEKDAY -> DayOfWeek.of(code + 1).name();
+            case HOUR -> String.format("%02d:00", code);
+            case TICKET_TYPE -> TICKET_TYPES[code].name();
+            case PAYMENT_METHOD -> code < PAYMENT_METHODS.length ? PAYMENT_METHODS[code].name() : UNKNOWN;
+        };
+    }
+
+    private static int toMinute(LocalDateTime time) {
+        return (int) (time.toEpochSecond(ZoneOffset.UTC) / 60);
+    }
+
+    /**
+     * Kolumny magazynu - tablice są współdzielone między wersjami, a size mówi, ile wierszy widzi odczyt
+     * Wiersze poniżej size nie są już zmieniane, poza czyszczeniem bitów live przy anulowaniu
+     */
+    private static final class Columns {
+
+        final int[] movie;
+        final int[] room;
+        final byte[] ticketType;
+        final byte[] paymentMethod;
+        final int[] startMinute;
+        final int[] priceCents;
+        final long[] live;
+        final int size;
+
+        Columns(int capacity) {
+            this(new int[capacity], new int[capacity], new byte[capacity], new byte[capacity],
+                    new int[capacity], new int[capacity], new long[(capacity + 63) / 64], 0);
+        }
+
+        private Columns(int[] movie, int[] room, byte[] ticketType, byte[] paymentMethod,
+                        int[] startMinute, int[] priceCents, long[] live, int size) {
+            this.movie = movie;
+            this.room = room;
+            this.ticketType = ticketType;
+            this.paymentMethod = paymentMethod;
+            this.startMinute = startMinute;
+            this.priceCents = priceCents;
+            this.live = live;
+            this.size = size;
+        }
+
+        Columns ensureCapacity(int required) {
+            if (required <= movie.length) {
+                return this;
+            }
+            int capacity = Math.max(required, movie.length * 2);
+            return new Columns(Arrays.copyOf(movie, capacity), Arrays.copyOf(room, capacity),
+                    Arrays.copyOf(ticketType, capacity), Arrays.copyOf(paymentMethod, capacity),
+                    Arrays.copyOf(startMinute, capacity), Arrays.copyOf(priceCents, capacity),
+                    Arrays.copyOf(live, (capacity + 63) / 64), size);
+        }
+
+        Columns withSize(int newSize) {
+            return new Columns(movie, room, ticketType, paymentMethod, startMinute, priceCents, live, newSize);
+        }
+
+        void set(int row, SeatSaleRow sale, Dictionary movies, Dictionary rooms) {
+            movie[row] = movies.code(sale.getMovieId(), sale.getMovieTitle());
+            room[row] = rooms.code(sale.getRoomId(), sale.getRoomNumber());
+            ticketType[row] = (byte) TicketType.valueOf(sale.getTicketType()).ordinal();
+            paymentMethod[row] = (byte) (sale.getPaymentMethod() != null
+                    ? PaymentMethod.valueOf(sale.getPaymentMethod()).ordinal()
+                    : PAYMENT_METHODS.length);
+            startMinute[row] = toMinute(sale.getScreeningStart());
+            priceCents[row] = sale.getPrice().movePointRight(2).intValueExact();
+            live[row >>> 6] |= 1L << row;
+        }
+    }
+
+    /**
+     * Słownik ID -> kolejny kod (kod = indeks nazwy); zapisy pod blokadą magazynu
+     */
+    private static final class Dictionary {
+
+        private final Map<Long, Integer> codes = new HashMap<>();
+        private final List<String> names = new CopyOnWriteArrayList<>();
+
+        int code(Long id, String name) {
+            return codes.computeIfAbsent(id, key -> {
+                names.add(name);
+                return names.size() - 1;
+            });
+        }
+
+        String name(int code) {
+            return names.get(code);
+        }
+
+        int size() {
+            return names.size();
+        }
+    }
+
+    /**
+     * Częściowe sumy jednego fragmentu skanu (liczba miejsc i grosze per grupa)
+     */
+    private static final class Partial {
+
+        final long[] seats;
+        final long[] cents;
+
+        Partial(int groups) {
+            this.seats = new long[groups];
+            this.cents = new long[groups];
+        }
+
+        Partial merge(Partial other) {
+            for (int i = 0; i < seats.length; i++) {
+                seats[i] += other.seats[i];
+                cents[i] += other.cents[i];
+            }
+            return this;
+        }
+    }
+}
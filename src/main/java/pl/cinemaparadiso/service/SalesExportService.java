@@ -0,0 +1,142 @@
+package pl.cinemaparadiso.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.cinemaparadiso.repository.ReservationRepository;
+import pl.cinemaparadiso.repository.ReservationRepository.SalesExportRow;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Eksport rezerwacji i sprzedanych biletów do CSV (dla księgowości)
+ *
+ * Wiersze są pobierane stronami po kluczu (reservation_id, reservation_seat_id) - każda strona
+ * w osobnej, krótkiej transakcji tylko do odczytu - i od razu zapisywane do strumienia odpowiedzi.
+ * W pamięci jest najwyżej jedna strona, a eksport roku sprzedaży nie trzyma przez cały czas
+ * otwartej transakcji ani blokad na tabelach rezerwacji.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SalesExportService {
+
+    private static final String HEADER = "reservation_id,reservation_seat_id,user_id,created_at,status," +
+            "payment_method,payment_date,transaction_id,screening_id,screening_start,movie_title," +
+            "room_number,row_number,seat_number,ticket_type,price";
+
+    private final ReservationRepository reservationRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${exports.sales.page-size:1000}")
+    private int pageSize;
+
+    private TransactionTemplate readOnlyTransaction;
+
+    @PostConstruct
+    void initReadOnlyTransaction() {
+        readOnlyTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Zapisuje do strumienia CSV z rezerwacjami utworzonymi w dniach [from, to] (włącznie)
+     *
+     * @return liczba wyeksportowanych wierszy (miejsc)
+     */
+    public long exportCsv(LocalDate from, LocalDate to, OutputStream outputStream) throws IOException {
+        LocalDateTime fromTime = from.atStartOfDay();
+        LocalDateTime toTime = to.plusDays(1).atStartOfDay();
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        writer.write(HEADER);
+        writer.write('\n');
+
+        long afterReservationId = 0;
+        long afterSeatId = 0;
+        long exported = 0;
+
+        while (true) {
+            long reservationKey = afterReservationId;
+            long seatKey = afterSeatId;
+            List<SalesExportRow> page = readOnlyTransaction.execute(status ->
+                    reservationRepository.findSalesExportPage(fromTime, toTime, reservationKey, seatKey, pageSize));
+            if (page == null || page.isEmpty()) {
+                break;
+            }
+
+            for (SalesExportRow row : page) {
+                writeRow(writer, row);
+            }
+            exported += page.size();
+            // Przepchnięcie strony do klienta - pamięć nie rośnie z rozmiarem eksportu
+            writer.flush();
+
+            SalesExportRow last = page.get(page.size() - 1);
+            afterReservationId = last.getReservationId();
+            afterSeatId = last.getReservationSeatId();
+            if (page.size() < pageSize) {
+                break;
+            }
+        }
+
+        writer.flush();
+        log.info("Wyeksportowano {} wierszy sprzedaży z okresu {} - {}", exported, from, to);
+        return exported;
+    }
+
+    private static void writeRow(Writer writer, SalesExportRow row) throws IOException {
+        writer.write(String.join(",",
+                value(row.getReservationId()),
+                value(row.getReservationSeatId()),
+                value(row.getUserId()),
+                value(row.getCreatedAt()),
+                value(row.getStatus()),
+                value(row.getPaymentMethod()),
+                value(row.getPaymentDate()),
+                escape(row.getTransactionId()),
+                value(row.getScreeningId()),
+                value(row.getScreeningStart()),
+                escape(row.getMovieTitle()),
+                escape(row.getRoomNumber()),
+                value(row.getRowNumber()),
+                value(row.getSeatNumber()),
+                value(row.getTicketType()),
+                row.getPrice() != null ? row.getPrice().toPlainString() : ""));
+        writer.write('\n');
+    }
+
+    private static String value(Object value) {
+        return Objects.toString(value, "");
+    }
+
+    /**
+     * Pole tekstowe w cudzysłowie, jeśli zawiera przecinek, cudzysłów lub nową linię (RFC 4180)
+     * Wartość zaczynająca się od =, +, -, @ (lub tabulacji / powrotu karetki) dostaje apostrof na początku -
+     * tytuły i numery sal wpisują użytkownicy, a arkusz kalkulacyjny wykonałby je jako formułę
+     */
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (!value.isEmpty() && "=+-@\t\r".indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
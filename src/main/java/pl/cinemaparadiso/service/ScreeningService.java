@@ -45,6 +45,7 @@ public class ScreeningService {
     private final MovieRepository movieRepository;
     private final RoomRepository roomRepository;
     private final ReservationSeatRepository reservationSeatRepository;
+    private final SeatInventoryService seatInventoryService;
     
     private static final int BREAK_TIME_MINUTES = 15; // Przerwa między seansami
     
@@ -288,6 +289,7 @@ public class ScreeningService {
         }
         
         screeningRepository.delete(screening);
+        seatInventoryService.invalidate(id);
         log.info("Seans usunięty pomyślnie: ID={}", id);
     }
     
@@ -0,0 +1,90 @@
+package pl.cinemaparadiso.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import pl.cinemaparadiso.dto.BestAvailableRequestDTO;
+import pl.cinemaparadiso.dto.CreateReservationDTO;
+import pl.cinemaparadiso.dto.ReservationDTO;
+import pl.cinemaparadiso.enums.TicketType;
+import pl.cinemaparadiso.exception.SeatNotAvailableException;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Automatyczny wybór i rezerwacja najlepszych sąsiadujących miejsc
+ *
+ * Blok miejsc jest wyszukiwany w pamięciowej migawce planu sali (BestAvailableSeatFinder),
+ * a rezerwacja przechodzi zwykłą ścieżką (BookingSequencer -> ReservationService).
+ * Jeśli ktoś zajmie wybrane miejsca w międzyczasie, wyszukiwanie jest powtarzane
+ * z pominięciem przegranych miejsc.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SeatAllocationService {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final SeatInventoryService seatInventoryService;
+    private final BookingSequencer bookingSequencer;
+
+    public ReservationDTO reserveBestAvailable(BestAvailableRequestDTO request, Long userId) {
+        int partySize = request.getPartySize();
+        List<TicketType> ticketTypes = resolveTicketTypes(request);
+
+        log.info("Automatyczny wybór {} miejsc dla użytkownika ID: {}, seans ID: {}, typ miejsc: {}",
+                partySize, userId, request.getScreeningId(), request.getSeatType());
+
+        BitSet excluded = new BitSet();
+        SeatNotAvailableException lastConflict = null;
+
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            SeatMapSnapshot snapshot = seatInventoryService.getSnapshot(request.getScreeningId());
+            int blockStart = BestAvailableSeatFinder.findBestBlock(
+                    snapshot, partySize, request.getSeatType(), request.getPreferredRow(), excluded);
+
+            if (blockStart < 0) {
+                throw new SeatNotAvailableException("Brak " + partySize + " wolnych miejsc obok siebie" +
+                        (request.getSeatType() != null ? " typu " + request.getSeatType() : "") + " na ten seans");
+            }
+
+            RoomLayout layout = snapshot.getLayout();
+            List<CreateReservationDTO.SeatSelectionDTO> seats = new ArrayList<>(partySize);
+            for (int i = 0; i < partySize; i++) {
+                seats.add(CreateReservationDTO.SeatSelectionDTO.builder()
+                        .seatId(layout.seatId(blockStart + i))
+                        .ticketType(ticketTypes.get(i))
+                        .build());
+            }
+
+            try {
+                return bookingSequencer.createReservation(CreateReservationDTO.builder()
+                        .screeningId(request.getScreeningId())
+                        .seats(seats)
+                        .build(), userId);
+            } catch (SeatNotAvailableException e) {
+                log.debug("Konflikt przy automatycznym wyborze miejsc (próba {}): {}", attempt, e.getMessage());
+                excluded.set(blockStart, blockStart + partySize);
+                lastConflict = e;
+            }
+        }
+
+        throw lastConflict;
+    }
+
+    private List<TicketType> resolveTicketTypes(BestAvailableRequestDTO request) {
+        int partySize = request.getPartySize();
+        List<TicketType> ticketTypes = request.getTicketTypes();
+        if (ticketTypes == null || ticketTypes.isEmpty()) {
+            return Collections.nCopies(partySize, TicketType.NORMAL);
+        }
+        if (ticketTypes.size() != partySize || ticketTypes.contains(null)) {
+            throw new IllegalArgumentException("Liczba typów biletów musi być równa liczbie osób (" + partySize + ")");
+        }
+        return ticketTypes;
+    }
+}
@@ -0,0 +1,255 @@
+package pl.cinemaparadiso.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import pl.cinemaparadiso.entity.Reservation;
+import pl.cinemaparadiso.entity.Screening;
+import pl.cinemaparadiso.enums.ReservationStatus;
+import pl.cinemaparadiso.exception.ScreeningNotFoundException;
+import pl.cinemaparadiso.repository.ReservationSeatRepository;
+import pl.cinemaparadiso.repository.ScreeningRepository;
+import pl.cinemaparadiso.repository.SeatRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Pamięciowy stan zajętości miejsc dla seansów
+ *
+ * Dla każdego seansu trzymana jest bitmapa zajętości (long[]) oraz współdzielony,
+ * niezmienny układ sali (RoomLayout). Stan jest ładowany z bazy raz, przy pierwszym
+ * odczycie planu sali, a potem aktualizowany po zatwierdzeniu transakcji, które
+ * zmieniają status rezerwacji (ReservationService, PaymentService).
+ * Odczyt planu sali dla załadowanego seansu nie wykonuje żadnych zapytań SQL.
+ *
+ * Każda zmiana zajętości jest publikowana jako SeatMapChangedEvent (np. dla strumienia SSE).
+ * Wersje pochodzą z jednego licznika, więc rosną także po ponownym załadowaniu seansu.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SeatInventoryService {
+
+    /**
+     * Jak długo po rozpoczęciu seansu trzymamy jego stan w pamięci
+     */
+    private static final long RETENTION_HOURS_AFTER_START = 6;
+
+    private final ScreeningRepository screeningRepository;
+    private final SeatRepository seatRepository;
+    private final ReservationSeatRepository reservationSeatRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Map<Long, RoomLayout> layouts = new ConcurrentHashMap<>();
+    private final Map<Long, ScreeningSeatInventory> inventories = new ConcurrentHashMap<>();
+    private final AtomicLong versionSequence = new AtomicLong();
+
+    /**
+     * Zwraca aktualną migawkę zajętości miejsc seansu (ładuje ją z bazy przy pierwszym użyciu)
+     *
+     * @throws ScreeningNotFoundException jeśli seans nie istnieje
+     */
+    public SeatMapSnapshot getSnapshot(Long screeningId) {
+        return getInventory(screeningId).snapshot();
+    }
+
+    /**
+     * Zwraca układ sali (współdzielony przez wszystkie seanse w tej sali)
+     * Pusty układ (nieistniejąca sala lub sala bez miejsc) nie jest zapamiętywany - ID sali
+     * pochodzi z publicznego endpointu, a sala o tym ID może zostać utworzona później
+     */
+    public RoomLayout getLayout(Long roomId) {
+        RoomLayout cached = layouts.get(roomId);
+        if (cached != null) {
+            return cached;
+        }
+
+        RoomLayout layout = RoomLayout.of(roomId, seatRepository.findByRoomIdOrderByRowNumberAscSeatNumberAsc(roomId));
+        if (layout.size() == 0) {
+            return layout;
+        }
+        RoomLayout existing = layouts.putIfAbsent(roomId, layout);
+        return existing != null ? existing : layout;
+    }
+
+    /**
+     * Rejestruje zmianę statusu rezerwacji
+     * Jeśli zmienia się to, czy rezerwacja blokuje miejsca, bitmapa seansu zostanie
+     * zaktualizowana po zatwierdzeniu bieżącej transakcji
+     *
+     * @param reservation - rezerwacja z już ustawionym nowym statusem
+     * @param previousStatus - status przed zmianą (null dla nowej rezerwacji)
+     */
+    public void reservationStatusChanged(Reservation reservation, ReservationStatus previousStatus) {
+        boolean wasHolding = previousStatus != null && previousStatus.holdsSeats();
+        boolean isHolding = reservation.getStatus().holdsSeats();
+        if (wasHolding == isHolding) {
+            return;
+        }
+
+        Long screeningId = reservation.getScreening().getId();
+        List<Long> seatIds = reservation.getReservationSeats().stream()
+                .map(rs -> rs.getSeat().getId())
+                .toList();
+
+        runAfterCommit(() -> markSeats(screeningId, seatIds, isHolding));
+    }
+
+    /**
+     * Zwalnia miejsca seansu po zatwierdzeniu bieżącej transakcji
+     * Używane przy masowych zmianach wykonanych zapytaniem UPDATE (bez encji Reservation)
+     */
+    public void releaseSeats(Long screeningId, Collection<Long> seatIds) {
+        runAfterCommit(() -> markSeats(screeningId, seatIds, false));
+    }
+
+    /**
+     * Usuwa stan seansu z pamięci po zatwierdzeniu transakcji (zostanie ponownie załadowany z bazy)
+     * Używane gdy nie da się jednoznacznie wyznaczyć zmiany (np. konflikt miejsc)
+     */
+    public void invalidate(Long screeningId) {
+        runAfterCommit(() -> {
+            inventories.remove(screeningId);
+            eventPublisher.publishEvent(SeatMapChangedEvent.reset(screeningId));
+        });
+    }
+
+    /**
+     * Usuwa z pamięci układ sali i stan wszystkich jej seansów (np. po usunięciu sali)
+     */
+    public void evictRoom(Long roomId) {
+        runAfterCommit(() -> {
+            layouts.remove(roomId);
+            inventories.values().removeIf(inventory -> inventory.getLayout().getRoomId().equals(roomId));
+        });
+    }
+
+    ScreeningSeatInventory getInventory(Long screeningId) {
+        ScreeningSeatInventory inventory = inventories.get(screeningId);
+        if (inventory != null) {
+            return inventory;
+        }
+        evictFinishedScreenings();
+        // computeIfAbsent blokuje klucz na czas ładowania, więc zmiany zatwierdzone w trakcie
+        // ładowania (markSeats -> computeIfPresent) zostaną zastosowane dopiero po nim
+        return inventories.computeIfAbsent(screeningId, this::load);
+    }
+
+    private ScreeningSeatInventory load(Long screeningId) {
+        Screening screening = screeningRepository.findById(screeningId)
+                .orElseThrow(() -> new ScreeningNotFoundException("Seans o ID " + screeningId + " nie istnieje"));
+
+        RoomLayout layout = getLayout(screening.getRoom().getId());
+        List<Long> reservedSeatIds = reservationSeatRepository.findReservedSeatIdsByScreeningId(screeningId);
+
+        ScreeningSeatInventory inventory = new ScreeningSeatInventory(
+                screeningId, layout, screening.getStartTime(), versionSequence::incrementAndGet);
+        inventory.mark(reservedSeatIds, true);
+
+        log.debug("Załadowano stan miejsc seansu ID: {} ({} miejsc, {} zajętych)",
+                screeningId, layout.size(), reservedSeatIds.size());
+        return inventory;
+    }
+
+    private void markSeats(Long screeningId, Collection<Long> seatIds, boolean occupied) {
+        SeatMapChangedEvent[] change = new SeatMapChangedEvent[1];
+        inventories.computeIfPresent(screeningId, (id, inventory) -> {
+            change[0] = inventory.mark(seatIds, occupied);
+            return inventory;
+        });
+        // Publikacja poza computeIfPresent - słuchacze nie mogą działać pod blokadą mapy
+        if (change[0] != null) {
+            eventPublisher.publishEvent(change[0]);
+        }
+    }
+
+    private void evictFinishedScreenings() {
+        LocalDateTime threshold = LocalDateTime.now().minusHours(RETENTION_HOURS_AFTER_START);
+        inventories.values().removeIf(inventory -> inventory.getStartTime().isBefore(threshold));
+    }
+
+    private void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Bitmapa zajętości miejsc jednego seansu
+     * Zapisy i migawki są synchronizowane na obiekcie (bitmapa ma kilkanaście słów long)
+     */
+    static final class ScreeningSeatInventory {
+
+        private final Long screeningId;
+        private final RoomLayout layout;
+        private final LocalDateTime startTime;
+        private final long[] occupied;
+        private final LongSupplier versions;
+        private long version;
+
+        ScreeningSeatInventory(Long screeningId, RoomLayout layout, LocalDateTime startTime, LongSupplier versions) {
+            this.screeningId = screeningId;
+            this.layout = layout;
+            this.startTime = startTime;
+            this.occupied = new long[(layout.size() + 63) >>> 6];
+            this.versions = versions;
+            this.version = versions.getAsLong();
+        }
+
+        RoomLayout getLayout() {
+            return layout;
+        }
+
+        LocalDateTime getStartTime() {
+            return startTime;
+        }
+
+        /**
+         * Ustawia bity miejsc i zwraca opis zmiany (null jeśli nic się nie zmieniło)
+         */
+        synchronized SeatMapChangedEvent mark(Collection<Long> seatIds, boolean value) {
+            List<Long> changed = new ArrayList<>();
+            for (Long seatId : seatIds) {
+                int index = layout.indexOf(seatId);
+                if (index < 0) {
+                    continue;
+                }
+                long mask = 1L << index;
+                long word = occupied[index >>> 6];
+                long updated = value ? word | mask : word & ~mask;
+                if (updated != word) {
+                    occupied[index >>> 6] = updated;
+                    changed.add(seatId);
+                }
+            }
+            if (changed.isEmpty()) {
+                return null;
+            }
+            version = versions.getAsLong();
+            return value
+                    ? new SeatMapChangedEvent(screeningId, version, changed, List.of(), false)
+                    : new SeatMapChangedEvent(screeningId, version, List.of(), changed, false);
+        }
+
+        synchronized SeatMapSnapshot snapshot() {
+            return new SeatMapSnapshot(screeningId, layout, occupied.clone(), version);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package pl.cinemaparadiso.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import pl.cinemaparadiso.dto.SeatMapDeltaDTO;
+import pl.cinemaparadiso.dto.SeatMapSnapshotDTO;
+import pl.cinemaparadiso.exception.ScreeningNotFoundException;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Strumień zmian planu sali (Server-Sent Events)
+ *
+ * Nowy subskrybent dostaje pełną migawkę planu sali (zdarzenie "snapshot"), a potem
+ * tylko zmiany (zdarzenie "delta") publikowane przez SeatInventoryService.
+ *
+ * Każdy subskrybent ma własną ograniczoną kolejkę wiadomości (seatmap.stream.outbox-size),
+ * opróżnianą przez wątek wirtualny tylko wtedy, gdy jest w niej coś do wysłania. Klient, który
+ * przestał czytać, blokuje wyłącznie swój wątek - pozostali dostają zmiany bez opóźnień.
+ * Gdy kolejka się przepełni, zaległe delty są porzucane, a klient dostaje w zamian nową pełną migawkę.
+ * Wątek żądania HTTP jest zwalniany zaraz po subskrypcji.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SeatMapBroadcaster {
+
+    private final SeatInventoryService seatInventoryService;
+
+    @Value("${seatmap.stream.timeout-ms:1800000}")
+    private long emitterTimeoutMillis;
+
+    @Value("${seatmap.stream.outbox-size:64}")
+    private int outboxSize;
+
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Rejestruje subskrybenta i wysyła mu aktualny plan sali
+     *
+     * @throws ScreeningNotFoundException jeśli seans nie istnieje
+     */
+    public SseEmitter subscribe(Long screeningId) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMillis);
+        Subscriber subscriber = new Subscriber(screeningId, emitter);
+
+        // Najpierw rejestracja, potem migawka - zmiany nieujęte w migawce mają wyższą wersję
+        // i trafią do klienta jako delta (klient pomija delty o wersji nie wyższej niż migawka)
+        Set<Subscriber> screeningSubscribers = subscribers.compute(screeningId, (id, current) -> {
+            Set<Subscriber> target = current != null ? current : new CopyOnWriteArraySet<>();
+            target.add(subscriber);
+            return target;
+        });
+        SeatMapSnapshotDTO snapshot;
+        try {
+            snapshot = loadSnapshot(screeningId);
+        } catch (RuntimeException e) {
+            unsubscribe(subscriber);
+            throw e;
+        }
+
+        Runnable unsubscribe = () -> unsubscribe(subscriber);
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(error -> unsubscribe.run());
+
+        subscriber.enqueue(new Message("snapshot", snapshot));
+        log.debug("Nowy subskrybent planu sali seansu ID: {} (łącznie: {})", screeningId, screeningSubscribers.size());
+        return emitter;
+    }
+
+    @EventListener
+    public void onSeatMapChanged(SeatMapChangedEvent event) {
+        Set<Subscriber> screeningSubscribers = subscribers.get(event.screeningId());
+        if (screeningSubscribers == null || screeningSubscribers.isEmpty()) {
+            return;
+        }
+
+        if (event.reset()) {
+            // Wczytanie migawki może sięgać do bazy - poza wątkiem publikującym zdarzenie
+            executor.execute(() -> resendSnapshot(event.screeningId()));
+            return;
+        }
+
+        Message delta = new Message("delta", SeatMapDeltaDTO.builder()
+                .screeningId(event.screeningId())
+                .version(event.version())
+                .takenSeatIds(event.takenSeatIds())
+                .releasedSeatIds(event.releasedSeatIds())
+                .build());
+        screeningSubscribers.forEach(subscriber -> subscriber.enqueue(delta));
+    }
+
+    /**
+     * Komentarz SSE co jakiś czas - pozwala wykryć zerwane połączenia i utrzymuje je przez proxy
+     * Subskrybent z zaległymi wiadomościami nie potrzebuje pingu
+     */
+    @Scheduled(fixedDelayString = "${seatmap.stream.heartbeat-ms:20000}")
+    public void heartbeat() {
+        subscribers.values().forEach(screeningSubscribers -> screeningSubscribers.forEach(Subscriber::ping));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+        subscribers.values().forEach(screeningSubscribers ->
+                screeningSubscribers.forEach(subscriber -> subscriber.emitter.complete()));
+    }
+
+    /**
+     * Stan seansu został porzucony - subskrybenci dostają nową pełną migawkę
+     * Jeśli seansu już nie ma (np. usunięty), strumienie są zamykane
+     */
+    private void resendSnapshot(Long screeningId) {
+        SeatMapSnapshotDTO snapshot;
+        try {
+            snapshot = loadSnapshot(screeningId);
+        } catch (ScreeningNotFoundException e) {
+            Set<Subscriber> removed = subscribers.remove(screeningId);
+            if (removed != null) {
+                removed.forEach(Subscriber::close);
+            }
+            return;
+        } catch (RuntimeException e) {
+            log.warn("Nie udało się wczytać planu sali seansu ID: {} po resecie stanu", screeningId, e);
+            return;
+        }
+
+        Set<Subscriber> screeningSubscribers = subscribers.get(screeningId);
+        if (screeningSubscribers != null) {
+            Message message = new Message("snapshot", snapshot);
+            screeningSubscribers.forEach(subscriber -> subscriber.enqueue(message));
+        }
+    }
+
+    /**
+     * Usuwa subskrybenta, a razem z ostatnim subskrybentem - wpis seansu w mapie
+     * Pod blokadą klucza mapy, tak jak rejestracja - nowy subskrybent nie trafi do usuwanego zbioru
+     */
+    private void unsubscribe(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.screeningId, (id, screeningSubscribers) -> {
+            screeningSubscribers.remove(subscriber);
+            return screeningSubscribers.isEmpty() ? null : screeningSubscribers;
+        });
+    }
+
+    private SeatMapSnapshotDTO loadSnapshot(Long screeningId) {
+        SeatMapSnapshot snapshot = seatInventoryService.getSnapshot(screeningId);
+        return SeatMapSnapshotDTO.builder()
+                .screeningId(snapshot.getScreeningId())
+                .version(snapshot.getVersion())
+                .seats(snapshot.toSeatAvailability())
+                .build();
+    }
+
+    /**
+     * Wiadomość SSE - zdarzenie z danymi albo komentarz (ping), gdy name == null
+     */
+    private record Message(String name, Object data) {
+
+        static final Message PING = new Message(null, null);
+
+        void sendTo(SseEmitter emitter) throws IOException {
+            if (name == null) {
+                emitter.send(SseEmitter.event().comment("ping"));
+            } else {
+                emitter.send(SseEmitter.event().name(name).data(data));
+            }
+        }
+    }
+
+    /**
+     * Jeden klient strumienia z własną kolejką wiadomości
+     * Co najwyżej jeden wątek naraz opróżnia kolejkę (flaga draining), więc kolejność wiadomości jest zachowana
+     */
+    private final class Subscriber {
+
+        private final Long screeningId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Message> outbox = new ArrayBlockingQueue<>(Math.max(1, outboxSize));
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean overflowed;
+        private volatile boolean closing;
+
+        Subscriber(Long screeningId, SseEmitter emitter) {
+            this.screeningId = screeningId;
+            this.emitter = emitter;
+        }
+
+        void enqueue(Message message) {
+            if (closing) {
+                return;
+            }
+            if (!outbox.offer(message)) {
+                // Klient nie nadąża - zaległe delty zastąpi pełna migawka wczytana przy opróżnianiu
+                overflowed = true;
+                outbox.clear();
+                log.debug("Przepełniona kolejka subskrybenta planu sali seansu ID: {} - zostanie wysłana migawka",
+                        screeningId);
+            }
+            scheduleDrain();
+        }
+
+        void ping() {
+            if (outbox.isEmpty() && !overflowed) {
+                enqueue(Message.PING);
+            }
+        }
+
+        void close() {
+            closing = true;
+            outbox.clear();
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this::drain);
+                } catch (RuntimeException e) {
+                    draining.set(false); // zamykanie aplikacji
+                }
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                if (closing) {
+                    emitter.complete();
+                    return;
+                }
+
+                Message message;
+                if (overflowed) {
+                    overflowed = false;
+                    try {
+                        message = new Message("snapshot", loadSnapshot(screeningId));
+                    } catch (RuntimeException e) {
+                        // Seans usunięty albo błąd odczytu - zamykamy strumień, przeglądarka połączy się ponownie
+                        closing = true;
+                        continue;
+                    }
+                } else {
+                    message = outbox.poll();
+                }
+
+                if (message == null) {
+                    draining.set(false);
+                    // Wiadomość mogła dojść między poll() a zwolnieniem flagi - wtedy opróżniamy dalej
+                    if ((outbox.isEmpty() && !overflowed && !closing) || !draining.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+
+                try {
+                    message.sendTo(emitter);
+                } catch (IOException | RuntimeException e) {
+                    // Klient się rozłączył - usuwamy go, SseEmitter sam zakończy żądanie
+                    closing = true;
+                    outbox.clear();
+                    unsubscribe(this);
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package pl.cinemaparadiso.service;
+
+import java.util.List;
+
+/**
+ * Zmiana zajętości miejsc seansu (publikowana przez SeatInventoryService po zatwierdzeniu transakcji)
+ *
+ * @param screeningId - ID seansu
+ * @param version - wersja stanu po zmianie
+ * @param takenSeatIds - miejsca, które zostały zajęte
+ * @param releasedSeatIds - miejsca, które zostały zwolnione
+ * @param reset - stan seansu został porzucony i trzeba pobrać go ponownie w całości
+ */
+public record SeatMapChangedEvent(Long screeningId,
+                                  long version,
+                                  List<Long> takenSeatIds,
+                                  List<Long> releasedSeatIds,
+                                  boolean reset) {
+
+    static SeatMapChangedEvent reset(Long screeningId) {
+        return new SeatMapChangedEvent(screeningId, 0, List.of(), List.of(), true);
+    }
+}
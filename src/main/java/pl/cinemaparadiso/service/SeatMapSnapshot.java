@@ -0,0 +1,95 @@
+package pl.cinemaparadiso.service;
+
+import pl.cinemaparadiso.dto.SeatAvailabilityDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Niezmienna migawka zajętości miejsc dla seansu
+ *
+ * Bit i w tablicy occupied odpowiada miejscu o indeksie i w RoomLayout.
+ * Wersja rośnie przy każdej zmianie zajętości, dzięki czemu klienci mogą
+ * rozpoznać, czy ich widok planu sali jest aktualny.
+ */
+public final class SeatMapSnapshot {
+
+    private final Long screeningId;
+    private final RoomLayout layout;
+    private final long[] occupied;
+    private final long version;
+
+    SeatMapSnapshot(Long screeningId, RoomLayout layout, long[] occupied, long version) {
+        this.screeningId = screeningId;
+        this.layout = layout;
+        this.occupied = occupied;
+        this.version = version;
+    }
+
+    public Long getScreeningId() {
+        return screeningId;
+    }
+
+    public RoomLayout getLayout() {
+        return layout;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Czy miejsce o danym indeksie jest zajęte przez aktywną rezerwację
+     */
+    public boolean isOccupied(int index) {
+        return (occupied[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Czy miejsce o danym indeksie można zarezerwować (włączone i niezajęte)
+     */
+    public boolean isFree(int index) {
+        return layout.isEnabled(index) && !isOccupied(index);
+    }
+
+    /**
+     * Plan sali w postaci listy DTO (kolejność jak w układzie sali)
+     */
+    public List<SeatAvailabilityDTO> toSeatAvailability() {
+        List<SeatAvailabilityDTO> seats = new ArrayList<>(layout.size());
+        for (int i = 0; i < layout.size(); i++) {
+            seats.add(SeatAvailabilityDTO.builder()
+                    .seatId(layout.seatId(i))
+                    .rowNumber(layout.rowNumber(i))
+                    .seatNumber(layout.seatNumber(i))
+                    .seatType(layout.seatType(i))
+                    .isAvailable(!isOccupied(i))
+                    .isSeatEnabled(layout.isEnabled(i))
+                    .build());
+        }
+        return seats;
+    }
+
+    /**
+     * Maska wolnych miejsc rzędu zapisana szesnastkowo (jedna cyfra na 4 miejsca, najstarszy bit = pierwsze miejsce)
+     *
+     * @param row - rząd liczony od 0 w kolejności układu
+     */
+    public String rowAvailabilityHex(int row) {
+        int start = layout.rowStart(row);
+        int end = layout.rowEnd(row);
+        StringBuilder hex = new StringBuilder((end - start + 3) / 4);
+        for (int group = start; group < end; group += 4) {
+            int digit = 0;
+            for (int bit = 0; bit < 4; bit++) {
+                int index = group + bit;
+                digit <<= 1;
+                if (index < end && !isOccupied(index)) {
+                    digit |= 1;
+                }
+            }
+            hex.append(Character.forDigit(digit, 16));
+        }
+        return hex.toString();
+    }
+}
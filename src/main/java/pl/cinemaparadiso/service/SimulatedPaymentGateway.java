@@ -0,0 +1,169 @@
+package pl.cinemaparadiso.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import pl.cinemaparadiso.dto.PaymentRequestDTO;
+import pl.cinemaparadiso.enums.PaymentMethod;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Lokalna symulacja bramki płatności
+ *
+ * Zachowanie każdej bramki ustawia się w konfiguracji (payments.gateway.{name}.*):
+ * - latency-min-ms / latency-max-ms - zwykły czas odpowiedzi,
+ * - slow-rate / slow-ms - odsetek wywołań, które "wiszą" dłużej (np. do testu limitu czasu),
+ * - error-rate - odsetek błędów technicznych (liczonych przez bezpiecznik),
+ * - lost-response-rate - odsetek płatności, które bramka rozliczyła, ale odpowiedź nie dotarła
+ *   (rozbieżność do wykrycia przez uzgadnianie płatności),
+ * - decline-rate - odsetek płatności odrzuconych przez bramkę.
+ *
+ * Zaakceptowane płatności są dopisywane do dziennego pliku rozliczeniowego
+ * ({payments.settlement.directory}/{name}-{data}.csv). ID transakcji rosną w czasie,
+ * więc plik jest od razu posortowany po transaction_id.
+ */
+@Slf4j
+public class SimulatedPaymentGateway implements PaymentGateway {
+
+    private static final String SETTLEMENT_HEADER = "transaction_id,reservation_id,payment_method,amount,settled_at";
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final String name;
+    private final Set<PaymentMethod> supportedMethods;
+    private final long latencyMinMillis;
+    private final long latencyMaxMillis;
+    private final double slowRate;
+    private final long slowMillis;
+    private final double errorRate;
+    private final double lostResponseRate;
+    private final double declineRate;
+    private final Path settlementDirectory;
+
+    private long lastSettlementMillis;
+    private int settlementSequence;
+
+    public SimulatedPaymentGateway(String name, Set<PaymentMethod> supportedMethods, Environment environment) {
+        String prefix = "payments.gateway." + name + ".";
+        this.name = name;
+        this.supportedMethods = Set.copyOf(supportedMethods);
+        this.latencyMinMillis = environment.getProperty(prefix + "latency-min-ms", Long.class, 1000L);
+        this.latencyMaxMillis = Math.max(latencyMinMillis,
+                environment.getProperty(prefix + "latency-max-ms", Long.class, 3000L));
+        this.slowRate = environment.getProperty(prefix + "slow-rate", Double.class, 0.0);
+        this.slowMillis = environment.getProperty(prefix + "slow-ms", Long.class, 30000L);
+        this.errorRate = environment.getProperty(prefix + "error-rate", Double.class, 0.0);
+        this.lostResponseRate = environment.getProperty(prefix + "lost-response-rate", Double.class, 0.0);
+        this.declineRate = environment.getProperty(prefix + "decline-rate", Double.class, 0.1);
+        this.settlementDirectory = Path.of(environment.getProperty("payments.settlement.directory", "settlements"));
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Set<PaymentMethod> getSupportedMethods() {
+        return supportedMethods;
+    }
+
+    @Override
+    public PaymentGatewayResult charge(PaymentRequestDTO paymentRequest, BigDecimal amount) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = random.nextDouble() < slowRate
+                ? slowMillis
+                : latencyMinMillis + random.nextLong(latencyMaxMillis - latencyMinMillis + 1);
+
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            // Przerwanie = przekroczony limit czasu, wynik i tak zostanie pominięty
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Przerwano wywołanie bramki " + name);
+        }
+
+        if (random.nextDouble() < errorRate) {
+            throw new IllegalStateException("Symulowany błąd techniczny bramki " + name);
+        }
+        if (random.nextDouble() < declineRate) {
+            log.debug("Bramka {}: płatność na kwotę {} odrzucona ({} ms)", name, amount, delay);
+            return PaymentGatewayResult.declined();
+        }
+
+        String transactionId = settle(paymentRequest, amount);
+        if (random.nextDouble() < lostResponseRate) {
+            throw new IllegalStateException("Symulowana utrata odpowiedzi bramki " + name + " po obciążeniu");
+        }
+        log.debug("Bramka {}: płatność na kwotę {} zaakceptowana, transakcja {} ({} ms)",
+                name, amount, transactionId, delay);
+        return PaymentGatewayResult.approved(transactionId);
+    }
+
+    @Override
+    public Reader openSettlementFile(LocalDate day) throws IOException {
+        Path file = settlementFile(day);
+        if (!Files.exists(file)) {
+            return Reader.nullReader();
+        }
+        return Files.newBufferedReader(file, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Nadaje ID transakcji i dopisuje ją do pliku rozliczeniowego dnia
+     * Synchronizacja gwarantuje, że kolejność w pliku = kolejność ID transakcji
+     */
+    private synchronized String settle(PaymentRequestDTO paymentRequest, BigDecimal amount) {
+        // Zegar nie może się cofnąć, inaczej plik przestałby być posortowany
+        long millis = Math.max(System.currentTimeMillis(), lastSettlementMillis);
+        settlementSequence = millis == lastSettlementMillis ? settlementSequence + 1 : 0;
+        lastSettlementMillis = millis;
+
+        LocalDateTime settledAt = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        LocalDate day = settledAt.toLocalDate();
+        String transactionId = transactionIdPrefix(day) + String.format("%013d-%04d", millis, settlementSequence);
+
+        String line = String.join(",",
+                transactionId,
+                String.valueOf(paymentRequest.getReservationId()),
+                paymentRequest.getPaymentMethod().name(),
+                amount.toPlainString(),
+                settledAt.toString());
+
+        try {
+            Path file = settlementFile(day);
+            if (!Files.exists(file)) {
+                Files.createDirectories(settlementDirectory);
+                Files.writeString(file, SETTLEMENT_HEADER + System.lineSeparator(), StandardCharsets.UTF_8);
+            }
+            Files.writeString(file, line + System.lineSeparator(), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Nie udało się zapisać rozliczenia bramki " + name, e);
+        }
+        return transactionId;
+    }
+
+    /**
+     * Wspólny początek ID transakcji bramki z danego dnia, np. TXN-BLIK-20261017-
+     */
+    private String transactionIdPrefix(LocalDate day) {
+        return "TXN-" + name.toUpperCase() + "-" + day.format(DAY_FORMAT) + "-";
+    }
+
+    private Path settlementFile(LocalDate day) {
+        return settlementDirectory.resolve(name + "-" + day + ".csv");
+    }
+}
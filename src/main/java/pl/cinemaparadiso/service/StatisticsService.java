@@ -1,24 +1,46 @@
 package pl.cinemaparadiso.service;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
-import pl.cinemaparadiso.entity.Reservation;
+import org.springframework.transaction.support.TransactionTemplate;
 import pl.cinemaparadiso.enums.PaymentMethod;
 import pl.cinemaparadiso.enums.ReservationStatus;
+import pl.cinemaparadiso.repository.DailySalesRepository;
+import pl.cinemaparadiso.repository.DailySalesRepository.SalesBucket;
 import pl.cinemaparadiso.repository.ReservationRepository;
+import pl.cinemaparadiso.repository.ReservationRepository.CountBucket;
 import pl.cinemaparadiso.repository.ReservationSeatRepository;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
  * Serwis do obliczania statystyk dla panelu admina
+ *
+ * getAllStatistics liczy niezależne sekcje (zyski, rezerwacje, metody płatności, serie miesięczne,
+ * oceny i recenzje) równolegle na ograniczonej puli wątków, każdą we własnej transakcji tylko do odczytu.
+ * Każda sekcja ma wspólny limit czasu (statistics.section-timeout-ms); sekcja, która nie zdąży
+ * lub zakończy się błędem, jest pomijana i wymieniana w unavailableSections, a pozostałe są zwracane.
  */
 @Slf4j
 @Service
@@ -26,57 +48,117 @@ import java.util.Map;
 @Transactional(readOnly = true)
 public class StatisticsService {
     
+    static final String UNAVAILABLE_SECTIONS = "unavailableSections";
+    
     private final ReservationRepository reservationRepository;
     private final ReservationSeatRepository reservationSeatRepository;
+    private final DailySalesRepository dailySalesRepository;
     private final pl.cinemaparadiso.repository.MovieRatingRepository movieRatingRepository;
     private final pl.cinemaparadiso.repository.ReviewRepository reviewRepository;
+    private final TransactionTemplate transactionTemplate;
+    
+    @Value("${statistics.section-threads:4}")
+    private int sectionThreads;
+    
+    @Value("${statistics.section-timeout-ms:5000}")
+    private long sectionTimeoutMillis;
+    
+    private ExecutorService sectionExecutor;
+    private TransactionTemplate readOnlyTransaction;
+    
+    @PostConstruct
+    void initSectionExecutor() {
+        AtomicInteger threadCounter = new AtomicInteger();
+        sectionExecutor = Executors.newFixedThreadPool(sectionThreads, runnable -> {
+            Thread thread = new Thread(runnable, "statistics-section-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        readOnlyTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnlyTransaction.setReadOnly(true);
+    }
+    
+    @PreDestroy
+    void shutdown() {
+        sectionExecutor.shutdownNow();
+    }
     
     /**
      * Pobiera wszystkie statystyki
+     * Bez transakcji na wątku wywołującym - każda sekcja otwiera własną
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Map<String, Object> getAllStatistics() {
-        Map<String, Object> stats = new HashMap<>();
+        Map<String, Supplier<Map<String, Object>>> sections = new LinkedHashMap<>();
         
-        // Podstawowe statystyki
-        stats.put("totalRevenue", getTotalRevenue());
-        stats.put("totalReservations", getTotalReservations());
-        stats.put("paidReservations", getPaidReservationsCount());
-        stats.put("totalReservedSeats", getTotalReservedSeats());
+        // Zyski: łącznie, z ostatnich 30 dni i dzienne z ostatnich 7 dni
+        sections.put("revenue", () -> Map.of(
+                "totalRevenue", getTotalRevenue(),
+                "revenueLast30Days", getRevenueForLastDays(30),
+                "dailyRevenueLast7Days", getDailyRevenueForLastDays(7)));
         
-        // Statystyki z ostatnich 30 dni
-        stats.put("revenueLast30Days", getRevenueForLastDays(30));
-        stats.put("reservationsLast30Days", getReservationsCountForLastDays(30));
-        
-        // Statystyki dzienne z ostatnich 7 dni
-        stats.put("dailyRevenueLast7Days", getDailyRevenueForLastDays(7));
-        stats.put("dailyReservationsLast7Days", getDailyReservationsForLastDays(7));
+        // Rezerwacje: liczniki, z ostatnich 30 dni i dzienne z ostatnich 7 dni
+        sections.put("reservations", () -> Map.of(
+                "totalReservations", getTotalReservations(),
+                "paidReservations", getPaidReservationsCount(),
+                "totalReservedSeats", getTotalReservedSeats(),
+                "reservationsLast30Days", getReservationsCountForLastDays(30),
+                "dailyReservationsLast7Days", getDailyReservationsForLastDays(7)));
         
         // Statystyki według metody płatności
-        stats.put("revenueByPaymentMethod", getRevenueByPaymentMethod());
-        stats.put("reservationsByPaymentMethod", getReservationsByPaymentMethod());
+        sections.put("paymentMethods", () -> Map.of(
+                "revenueByPaymentMethod", getRevenueByPaymentMethod(),
+                "reservationsByPaymentMethod", getReservationsByPaymentMethod()));
         
         // Statystyki z ostatnich 12 miesięcy (dla wykresu)
-        stats.put("monthlyRevenue", getMonthlyRevenueForLastMonths(12));
-        stats.put("monthlyReservations", getMonthlyReservationsForLastMonths(12));
+        sections.put("monthly", () -> Map.of(
+                "monthlyRevenue", getMonthlyRevenueForLastMonths(12),
+                "monthlyReservations", getMonthlyReservationsForLastMonths(12)));
+        
+        // Statystyki ocen i recenzji (średnia może być null, więc bez Map.of)
+        sections.put("ratings", () -> {
+            Map<String, Object> ratings = new HashMap<>();
+            ratings.put("totalRatings", getTotalRatings());
+            ratings.put("totalReviews", getTotalReviews());
+            ratings.put("averageRating", getAverageRating());
+            return ratings;
+        });
+        
+        Map<String, Future<Map<String, Object>>> futures = new LinkedHashMap<>();
+        sections.forEach((name, section) -> futures.put(name,
+                sectionExecutor.submit(() -> readOnlyTransaction.execute(status -> section.get()))));
+        
+        Map<String, Object> stats = new HashMap<>();
+        List<String> unavailableSections = new ArrayList<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sectionTimeoutMillis);
         
-        // Statystyki ocen i recenzji
-        stats.put("totalRatings", getTotalRatings());
-        stats.put("totalReviews", getTotalReviews());
-        stats.put("averageRating", getAverageRating());
+        for (Map.Entry<String, Future<Map<String, Object>>> entry : futures.entrySet()) {
+            Future<Map<String, Object>> future = entry.getValue();
+            try {
+                stats.putAll(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                unavailableSections.add(entry.getKey());
+                log.warn("Sekcja statystyk {} nie zdążyła w ciągu {} ms", entry.getKey(), sectionTimeoutMillis);
+            } catch (ExecutionException e) {
+                unavailableSections.add(entry.getKey());
+                log.warn("Błąd sekcji statystyk {}: {}", entry.getKey(), e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                futures.values().forEach(pending -> pending.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Przerwano obliczanie statystyk", e);
+            }
+        }
         
+        stats.put(UNAVAILABLE_SECTIONS, unavailableSections);
         return stats;
     }
     
     /**
-     * Oblicza całkowity zysk ze wszystkich opłaconych rezerwacji
-     * Używa JOIN FETCH aby załadować reservationSeats (nie lazy loading)
+     * Oblicza całkowity zysk ze wszystkich opłaconych rezerwacji (z dziennych agregatów sprzedaży)
      */
     public BigDecimal getTotalRevenue() {
-        List<Reservation> paidReservations = reservationRepository.findAllPaidReservationsWithSeats();
-        
-        return paidReservations.stream()
-                .map(Reservation::getTotalPrice)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return dailySalesRepository.sumRevenue();
     }
     
     /**
@@ -90,96 +172,61 @@ public class StatisticsService {
      * Liczba opłaconych rezerwacji
      */
     public long getPaidReservationsCount() {
-        return reservationRepository.findAll().stream()
-                .filter(r -> r.getStatus() == ReservationStatus.PAID)
-                .count();
+        return reservationRepository.countByStatus(ReservationStatus.PAID);
     }
     
     /**
      * Liczba zarezerwowanych miejsc (z opłaconych rezerwacji)
      */
     public long getTotalReservedSeats() {
-        return reservationSeatRepository.findAll().stream()
-                .filter(rs -> rs.getReservation().getStatus() == ReservationStatus.PAID)
-                .count();
+        return reservationSeatRepository.countByReservationStatus(ReservationStatus.PAID);
     }
     
     /**
      * Zysk z ostatnich N dni
      */
     public BigDecimal getRevenueForLastDays(int days) {
-        LocalDateTime startDate = LocalDateTime.now().minusDays(days);
-        LocalDateTime endDate = LocalDateTime.now().plusDays(1); // Do końca dzisiaj
-        List<Reservation> paidReservations = reservationRepository
-                .findPaidReservationsByPaymentDateRange(startDate, endDate);
-        
-        return paidReservations.stream()
-                .map(Reservation::getTotalPrice)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return dailySalesRepository.sumRevenueSince(LocalDate.now().minusDays(days));
     }
     
     /**
      * Liczba rezerwacji z ostatnich N dni
      */
     public long getReservationsCountForLastDays(int days) {
-        LocalDateTime startDate = LocalDateTime.now().minusDays(days);
-        return reservationRepository.findAll().stream()
-                .filter(r -> r.getCreatedAt().isAfter(startDate))
-                .count();
+        return reservationRepository.countByCreatedAtGreaterThanEqual(LocalDateTime.now().minusDays(days));
     }
     
     /**
      * Dzienne zyski z ostatnich N dni
-     * Używa paymentDate jeśli dostępne, w przeciwnym razie createdAt (dla starych rezerwacji)
+     * Dzień sprzedaży to data płatności, a dla starych rezerwacji bez niej - data utworzenia
      */
     public Map<String, BigDecimal> getDailyRevenueForLastDays(int days) {
         Map<String, BigDecimal> dailyRevenue = new HashMap<>();
         LocalDate today = LocalDate.now();
         
-        // Pobierz wszystkie opłacone rezerwacje z miejscami (raz, dla wydajności)
-        List<Reservation> allPaidReservations = reservationRepository.findAllPaidReservationsWithSeats();
-        
         for (int i = days - 1; i >= 0; i--) {
-            LocalDate date = today.minusDays(i);
-            LocalDateTime startOfDay = date.atStartOfDay();
-            LocalDateTime endOfDay = date.plusDays(1).atStartOfDay();
-            
-            // Filtruj rezerwacje dla tego dnia
-            // Użyj paymentDate jeśli dostępne, w przeciwnym razie createdAt
-            BigDecimal dayRevenue = allPaidReservations.stream()
-                    .filter(r -> {
-                        LocalDateTime dateToCheck = r.getPaymentDate() != null 
-                                ? r.getPaymentDate() 
-                                : r.getCreatedAt();
-                        return dateToCheck.isAfter(startOfDay) && dateToCheck.isBefore(endOfDay);
-                    })
-                    .map(Reservation::getTotalPrice)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-            
-            dailyRevenue.put(date.toString(), dayRevenue);
+            dailyRevenue.put(today.minusDays(i).toString(), BigDecimal.ZERO);
+        }
+        for (SalesBucket day : dailySalesRepository.sumByDay(today.minusDays(days - 1), today.plusDays(1))) {
+            dailyRevenue.put(day.getBucket(), day.getRevenue());
         }
         
         return dailyRevenue;
     }
     
     /**
-     * Dzienna liczba rezerwacji z ostatnich N dni
+     * Dzienna liczba rezerwacji z ostatnich N dni (jedno zapytanie grupujące zamiast przeglądania wszystkich rezerwacji)
      */
     public Map<String, Long> getDailyReservationsForLastDays(int days) {
         Map<String, Long> dailyReservations = new HashMap<>();
         LocalDate today = LocalDate.now();
         
         for (int i = days - 1; i >= 0; i--) {
-            LocalDate date = today.minusDays(i);
-            LocalDateTime startOfDay = date.atStartOfDay();
-            LocalDateTime endOfDay = date.plusDays(1).atStartOfDay();
-            
-            long count = reservationRepository.findAll().stream()
-                    .filter(r -> r.getCreatedAt().isAfter(startOfDay) 
-                            && r.getCreatedAt().isBefore(endOfDay))
-                    .count();
-            
-            dailyReservations.put(date.toString(), count);
+            dailyReservations.put(today.minusDays(i).toString(), 0L);
+        }
+        for (CountBucket day : reservationRepository.countCreatedByDay(
+                today.minusDays(days - 1).atStartOfDay(), today.plusDays(1).atStartOfDay())) {
+            dailyReservations.put(day.getBucket(), day.getCount());
         }
         
         return dailyReservations;
@@ -191,17 +238,12 @@ public class StatisticsService {
     public Map<String, BigDecimal> getRevenueByPaymentMethod() {
         Map<String, BigDecimal> revenueByMethod = new HashMap<>();
         
-        List<Reservation> paidReservations = reservationRepository.findAllPaidReservationsWithSeats().stream()
-                .filter(r -> r.getPaymentMethod() != null)
-                .toList();
-        
         for (PaymentMethod method : PaymentMethod.values()) {
-            BigDecimal methodRevenue = paidReservations.stream()
-                    .filter(r -> r.getPaymentMethod() == method)
-                    .map(Reservation::getTotalPrice)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-            
-            revenueByMethod.put(method.name(), methodRevenue);
+            revenueByMethod.put(method.name(), BigDecimal.ZERO);
+        }
+        for (SalesBucket method : dailySalesRepository.sumByPaymentMethod()) {
+            // Pomijamy UNKNOWN (stare rezerwacje bez metody płatności)
+            revenueByMethod.computeIfPresent(method.getBucket(), (name, zero) -> method.getRevenue());
         }
         
         return revenueByMethod;
@@ -213,17 +255,11 @@ public class StatisticsService {
     public Map<String, Long> getReservationsByPaymentMethod() {
         Map<String, Long> reservationsByMethod = new HashMap<>();
         
-        List<Reservation> paidReservations = reservationRepository.findAll().stream()
-                .filter(r -> r.getStatus() == ReservationStatus.PAID 
-                        && r.getPaymentMethod() != null)
-                .toList();
-        
         for (PaymentMethod method : PaymentMethod.values()) {
-            long count = paidReservations.stream()
-                    .filter(r -> r.getPaymentMethod() == method)
-                    .count();
-            
-            reservationsByMethod.put(method.name(), count);
+            reservationsByMethod.put(method.name(), 0L);
+        }
+        for (CountBucket method : reservationRepository.countByPaymentMethod(ReservationStatus.PAID.name())) {
+            reservationsByMethod.computeIfPresent(method.getBucket(), (name, zero) -> method.getCount());
         }
         
         return reservationsByMethod;
@@ -231,35 +267,18 @@ public class StatisticsService {
     
     /**
      * Miesięczne zyski z ostatnich N miesięcy
-     * Używa paymentDate jeśli dostępne, w przeciwnym razie createdAt (dla starych rezerwacji)
      */
     public Map<String, BigDecimal> getMonthlyRevenueForLastMonths(int months) {
         Map<String, BigDecimal> monthlyRevenue = new HashMap<>();
-        LocalDate today = LocalDate.now();
+        LocalDate firstMonth = LocalDate.now().minusMonths(months - 1).withDayOfMonth(1);
         
-        // Pobierz wszystkie opłacone rezerwacje z miejscami (raz, dla wydajności)
-        List<Reservation> allPaidReservations = reservationRepository.findAllPaidReservationsWithSeats();
-        
-        for (int i = months - 1; i >= 0; i--) {
-            LocalDate monthStart = today.minusMonths(i).withDayOfMonth(1);
-            LocalDate monthEnd = monthStart.plusMonths(1);
-            LocalDateTime startOfMonth = monthStart.atStartOfDay();
-            LocalDateTime endOfMonth = monthEnd.atStartOfDay();
-            
-            // Filtruj rezerwacje dla tego miesiąca
-            // Użyj paymentDate jeśli dostępne, w przeciwnym razie createdAt
-            BigDecimal monthRevenue = allPaidReservations.stream()
-                    .filter(r -> {
-                        LocalDateTime dateToCheck = r.getPaymentDate() != null 
-                                ? r.getPaymentDate() 
-                                : r.getCreatedAt();
-                        return dateToCheck.isAfter(startOfMonth) && dateToCheck.isBefore(endOfMonth);
-                    })
-                    .map(Reservation::getTotalPrice)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-            
+        for (int i = 0; i < months; i++) {
+            LocalDate monthStart = firstMonth.plusMonths(i);
             String monthKey = monthStart.getYear() + "-" + String.format("%02d", monthStart.getMonthValue());
-            monthlyRevenue.put(monthKey, monthRevenue);
+            monthlyRevenue.put(monthKey, BigDecimal.ZERO);
+        }
+        for (SalesBucket month : dailySalesRepository.sumByMonth(firstMonth)) {
+            monthlyRevenue.put(month.getBucket(), month.getRevenue());
         }
         
         return monthlyRevenue;
@@ -270,21 +289,15 @@ public class StatisticsService {
      */
     public Map<String, Long> getMonthlyReservationsForLastMonths(int months) {
         Map<String, Long> monthlyReservations = new HashMap<>();
-        LocalDate today = LocalDate.now();
+        LocalDate firstMonth = LocalDate.now().minusMonths(months - 1).withDayOfMonth(1);
         
-        for (int i = months - 1; i >= 0; i--) {
-            LocalDate monthStart = today.minusMonths(i).withDayOfMonth(1);
-            LocalDate monthEnd = monthStart.plusMonths(1);
-            LocalDateTime startOfMonth = monthStart.atStartOfDay();
-            LocalDateTime endOfMonth = monthEnd.atStartOfDay();
-            
-            long count = reservationRepository.findAll().stream()
-                    .filter(r -> r.getCreatedAt().isAfter(startOfMonth) 
-                            && r.getCreatedAt().isBefore(endOfMonth))
-                    .count();
-            
+        for (int i = 0; i < months; i++) {
+            LocalDate monthStart = firstMonth.plusMonths(i);
             String monthKey = monthStart.getYear() + "-" + String.format("%02d", monthStart.getMonthValue());
-            monthlyReservations.put(monthKey, count);
+            monthlyReservations.put(monthKey, 0L);
+        }
+        for (CountBucket month : reservationRepository.countCreatedByMonth(firstMonth.atStartOfDay())) {
+            monthlyReservations.put(month.getBucket(), month.getCount());
         }
         
         return monthlyReservations;
@@ -308,17 +321,6 @@ public class StatisticsService {
      * Oblicza średnią ocenę wszystkich filmów
      */
     public Double getAverageRating() {
-        // Pobierz wszystkie oceny i oblicz średnią
-        List<pl.cinemaparadiso.entity.MovieRating> allRatings = movieRatingRepository.findAll();
-        if (allRatings.isEmpty()) {
-            return null;
-        }
-        
-        double sum = allRatings.stream()
-                .mapToInt(pl.cinemaparadiso.entity.MovieRating::getRating)
-                .sum();
-        
-        return sum / allRatings.size();
+        return movieRatingRepository.getAverageRating();
     }
 }
-
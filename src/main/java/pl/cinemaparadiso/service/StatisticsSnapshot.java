@@ -0,0 +1,43 @@
+package pl.cinemaparadiso.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Niezmienna migawka statystyk panelu admina wraz z chwilą jej wyliczenia
+ */
+public record StatisticsSnapshot(Map<String, Object> statistics, Instant computedAt) {
+
+    @SuppressWarnings("unchecked")
+    public StatisticsSnapshot {
+        // Głęboka kopia - zagnieżdżone mapy i listy ze StatisticsService są modyfikowalne,
+        // a migawkę czytają równolegle wszystkie żądania
+        statistics = (Map<String, Object>) freeze(statistics);
+    }
+
+    public Duration age(Instant now) {
+        return Duration.between(computedAt, now);
+    }
+
+    /**
+     * Kopia bez Map.copyOf / List.copyOf - wartości mogą być null (np. averageRating bez ocen)
+     */
+    private static Object freeze(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            map.forEach((key, nested) -> copy.put(key, freeze(nested)));
+            return Collections.unmodifiableMap(copy);
+        }
+        if (value instanceof List<?> list) {
+            List<Object> copy = new ArrayList<>(list.size());
+            list.forEach(nested -> copy.add(freeze(nested)));
+            return Collections.unmodifiableList(copy);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,131 @@
+package pl.cinemaparadiso.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Statystyki panelu admina serwowane z migawki (stale-while-revalidate)
+ *
+ * Odczyt zwraca od razu ostatnią migawkę. Jeśli jest starsza niż statistics.snapshot.stale-after-ms,
+ * w tle startuje jej przeliczenie, a do tego czasu klienci dostają poprzednią wersję. Migawka jest
+ * też odświeżana okresowo (statistics.snapshot.refresh-ms), więc przy regularnym ruchu
+ * odczyt praktycznie nigdy nie trafia na przeterminowane dane.
+ *
+ * Naraz trwa co najwyżej jedno przeliczenie (single-flight) - kolejne żądania, odświeżanie
+ * okresowe i pierwszy odczyt po starcie dołączają do już trwającego zamiast liczyć równolegle.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StatisticsSnapshotService {
+
+    private final StatisticsService statisticsService;
+
+    private final AtomicReference<StatisticsSnapshot> snapshot = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<StatisticsSnapshot>> inFlight = new AtomicReference<>();
+    private final ExecutorService refreshExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Value("${statistics.snapshot.stale-after-ms:30000}")
+    private long staleAfterMillis;
+
+    /**
+     * Zwraca migawkę statystyk
+     * Czeka na wyliczenie tylko wtedy, gdy nie ma jeszcze żadnej migawki (pierwszy odczyt po starcie)
+     */
+    public StatisticsSnapshot getSnapshot() {
+        StatisticsSnapshot current = snapshot.get();
+        if (current == null) {
+            try {
+                return refresh().join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException runtime ? runtime : e;
+            }
+        }
+        if (current.age(Instant.now()).compareTo(Duration.ofMillis(staleAfterMillis)) > 0) {
+            refresh();
+        }
+        return current;
+    }
+
+    /**
+     * Okresowe odświeżanie migawki w tle
+     */
+    @Scheduled(fixedDelayString = "${statistics.snapshot.refresh-ms:60000}",
+               initialDelayString = "${statistics.snapshot.refresh-ms:60000}")
+    public void refreshPeriodically() {
+        refresh();
+    }
+
+    /**
+     * Startuje przeliczenie statystyk albo zwraca już trwające
+     */
+    CompletableFuture<StatisticsSnapshot> refresh() {
+        CompletableFuture<StatisticsSnapshot> started = new CompletableFuture<>();
+        CompletableFuture<StatisticsSnapshot> running = inFlight.compareAndExchange(null, started);
+        if (running != null) {
+            // Przeliczenie już trwa - dołączamy do niego
+            return running;
+        }
+
+        try {
+            refreshExecutor.execute(() -> compute(started));
+        } catch (RuntimeException e) {
+            // Np. RejectedExecutionException przy zamykaniu aplikacji - bez tego oczekujący na started czekaliby bez końca
+            started.completeExceptionally(e);
+            inFlight.compareAndSet(started, null);
+        }
+        return started;
+    }
+
+    private void compute(CompletableFuture<StatisticsSnapshot> started) {
+        try {
+            long start = System.nanoTime();
+            StatisticsSnapshot computed = new StatisticsSnapshot(
+                    withPreviousValues(statisticsService.getAllStatistics()), Instant.now());
+            snapshot.set(computed);
+            log.debug("Przeliczono statystyki panelu admina w {} ms", (System.nanoTime() - start) / 1_000_000);
+            started.complete(computed);
+        } catch (RuntimeException e) {
+            // Zostaje poprzednia migawka, kolejny odczyt lub odświeżenie spróbuje ponownie
+            log.warn("Nie udało się przeliczyć statystyk panelu admina: {}", e.getMessage());
+            started.completeExceptionally(e);
+        } finally {
+            inFlight.compareAndSet(started, null);
+        }
+    }
+
+    /**
+     * Sekcje, których nie udało się policzyć, uzupełnia wartościami z poprzedniej migawki
+     * (lista unavailableSections zostaje, więc panel wie, że część danych jest starsza)
+     */
+    private Map<String, Object> withPreviousValues(Map<String, Object> statistics) {
+        StatisticsSnapshot previous = snapshot.get();
+        Object unavailable = statistics.get(StatisticsService.UNAVAILABLE_SECTIONS);
+        if (previous == null || !(unavailable instanceof List<?> sections) || sections.isEmpty()) {
+            return statistics;
+        }
+        Map<String, Object> merged = new HashMap<>(statistics);
+        previous.statistics().forEach(merged::putIfAbsent);
+        return merged;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+}
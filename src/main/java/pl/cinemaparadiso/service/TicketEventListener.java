@@ -0,0 +1,84 @@
+package pl.cinemaparadiso.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import pl.cinemaparadiso.entity.Reservation;
+import pl.cinemaparadiso.entity.TicketAccessLog;
+import pl.cinemaparadiso.enums.ReservationStatus;
+import pl.cinemaparadiso.repository.ReservationRepository;
+import pl.cinemaparadiso.repository.TicketAccessLogRepository;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Wystawianie biletów po opłaceniu rezerwacji (zdarzenia ze skrzynki nadawczej)
+ *
+ * Po PAYMENT_COMPLETED rezerwacja dostaje token QR (wcześniej powstawał dopiero przy pierwszym
+ * pobraniu kodu), a w ticket_access_logs zapisywane jest wystawienie biletu; po anulowaniu
+ * opłaconej rezerwacji - unieważnienie biletu. Obsługa jest idempotentna, bo zdarzenie
+ * może zostać dostarczone więcej niż raz.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TicketEventListener {
+
+    static final String TICKET_ISSUED = "TICKET_ISSUED";
+    static final String TICKET_CANCELLED = "TICKET_CANCELLED";
+
+    private final ReservationRepository reservationRepository;
+    private final TicketAccessLogRepository ticketAccessLogRepository;
+
+    @EventListener
+    @Transactional
+    public void onReservationEvent(ReservationDomainEvent event) {
+        switch (event.type()) {
+            case PAYMENT_COMPLETED -> issueTicket(event.reservationId());
+            case RESERVATION_CANCELLED -> cancelTicket(event.reservationId());
+            default -> {
+            }
+        }
+    }
+
+    private void issueTicket(Long reservationId) {
+        Reservation reservation = reservationRepository.findById(reservationId).orElse(null);
+        if (reservation == null || reservation.getStatus() != ReservationStatus.PAID) {
+            return;
+        }
+
+        if (reservation.getQrCodeToken() == null) {
+            reservation.setQrCodeToken(UUID.randomUUID().toString());
+            reservation.setQrCodeGeneratedAt(LocalDateTime.now());
+            reservationRepository.save(reservation);
+        }
+
+        if (!ticketAccessLogRepository.existsByReservationIdAndActionType(reservationId, TICKET_ISSUED)) {
+            logTicketAction(reservation, TICKET_ISSUED);
+            log.info("Wystawiono bilet dla rezerwacji ID: {}", reservationId);
+        }
+    }
+
+    private void cancelTicket(Long reservationId) {
+        if (!ticketAccessLogRepository.existsByReservationIdAndActionType(reservationId, TICKET_ISSUED)
+                || ticketAccessLogRepository.existsByReservationIdAndActionType(reservationId, TICKET_CANCELLED)) {
+            return;
+        }
+        reservationRepository.findById(reservationId).ifPresent(reservation -> {
+            logTicketAction(reservation, TICKET_CANCELLED);
+            log.info("Unieważniono bilet dla rezerwacji ID: {}", reservationId);
+        });
+    }
+
+    private void logTicketAction(Reservation reservation, String actionType) {
+        ticketAccessLogRepository.save(TicketAccessLog.builder()
+                .reservation(reservation)
+                .user(reservation.getUser())
+                .actionType(actionType)
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+}
@@ -0,0 +1,333 @@
+package pl.cinemaparadiso.service;
+
+import jakarta.servlet.http.HttpSession;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import pl.cinemaparadiso.dto.WaitingRoomDTO;
+import pl.cinemaparadiso.dto.WaitingRoomStatusDTO;
+import pl.cinemaparadiso.entity.User;
+import pl.cinemaparadiso.exception.ScreeningNotFoundException;
+import pl.cinemaparadiso.exception.WaitingRoomException;
+import pl.cinemaparadiso.repository.ReservationRepository;
+import pl.cinemaparadiso.repository.ScreeningRepository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wirtualna poczekalnia dla popularnych seansów
+ *
+ * Administrator włącza poczekalnię dla seansu i ustala, ile osób na sekundę jest wpuszczanych.
+ * Klient dołącza do kolejki i dostaje token z numerem w kolejce; co sekundę próg wpuszczenia
+ * przesuwa się o ustaloną liczbę osób. Plan sali, tworzenie rezerwacji i płatność dla takiego
+ * seansu wymagają tokenu, który został już wpuszczony (nagłówek X-Queue-Token).
+ *
+ * Token jest przypięty do tego, kto dołączył do kolejki: do sesji HTTP (lista tokenów w atrybucie
+ * sesji, która przetrwa zmianę ID sesji przy logowaniu) i - jeśli był zalogowany - do jego ID.
+ * Token przekazany innej osobie jest dla niej nieważny, więc nie da się nim ominąć kolejki.
+ *
+ * Stan kolejki to liczniki AtomicLong (wydane numery, próg wpuszczenia) i mapa tokenów -
+ * dołączenie do kolejki i sprawdzenie tokenu nie biorą żadnych blokad ani połączeń z bazą.
+ * Dla seansów bez poczekalni sprawdzenie jest pustą operacją, a ścieżka rezerwacji się nie zmienia.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WaitingRoomService {
+
+    public static final String TOKEN_HEADER = "X-Queue-Token";
+
+    private static final String SESSION_TOKENS_ATTRIBUTE = WaitingRoomService.class.getName() + ".TOKENS";
+
+    private final ScreeningRepository screeningRepository;
+    private final ReservationRepository reservationRepository;
+
+    @Value("${waiting-room.admission-ttl-minutes:20}")
+    private long admissionTtlMinutes;
+
+    @Value("${waiting-room.abandon-after-seconds:120}")
+    private long abandonAfterSeconds;
+
+    private final Map<Long, WaitingRoom> rooms = new ConcurrentHashMap<>();
+    private final Map<String, QueueTicket> tickets = new ConcurrentHashMap<>();
+
+    /**
+     * Włącza poczekalnię dla seansu lub zmienia tempo wpuszczania
+     */
+    public WaitingRoomDTO enable(Long screeningId, int admitPerSecond) {
+        if (!screeningRepository.existsById(screeningId)) {
+            throw new ScreeningNotFoundException("Seans o ID " + screeningId + " nie istnieje");
+        }
+        WaitingRoom room = rooms.computeIfAbsent(screeningId, WaitingRoom::new);
+        room.admitPerSecond = admitPerSecond;
+
+        log.info("Poczekalnia seansu ID: {} włączona, wpuszczanie {} osób/s", screeningId, admitPerSecond);
+        return toDTO(room);
+    }
+
+    /**
+     * Wyłącza poczekalnię - wszyscy mogą od razu rezerwować
+     */
+    public void disable(Long screeningId) {
+        if (rooms.remove(screeningId) != null) {
+            tickets.values().removeIf(ticket -> ticket.screeningId.equals(screeningId));
+            log.info("Poczekalnia seansu ID: {} wyłączona", screeningId);
+        }
+    }
+
+    public List<WaitingRoomDTO> getWaitingRooms() {
+        return rooms.values().stream()
+                .map(this::toDTO)
+                .toList();
+    }
+
+    /**
+     * Dołącza do kolejki seansu
+     * Jeśli seans nie ma poczekalni, użytkownik jest od razu wpuszczony (bez tokenu)
+     */
+    public WaitingRoomStatusDTO join(Long screeningId) {
+        WaitingRoom room = rooms.get(screeningId);
+        if (room == null) {
+            return admittedWithoutQueue(screeningId);
+        }
+
+        String token = UUID.randomUUID().toString();
+        QueueTicket ticket = new QueueTicket(screeningId, room.issued.incrementAndGet(), currentUserId());
+        sessionTokens(true).add(token);
+        tickets.put(token, ticket);
+        return toStatus(room, ticket, token);
+    }
+
+    /**
+     * Zwraca pozycję w kolejce dla tokenu
+     */
+    public WaitingRoomStatusDTO getStatus(Long screeningId, String token) {
+        WaitingRoom room = rooms.get(screeningId);
+        if (room == null) {
+            return admittedWithoutQueue(screeningId);
+        }
+
+        QueueTicket ticket = findTicket(screeningId, token);
+        if (ticket == null) {
+            throw new IllegalArgumentException("Nieprawidłowy lub wygasły token kolejki - dołącz do kolejki ponownie");
+        }
+        return toStatus(room, ticket, token);
+    }
+
+    /**
+     * Sprawdza, czy token został wpuszczony do seansu (nic nie robi, jeśli seans nie ma poczekalni)
+     *
+     * @throws WaitingRoomException jeśli użytkownik musi jeszcze poczekać
+     */
+    public void checkAdmitted(Long screeningId, String token) {
+        WaitingRoom room = rooms.get(screeningId);
+        if (room == null) {
+            return;
+        }
+
+        QueueTicket ticket = findTicket(screeningId, token);
+        if (ticket == null) {
+            throw new WaitingRoomException("Na ten seans obowiązuje kolejka - dołącz do poczekalni, aby rezerwować miejsca");
+        }
+        if (!room.isAdmitted(ticket)) {
+            throw new WaitingRoomException("Jeszcze nie Twoja kolej. Osób przed Tobą: " + room.positionOf(ticket));
+        }
+
+        long now = System.currentTimeMillis();
+        ticket.markAdmitted(now);
+        if (now - ticket.admittedAt > TimeUnit.MINUTES.toMillis(admissionTtlMinutes)) {
+            tickets.remove(token);
+            throw new WaitingRoomException("Czas na rezerwację po wyjściu z poczekalni minął - dołącz do kolejki ponownie");
+        }
+    }
+
+    /**
+     * Jak checkAdmitted, ale dla operacji na istniejącej rezerwacji (np. płatność)
+     */
+    public void checkAdmittedForReservation(Long reservationId, String token) {
+        if (rooms.isEmpty()) {
+            return;
+        }
+        reservationRepository.findScreeningIdById(reservationId)
+                .ifPresent(screeningId -> checkAdmitted(screeningId, token));
+    }
+
+    /**
+     * Co sekundę przesuwa próg wpuszczenia w każdej poczekalni
+     */
+    @Scheduled(fixedRate = 1000)
+    public void admitNextBatch() {
+        rooms.values().forEach(WaitingRoom::admitNextBatch);
+    }
+
+    /**
+     * Usuwa tokeny porzucone w kolejce i tokeny, których czas na rezerwację minął
+     */
+    @Scheduled(fixedDelayString = "${waiting-room.cleanup-ms:60000}")
+    public void removeStaleTickets() {
+        long now = System.currentTimeMillis();
+        long admissionTtl = TimeUnit.MINUTES.toMillis(admissionTtlMinutes);
+        long abandonAfter = TimeUnit.SECONDS.toMillis(abandonAfterSeconds);
+
+        tickets.values().removeIf(ticket -> {
+            WaitingRoom room = rooms.get(ticket.screeningId);
+            if (room == null) {
+                return true;
+            }
+            if (room.isAdmitted(ticket)) {
+                ticket.markAdmitted(now);
+                return now - ticket.admittedAt > admissionTtl;
+            }
+            return now - ticket.lastSeen > abandonAfter;
+        });
+    }
+
+    private QueueTicket findTicket(Long screeningId, String token) {
+        if (token == null) {
+            return null;
+        }
+        QueueTicket ticket = tickets.get(token);
+        if (ticket == null || !ticket.screeningId.equals(screeningId) || !isHeldByCurrentUser(token, ticket)) {
+            return null;
+        }
+        ticket.lastSeen = System.currentTimeMillis();
+        return ticket;
+    }
+
+    /**
+     * Token jest ważny tylko w sesji, w której dołączono do kolejki,
+     * a token zalogowanego użytkownika - tylko dla tego samego użytkownika
+     */
+    private boolean isHeldByCurrentUser(String token, QueueTicket ticket) {
+        if (ticket.userId != null && !ticket.userId.equals(currentUserId())) {
+            return false;
+        }
+        Set<String> sessionTokens = sessionTokens(false);
+        return sessionTokens != null && sessionTokens.contains(token);
+    }
+
+    private Long currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof User user) {
+            return user.getId();
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<String> sessionTokens(boolean create) {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return null;
+        }
+        HttpSession session = attributes.getRequest().getSession(create);
+        if (session == null) {
+            return null;
+        }
+        synchronized (session) {
+            Set<String> tokens = (Set<String>) session.getAttribute(SESSION_TOKENS_ATTRIBUTE);
+            if (tokens == null && create) {
+                tokens = ConcurrentHashMap.newKeySet();
+                session.setAttribute(SESSION_TOKENS_ATTRIBUTE, tokens);
+            }
+            if (tokens != null) {
+                tokens.removeIf(token -> !tickets.containsKey(token));
+            }
+            return tokens;
+        }
+    }
+
+    private WaitingRoomStatusDTO toStatus(WaitingRoom room, QueueTicket ticket, String token) {
+        long position = room.positionOf(ticket);
+        int rate = room.admitPerSecond;
+        return WaitingRoomStatusDTO.builder()
+                .screeningId(room.screeningId)
+                .token(token)
+                .admitted(position == 0)
+                .position(position)
+                .estimatedWaitSeconds((position + rate - 1) / rate)
+                .build();
+    }
+
+    private WaitingRoomStatusDTO admittedWithoutQueue(Long screeningId) {
+        return WaitingRoomStatusDTO.builder()
+                .screeningId(screeningId)
+                .admitted(true)
+                .position(0L)
+                .estimatedWaitSeconds(0L)
+                .build();
+    }
+
+    private WaitingRoomDTO toDTO(WaitingRoom room) {
+        long issued = room.issued.get();
+        long admitted = room.admittedUpTo.get();
+        return WaitingRoomDTO.builder()
+                .screeningId(room.screeningId)
+                .admitPerSecond(room.admitPerSecond)
+                .issuedTokens(issued)
+                .admittedTokens(admitted)
+                .waiting(issued - admitted)
+                .build();
+    }
+
+    /**
+     * Kolejka jednego seansu: numery są wydawane rosnąco, wpuszczone są numery <= admittedUpTo
+     */
+    private static final class WaitingRoom {
+
+        private final Long screeningId;
+        private final AtomicLong issued = new AtomicLong();
+        private final AtomicLong admittedUpTo = new AtomicLong();
+        private volatile int admitPerSecond;
+
+        WaitingRoom(Long screeningId) {
+            this.screeningId = screeningId;
+        }
+
+        void admitNextBatch() {
+            long limit = issued.get();
+            int rate = admitPerSecond;
+            admittedUpTo.accumulateAndGet(limit, (current, max) -> Math.min(max, current + rate));
+        }
+
+        boolean isAdmitted(QueueTicket ticket) {
+            return ticket.sequence <= admittedUpTo.get();
+        }
+
+        long positionOf(QueueTicket ticket) {
+            return Math.max(0, ticket.sequence - admittedUpTo.get());
+        }
+    }
+
+    private static final class QueueTicket {
+
+        private final Long screeningId;
+        private final long sequence;
+        private final Long userId;
+        private volatile long lastSeen = System.currentTimeMillis();
+        private volatile long admittedAt;
+
+        QueueTicket(Long screeningId, long sequence, Long userId) {
+            this.screeningId = screeningId;
+            this.sequence = sequence;
+            this.userId = userId;
+        }
+
+        void markAdmitted(long now) {
+            if (admittedAt == 0) {
+                admittedAt = now;
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+ALTER TABLE reservation_seats
+    ADD COLUMN screening_id BIGINT,
+    ADD COLUMN is_active BOOLEAN NOT NULL DEFAULT TRUE;
+
+UPDATE reservation_seats rs
+SET screening_id = r.screening_id,
+    is_active = r.status IN ('PAID', 'PENDING_PAYMENT')
+FROM reservations r
+WHERE rs.reservation_id = r.id;
+
+-- Na wypadek historycznych duplikatów zostawiamy aktywne tylko najstarsze zajęcie miejsca
+UPDATE reservation_seats rs
+SET is_active = FALSE
+WHERE rs.is_active
+  AND EXISTS (
+      SELECT 1
+      FROM reservation_seats other
+      WHERE other.is_active
+        AND other.screening_id = rs.screening_id
+        AND other.seat_id = rs.seat_id
+        AND other.id < rs.id
+  );
+
+ALTER TABLE reservation_seats
+    ALTER COLUMN screening_id SET NOT NULL,
+    ADD CONSTRAINT fk_reservation_seats_screening FOREIGN KEY (screening_id) REFERENCES screenings(id) ON DELETE CASCADE;
+
+-- Jedno aktywne zajęcie miejsca na seans - gwarantowane przez bazę
+CREATE UNIQUE INDEX uk_reservation_seats_active_claim
+    ON reservation_seats(screening_id, seat_id)
+    WHERE is_active;
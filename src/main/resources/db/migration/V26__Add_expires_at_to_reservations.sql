@@ -0,0 +1,12 @@
+-- Termin, do którego rezerwacja oczekująca na płatność trzyma miejsca
+ALTER TABLE reservations
+    ADD COLUMN expires_at TIMESTAMP;
+
+UPDATE reservations
+SET expires_at = created_at + INTERVAL '15 minutes'
+WHERE status IN ('PENDING_PAYMENT', 'PAYMENT_FAILED');
+
+-- Indeks po terminie tylko dla rezerwacji, które mogą wygasnąć
+CREATE INDEX idx_reservations_pending_expires_at
+    ON reservations(expires_at)
+    WHERE status IN ('PENDING_PAYMENT', 'PAYMENT_FAILED');
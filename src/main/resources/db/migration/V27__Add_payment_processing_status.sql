@@ -0,0 +1,19 @@
+-- Status PAYMENT_PROCESSING: płatność przekazana do bramki, wynik jeszcze nieznany
+ALTER TABLE reservations DROP CONSTRAINT IF EXISTS reservations_status_check;
+
+ALTER TABLE reservations
+    ADD CONSTRAINT reservations_status_check
+    CHECK (status IN ('PENDING_PAYMENT', 'PAYMENT_PROCESSING', 'PAID', 'CANCELLED', 'PAYMENT_FAILED'));
+
+ALTER TABLE reservations_aud DROP CONSTRAINT IF EXISTS reservations_aud_status_check;
+
+ALTER TABLE reservations_aud
+    ADD CONSTRAINT reservations_aud_status_check
+    CHECK (status IN ('PENDING_PAYMENT', 'PAYMENT_PROCESSING', 'PAID', 'CANCELLED', 'PAYMENT_FAILED'));
+
+-- Płatność, która nie doczekała się wyniku (np. restart aplikacji), też musi kiedyś wygasnąć
+DROP INDEX IF EXISTS idx_reservations_pending_expires_at;
+
+CREATE INDEX idx_reservations_pending_expires_at
+    ON reservations(expires_at)
+    WHERE status IN ('PENDING_PAYMENT', 'PAYMENT_PROCESSING', 'PAYMENT_FAILED');
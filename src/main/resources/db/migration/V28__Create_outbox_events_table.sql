@@ -0,0 +1,25 @@
+-- Transakcyjna skrzynka nadawcza zdarzeń rezerwacji i płatności
+-- Zdarzenie jest zapisywane w tej samej transakcji co zmiana rezerwacji,
+-- a przekaźnik (OutboxRelay) dostarcza je w tle do słuchaczy w aplikacji
+CREATE TABLE outbox_events (
+    id BIGSERIAL PRIMARY KEY,
+    event_type VARCHAR(50) NOT NULL,
+    aggregate_id BIGINT NOT NULL,
+    payload TEXT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    next_attempt_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    last_error TEXT,
+    published_at TIMESTAMP,
+    CONSTRAINT outbox_events_type_check
+        CHECK (event_type IN ('RESERVATION_CREATED', 'PAYMENT_COMPLETED', 'RESERVATION_CANCELLED'))
+);
+
+-- Przekaźnik czyta tylko niedostarczone zdarzenia
+CREATE INDEX idx_outbox_events_pending
+    ON outbox_events(next_attempt_at, id)
+    WHERE published_at IS NULL;
+
+CREATE INDEX idx_outbox_events_published_at
+    ON outbox_events(published_at)
+    WHERE published_at IS NOT NULL;
@@ -0,0 +1,46 @@
+-- Dzienne agregaty sprzedaży (dzień × metoda płatności × film) dla statystyk panelu admina
+-- Aktualizowane przyrostowo po opłaceniu i anulowaniu rezerwacji (DailySalesService)
+CREATE TABLE daily_sales (
+    id BIGSERIAL PRIMARY KEY,
+    sales_date DATE NOT NULL,
+    payment_method VARCHAR(50) NOT NULL,
+    movie_id BIGINT NOT NULL,
+    paid_reservations BIGINT NOT NULL DEFAULT 0,
+    paid_seats BIGINT NOT NULL DEFAULT 0,
+    revenue NUMERIC(12, 2) NOT NULL DEFAULT 0,
+    CONSTRAINT fk_daily_sales_movie FOREIGN KEY (movie_id) REFERENCES movies(id) ON DELETE CASCADE,
+    CONSTRAINT uk_daily_sales_bucket UNIQUE (sales_date, payment_method, movie_id)
+);
+
+-- Rezerwacje wliczone do daily_sales wraz z ich udziałem w agregacie
+-- Dzięki temu ponowne dostarczenie zdarzenia nie liczy rezerwacji drugi raz,
+-- a anulowanie odejmuje dokładnie to, co zostało dodane
+CREATE TABLE daily_sales_entries (
+    reservation_id BIGINT PRIMARY KEY,
+    sales_date DATE NOT NULL,
+    payment_method VARCHAR(50) NOT NULL,
+    movie_id BIGINT NOT NULL,
+    seats BIGINT NOT NULL,
+    revenue NUMERIC(12, 2) NOT NULL,
+    CONSTRAINT fk_daily_sales_entries_reservation FOREIGN KEY (reservation_id) REFERENCES reservations(id) ON DELETE CASCADE
+);
+
+-- Wypełnienie z istniejących opłaconych rezerwacji
+-- Dzień sprzedaży = data płatności, a dla starych rezerwacji bez niej - data utworzenia
+INSERT INTO daily_sales_entries (reservation_id, sales_date, payment_method, movie_id, seats, revenue)
+SELECT r.id,
+       CAST(COALESCE(r.payment_date, r.created_at) AS DATE),
+       COALESCE(r.payment_method, 'UNKNOWN'),
+       s.movie_id,
+       COUNT(rs.id),
+       COALESCE(SUM(rs.price), 0)
+FROM reservations r
+JOIN screenings s ON s.id = r.screening_id
+LEFT JOIN reservation_seats rs ON rs.reservation_id = r.id
+WHERE r.status = 'PAID'
+GROUP BY r.id, s.movie_id;
+
+INSERT INTO daily_sales (sales_date, payment_method, movie_id, paid_reservations, paid_seats, revenue)
+SELECT sales_date, payment_method, movie_id, COUNT(*), SUM(seats), SUM(revenue)
+FROM daily_sales_entries
+GROUP BY sales_date, payment_method, movie_id;
@@ -0,0 +1,18 @@
+-- Zdenormalizowane agregaty ocen filmu (suma, liczba, średnia)
+-- Aktualizowane atomowo przy każdej ocenie (MovieRepository.applyRatingChange), bez przeliczania z movie_ratings
+ALTER TABLE movies
+    ADD COLUMN rating_sum BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN rating_count BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN average_rating DOUBLE PRECISION;
+
+-- Wypełnienie z istniejących ocen
+UPDATE movies m
+SET rating_sum = agg.rating_sum,
+    rating_count = agg.rating_count,
+    average_rating = CAST(agg.rating_sum AS DOUBLE PRECISION) / agg.rating_count
+FROM (
+    SELECT movie_id, SUM(rating) AS rating_sum, COUNT(*) AS rating_count
+    FROM movie_ratings
+    GROUP BY movie_id
+) agg
+WHERE agg.movie_id = m.id;
@@ -0,0 +1,4 @@
+-- Sortowanie katalogu po ocenie (ORDER BY average_rating, rating_count, id)
+-- Filmy bez ocen są traktowane jak najniżej oceniane: na końcu przy DESC, na początku przy ASC (skan wsteczny)
+CREATE INDEX idx_movies_rating_sort
+    ON movies(average_rating DESC NULLS LAST, rating_count DESC, id DESC);
@@ -0,0 +1,28 @@
+-- Wyszukiwanie pełnotekstowe filmów po tytule, reżyserze, gatunku i opisie
+-- Konfiguracja 'simple' (bez odmiany słów) - katalog zawiera tytuły polskie i angielskie,
+-- a PostgreSQL nie ma wbudowanego słownika polskiego
+-- Wagi: tytuł A, reżyser i gatunek B, opis C - trafienie w tytule jest najwyżej w rankingu
+ALTER TABLE movies ADD COLUMN search_vector TSVECTOR;
+
+CREATE FUNCTION movies_search_vector(title TEXT, director TEXT, genre TEXT, description TEXT)
+    RETURNS TSVECTOR LANGUAGE SQL IMMUTABLE AS $$
+    SELECT setweight(to_tsvector('simple', COALESCE(title, '')), 'A') ||
+           setweight(to_tsvector('simple', COALESCE(director, '')), 'B') ||
+           setweight(to_tsvector('simple', COALESCE(genre, '')), 'B') ||
+           setweight(to_tsvector('simple', COALESCE(description, '')), 'C')
+$$;
+
+-- Wektor wyliczany przy każdym zapisie filmu (aplikacja nigdy go nie ustawia)
+CREATE FUNCTION movies_search_vector_update() RETURNS TRIGGER LANGUAGE plpgsql AS $$
+BEGIN
+    NEW.search_vector := movies_search_vector(NEW.title, NEW.director, NEW.genre, NEW.description);
+    RETURN NEW;
+END $$;
+
+CREATE TRIGGER trg_movies_search_vector
+    BEFORE INSERT OR UPDATE OF title, director, genre, description ON movies
+    FOR EACH ROW EXECUTE FUNCTION movies_search_vector_update();
+
+UPDATE movies SET search_vector = movies_search_vector(title, director, genre, description);
+
+CREATE INDEX idx_movies_search_vector ON movies USING GIN (search_vector);
@@ -0,0 +1,5 @@
+-- Kolejność zdarzeń rezerwacji w przekaźniku (OutboxRelay): sprawdzenie, czy rezerwacja
+-- ma wcześniejsze niedostarczone zdarzenie (NOT EXISTS po aggregate_id i id)
+CREATE INDEX idx_outbox_events_pending_aggregate
+    ON outbox_events(aggregate_id, id)
+    WHERE published_at IS NULL;
@@ -0,0 +1,43 @@
+-- Rezerwacje, którym V25 wyłączyło zdublowane zajęcie miejsca (miejsce zostało przy starszej rezerwacji)
+-- Po V25 rezerwacja w statusie blokującym miejsca ma wszystkie miejsca aktywne (Reservation.changeStatus),
+-- więc nieaktywne miejsce takiej rezerwacji pochodzi wyłącznie z usunięcia duplikatów
+CREATE TABLE reservation_seat_conflicts (
+    id BIGSERIAL PRIMARY KEY,
+    reservation_id BIGINT NOT NULL,
+    reservation_seat_id BIGINT NOT NULL,
+    screening_id BIGINT NOT NULL,
+    seat_id BIGINT NOT NULL,
+    reservation_status VARCHAR(50) NOT NULL,
+    detected_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT fk_reservation_seat_conflicts_reservation FOREIGN KEY (reservation_id) REFERENCES reservations(id) ON DELETE CASCADE
+);
+
+INSERT INTO reservation_seat_conflicts (reservation_id, reservation_seat_id, screening_id, seat_id, reservation_status)
+SELECT r.id, rs.id, rs.screening_id, rs.seat_id, r.status
+FROM reservations r
+JOIN reservation_seats rs ON rs.reservation_id = r.id
+WHERE r.status IN ('PENDING_PAYMENT', 'PAYMENT_PROCESSING', 'PAID')
+  AND NOT rs.is_active;
+
+-- Nieopłacone - anulowane w całości (zwalniają też pozostałe miejsca)
+-- Uwaga: zmiana bezpośrednio w SQL nie trafia do reservations_AUD
+UPDATE reservations r
+SET status = 'CANCELLED',
+    version = version + 1
+WHERE r.status IN ('PENDING_PAYMENT', 'PAYMENT_PROCESSING')
+  AND EXISTS (SELECT 1 FROM reservation_seat_conflicts c WHERE c.reservation_id = r.id);
+
+UPDATE reservation_seats rs
+SET is_active = FALSE
+WHERE rs.is_active
+  AND EXISTS (
+      SELECT 1
+      FROM reservations r
+      JOIN reservation_seat_conflicts c ON c.reservation_id = r.id
+      WHERE r.id = rs.reservation_id
+        AND r.status = 'CANCELLED'
+  );
+
+-- Opłacone zostają opłacone, ale są oznaczone w reservation_seat_conflicts do ręcznej obsługi
+-- (zwrot lub przesadzenie klienta) - nie anulujemy sprzedanego biletu bez decyzji kasy
+CREATE INDEX idx_reservation_seat_conflicts_reservation ON reservation_seat_conflicts(reservation_id);
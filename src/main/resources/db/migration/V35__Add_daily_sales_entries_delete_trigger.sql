@@ -0,0 +1,27 @@
+-- Usunięcie wpisu z daily_sales_entries odejmuje jego udział z daily_sales
+-- Wpisy znikają nie tylko przy anulowaniu rezerwacji, ale też kaskadowo (ON DELETE CASCADE)
+-- przy usunięciu rezerwacji razem z użytkownikiem, salą czy seansem - bez wyzwalacza
+-- agregaty zostawałyby wtedy zawyżone aż do ręcznej przebudowy
+CREATE FUNCTION daily_sales_entries_subtract() RETURNS TRIGGER LANGUAGE plpgsql AS $$
+BEGIN
+    UPDATE daily_sales
+    SET paid_reservations = paid_reservations - 1,
+        paid_seats = paid_seats - OLD.seats,
+        revenue = revenue - OLD.revenue
+    WHERE sales_date = OLD.sales_date
+      AND payment_method = OLD.payment_method
+      AND movie_id = OLD.movie_id;
+    RETURN OLD;
+END $$;
+
+CREATE TRIGGER trg_daily_sales_entries_subtract
+    AFTER DELETE ON daily_sales_entries
+    FOR EACH ROW EXECUTE FUNCTION daily_sales_entries_subtract();
+
+-- Korekta agregatów po wpisach usuniętych kaskadowo przed tą migracją
+DELETE FROM daily_sales;
+
+INSERT INTO daily_sales (sales_date, payment_method, movie_id, paid_reservations, paid_seats, revenue)
+SELECT sales_date, payment_method, movie_id, COUNT(*), SUM(seats), SUM(revenue)
+FROM daily_sales_entries
+GROUP BY sales_date, payment_method, movie_id;
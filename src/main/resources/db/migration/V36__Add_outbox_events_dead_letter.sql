@@ -0,0 +1,24 @@
+-- Martwe zdarzenia skrzynki nadawczej: po outbox.relay.max-attempts nieudanych próbach
+-- zdarzenie dostaje failed_at i przestaje wstrzymywać kolejne zdarzenia swojej rezerwacji.
+-- Administrator może je ponowić albo pominąć (/api/admin/outbox/dead)
+ALTER TABLE outbox_events ADD COLUMN failed_at TIMESTAMP;
+
+-- Zdarzenia, które wyczerpały już domyślny limit prób (10), są od razu martwe
+UPDATE outbox_events
+SET failed_at = CURRENT_TIMESTAMP
+WHERE published_at IS NULL
+  AND attempts >= 10;
+
+DROP INDEX idx_outbox_events_pending;
+CREATE INDEX idx_outbox_events_pending
+    ON outbox_events(next_attempt_at, id)
+    WHERE published_at IS NULL AND failed_at IS NULL;
+
+DROP INDEX idx_outbox_events_pending_aggregate;
+CREATE INDEX idx_outbox_events_pending_aggregate
+    ON outbox_events(aggregate_id, id)
+    WHERE published_at IS NULL AND failed_at IS NULL;
+
+CREATE INDEX idx_outbox_events_failed
+    ON outbox_events(id)
+    WHERE published_at IS NULL AND failed_at IS NOT NULL;
@@ -1,11 +1,20 @@
 const API_BASE_URL = '/api';
 
+/**
+ * Token poczekalni seansu (ustawiany w reservation.js) - dołączany do każdego żądania
+ */
+function getQueueToken() {
+    return sessionStorage.getItem('queueToken');
+}
+
 async function apiRequest(endpoint, options = {}) {
     const url = `${API_BASE_URL}${endpoint}`;
+    const queueToken = getQueueToken();
     
     const defaultOptions = {
         headers: {
             'Content-Type': 'application/json',
+            ...(queueToken ? { 'X-Queue-Token': queueToken } : {}),
         },
         credentials: 'include',
     };
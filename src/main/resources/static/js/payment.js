@@ -524,11 +524,16 @@ async function handlePaymentSubmit(event) {
     loaderService.showButton('payButton', 'Przetwarzanie płatności...');
     
     try {
-        const response = await apiRequest('/payments/process', {
+        let response = await apiRequest('/payments/process', {
             method: 'POST',
             body: JSON.stringify(paymentData)
         });
         
+        // Płatność jest przetwarzana w tle - czekamy na wynik bramki
+        if (response && response.reservationStatus === 'PAYMENT_PROCESSING') {
+            response = await waitForPaymentResult(paymentData.reservationId);
+        }
+        
         if (response && response.success) {
             // Sukces - pokaż modal z szczegółami
             const transactionId = response.transactionId || 'N/A';
@@ -573,6 +578,24 @@ async function handlePaymentSubmit(event) {
     }
 }
 
+/**
+ * Odpytuje o stan płatności, dopóki bramka nie zwróci wyniku
+ */
+async function waitForPaymentResult(reservationId) {
+    const pollIntervalMs = 1000;
+    const maxAttempts = 120;
+    
+    for (let attempt = 0; attempt < maxAttempts; attempt++) {
+        await new Promise(resolve => setTimeout(resolve, pollIntervalMs));
+        const status = await apiRequest(`/payments/${reservationId}/status`, { method: 'GET' });
+        if (status.reservationStatus !== 'PAYMENT_PROCESSING') {
+            return status;
+        }
+    }
+    
+    throw new Error('Płatność jest nadal przetwarzana. Sprawdź status rezerwacji w profilu za kilka minut.');
+}
+
 /**
  * Wyświetla komunikat o błędzie
  */
@@ -45,6 +45,8 @@ async function loadReservations() {
                 statusBadge = '<span class="badge bg-success">Opłacona</span>';
             } else if (reservation.status === 'PENDING_PAYMENT') {
                 statusBadge = '<span class="badge bg-warning text-dark">Oczekuje na płatność</span>';
+            } else if (reservation.status === 'PAYMENT_PROCESSING') {
+                statusBadge = '<span class="badge bg-info">Płatność w trakcie</span>';
             } else {
                 statusBadge = '<span class="badge bg-info">' + reservation.status + '</span>';
             }
@@ -1,6 +1,10 @@
 let screeningData = null;
 let seatsData = [];
 let selectedSeats = new Map(); // Map<seatId, {seat, ticketType}>
+let seatMapStream = null;
+let seatMapVersion = null; // Wersja ostatniej migawki planu sali (null = czekamy na migawkę)
+let seatVersions = new Map(); // Map<seatId, wersja ostatniej zastosowanej zmiany>
+let pendingDeltas = []; // Zmiany odebrane przed migawką
 
 document.addEventListener('DOMContentLoaded', async () => {
     try {
@@ -26,7 +30,15 @@ document.addEventListener('DOMContentLoaded', async () => {
     }
     
     await loadScreeningData(screeningId);
+    await waitForAdmission(screeningId);
     await loadSeatsData(screeningId);
+    subscribeSeatMap(screeningId);
+});
+
+window.addEventListener('beforeunload', () => {
+    if (seatMapStream) {
+        seatMapStream.close();
+    }
 });
 
 async function loadScreeningData(screeningId) {
@@ -63,6 +75,140 @@ async function loadSeatsData(screeningId) {
     }
 }
 
+/**
+ * Przechodzi przez poczekalnię seansu (jeśli administrator ją włączył)
+ * Token kolejki jest zapisywany w sessionStorage i dołączany do żądań przez apiRequest
+ */
+async function waitForAdmission(screeningId) {
+    let status = null;
+    
+    if (getQueueToken() && sessionStorage.getItem('queueScreeningId') === String(screeningId)) {
+        status = await apiRequest(`/waiting-room/screenings/${screeningId}/status`, { method: 'GET' })
+            .catch(() => null);
+    }
+    if (!status) {
+        sessionStorage.removeItem('queueToken');
+        status = await apiRequest(`/waiting-room/screenings/${screeningId}/join`, { method: 'POST' });
+    }
+    
+    if (!status.token) {
+        sessionStorage.removeItem('queueToken');
+        sessionStorage.removeItem('queueScreeningId');
+        return;
+    }
+    sessionStorage.setItem('queueToken', status.token);
+    sessionStorage.setItem('queueScreeningId', String(screeningId));
+    
+    while (!status.admitted) {
+        loaderService.showFullScreen(
+            `Jesteś w kolejce. Osób przed Tobą: ${status.position} (ok. ${status.estimatedWaitSeconds} s)`);
+        await new Promise(resolve => setTimeout(resolve, 3000));
+        status = await apiRequest(`/waiting-room/screenings/${screeningId}/status`, { method: 'GET' });
+    }
+    loaderService.hideFullScreen();
+}
+
+/**
+ * Subskrybuje zmiany planu sali (Server-Sent Events)
+ * Serwer wysyła najpierw pełną migawkę ("snapshot"), a potem tylko zmiany ("delta"),
+ * więc nie trzeba odpytywać całego planu sali. EventSource sam wznawia zerwane połączenie.
+ */
+function subscribeSeatMap(screeningId) {
+    if (!window.EventSource) {
+        return;
+    }
+    
+    const queueToken = getQueueToken();
+    const query = queueToken ? `?queueToken=${encodeURIComponent(queueToken)}` : '';
+    seatMapStream = new EventSource(`${API_BASE_URL}/reservations/screenings/${screeningId}/seats/stream${query}`);
+    
+    seatMapStream.addEventListener('snapshot', (event) => {
+        const snapshot = JSON.parse(event.data);
+        seatsData = snapshot.seats;
+        seatMapVersion = snapshot.version;
+        seatVersions = new Map();
+        
+        const buffered = pendingDeltas;
+        pendingDeltas = [];
+        buffered.forEach(applySeatMapDelta);
+        
+        refreshSeatGrid();
+    });
+    
+    seatMapStream.addEventListener('delta', (event) => {
+        const delta = JSON.parse(event.data);
+        if (seatMapVersion === null) {
+            pendingDeltas.push(delta);
+            return;
+        }
+        if (applySeatMapDelta(delta)) {
+            refreshSeatGrid();
+        }
+    });
+    
+    seatMapStream.onerror = () => {
+        // Po ponownym połączeniu serwer wyśle nową migawkę
+        seatMapVersion = null;
+    };
+}
+
+/**
+ * Nanosi zmianę na dane miejsc
+ * Zmiany starsze niż to, co już wiemy o miejscu (migawka lub późniejsza zmiana), są pomijane
+ * 
+ * @returns true jeśli coś się zmieniło
+ */
+function applySeatMapDelta(delta) {
+    let changed = false;
+    delta.takenSeatIds.forEach(seatId => {
+        changed = setSeatAvailability(seatId, false, delta.version) || changed;
+    });
+    delta.releasedSeatIds.forEach(seatId => {
+        changed = setSeatAvailability(seatId, true, delta.version) || changed;
+    });
+    return changed;
+}
+
+function setSeatAvailability(seatId, isAvailable, version) {
+    const knownVersion = seatVersions.has(seatId) ? seatVersions.get(seatId) : seatMapVersion;
+    if (version <= knownVersion) {
+        return false;
+    }
+    seatVersions.set(seatId, version);
+    
+    const seat = seatsData.find(s => s.seatId === seatId);
+    if (!seat || seat.isAvailable === isAvailable) {
+        return false;
+    }
+    seat.isAvailable = isAvailable;
+    return true;
+}
+
+/**
+ * Przerysowuje plan sali zachowując wybór użytkownika
+ * Miejsca, które ktoś w międzyczasie zajął, są usuwane z wybranych
+ */
+function refreshSeatGrid() {
+    renderSeatGrid();
+    
+    let lostSeats = 0;
+    selectedSeats.forEach((data, seatId) => {
+        const seat = seatsData.find(s => s.seatId === seatId);
+        if (!seat || !seat.isAvailable || !seat.isSeatEnabled) {
+            selectedSeats.delete(seatId);
+            lostSeats++;
+        } else {
+            data.seat = seat;
+            updateSeatVisualState(seatId, true);
+        }
+    });
+    
+    if (lostSeats > 0) {
+        notificationService.showWarning('Część wybranych miejsc została właśnie zarezerwowana przez inną osobę');
+    }
+    updateSelectedSeatsList();
+}
+
 function renderSeatGrid() {
     const seatGrid = document.getElementById('seatGrid');
     seatGrid.innerHTML = '';
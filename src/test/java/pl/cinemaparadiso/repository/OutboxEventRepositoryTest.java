@@ -0,0 +1,87 @@
+package pl.cinemaparadiso.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import pl.cinemaparadiso.entity.OutboxEvent;
+import pl.cinemaparadiso.enums.OutboxEventType;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Kolejność zdarzeń w lockNextBatch (zapytanie natywne PostgreSQL - FOR UPDATE SKIP LOCKED)
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+class OutboxEventRepositoryTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    private final LocalDateTime now = LocalDateTime.now();
+
+    @Test
+    void laterEventWaitsForEarlierFailedOne() {
+        OutboxEvent failed = save(OutboxEventType.PAYMENT_COMPLETED, 1L, 3, now.plusMinutes(5), null);
+        save(OutboxEventType.RESERVATION_CANCELLED, 1L, 0, now, null);
+        OutboxEvent otherReservation = save(OutboxEventType.RESERVATION_CREATED, 2L, 0, now, null);
+
+        assertThat(ids(outboxEventRepository.lockNextBatch(now, 10))).containsExactly(otherReservation.getId());
+
+        // Po upływie odstępu wraca najpierw wcześniejsze zdarzenie - późniejsze dalej czeka
+        assertThat(ids(outboxEventRepository.lockNextBatch(now.plusMinutes(10), 10)))
+                .containsExactly(failed.getId(), otherReservation.getId());
+    }
+
+    @Test
+    void deadEventDoesNotBlockLaterOnes() {
+        save(OutboxEventType.PAYMENT_COMPLETED, 1L, 10, now.plusMinutes(5), now);
+        OutboxEvent cancelled = save(OutboxEventType.RESERVATION_CANCELLED, 1L, 0, now, null);
+
+        assertThat(ids(outboxEventRepository.lockNextBatch(now, 10))).containsExactly(cancelled.getId());
+        assertThat(outboxEventRepository.findByFailedAtIsNotNullAndPublishedAtIsNullOrderById()).hasSize(1);
+    }
+
+    @Test
+    void publishedEventDoesNotBlockLaterOnes() {
+        OutboxEvent created = save(OutboxEventType.RESERVATION_CREATED, 1L, 0, now, null);
+        OutboxEvent paid = save(OutboxEventType.PAYMENT_COMPLETED, 1L, 0, now, null);
+
+        assertThat(ids(outboxEventRepository.lockNextBatch(now, 10))).containsExactly(created.getId());
+
+        created.setPublishedAt(now);
+        outboxEventRepository.saveAndFlush(created);
+
+        assertThat(ids(outboxEventRepository.lockNextBatch(now, 10))).containsExactly(paid.getId());
+    }
+
+    private OutboxEvent save(OutboxEventType type, Long reservationId, int attempts,
+                             LocalDateTime nextAttemptAt, LocalDateTime failedAt) {
+        return outboxEventRepository.saveAndFlush(OutboxEvent.builder()
+                .eventType(type)
+                .aggregateId(reservationId)
+                .payload("{}")
+                .createdAt(now)
+                .nextAttemptAt(nextAttemptAt)
+                .attempts(attempts)
+                .failedAt(failedAt)
+                .build());
+    }
+
+    private static List<Long> ids(List<OutboxEvent> events) {
+        return events.stream().map(OutboxEvent::getId).toList();
+    }
+}
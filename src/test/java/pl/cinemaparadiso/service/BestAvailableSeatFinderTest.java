@@ -0,0 +1,94 @@
+package pl.cinemaparadiso.service;
+
+import org.junit.jupiter.api.Test;
+import pl.cinemaparadiso.entity.Seat;
+import pl.cinemaparadiso.enums.SeatType;
+
+import java.util.BitSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static pl.cinemaparadiso.service.SeatMapSnapshotTest.occupied;
+import static pl.cinemaparadiso.service.SeatMapSnapshotTest.seats;
+
+class BestAvailableSeatFinderTest {
+
+    private final RoomLayout layout = RoomLayout.of(1L, seats(10, 10, 10, 10, 10));
+
+    @Test
+    void picksCentredBlockAroundSixtyPercentOfRoomDepth() {
+        int start = BestAvailableSeatFinder.findBestBlock(snapshot(layout), 2, null, null, null);
+
+        // Rząd 3 (indeks 2), miejsca 5-6
+        assertThat(start).isEqualTo(24);
+    }
+
+    @Test
+    void prefersRequestedRow() {
+        int start = BestAvailableSeatFinder.findBestBlock(snapshot(layout), 2, null, 1, null);
+
+        assertThat(start).isEqualTo(4);
+    }
+
+    @Test
+    void movesAsideFromOccupiedCentreBeforeChangingRow() {
+        SeatMapSnapshot snapshot = snapshot(layout, 4, 5);
+
+        int start = BestAvailableSeatFinder.findBestBlock(snapshot, 2, null, 1, null);
+
+        assertThat(start).isEqualTo(2);
+    }
+
+    @Test
+    void skipsExcludedSeats() {
+        BitSet excluded = new BitSet();
+        excluded.set(0, 10);
+
+        int start = BestAvailableSeatFinder.findBestBlock(snapshot(layout), 2, null, 1, excluded);
+
+        assertThat(layout.rowNumber(start)).isEqualTo(2);
+    }
+
+    @Test
+    void requiresConsecutiveSeatNumbers() {
+        List<Seat> seats = seats(5);
+        seats.remove(2);
+        RoomLayout withAisle = RoomLayout.of(1L, seats);
+
+        assertThat(BestAvailableSeatFinder.findBestBlock(snapshot(withAisle), 3, null, null, null)).isEqualTo(-1);
+        assertThat(BestAvailableSeatFinder.findBestBlock(snapshot(withAisle), 2, null, null, null)).isNotEqualTo(-1);
+    }
+
+    @Test
+    void matchesRequestedSeatType() {
+        List<Seat> seats = seats(4, 4);
+        seats.subList(4, 8).forEach(seat -> seat.setSeatType(SeatType.VIP));
+        RoomLayout mixed = RoomLayout.of(1L, seats);
+
+        int start = BestAvailableSeatFinder.findBestBlock(snapshot(mixed), 2, SeatType.VIP, 1, null);
+
+        assertThat(mixed.seatType(start)).isEqualTo(SeatType.VIP);
+        assertThat(mixed.seatType(start + 1)).isEqualTo(SeatType.VIP);
+    }
+
+    @Test
+    void skipsDisabledSeats() {
+        List<Seat> seats = seats(3);
+        seats.get(1).setIsAvailable(false);
+        RoomLayout broken = RoomLayout.of(1L, seats);
+
+        assertThat(BestAvailableSeatFinder.findBestBlock(snapshot(broken), 2, null, null, null)).isEqualTo(-1);
+    }
+
+    @Test
+    void returnsMinusOneWhenNoBlockFits() {
+        assertThat(BestAvailableSeatFinder.findBestBlock(snapshot(layout), 11, null, null, null)).isEqualTo(-1);
+        assertThat(BestAvailableSeatFinder.findBestBlock(snapshot(layout), 0, null, null, null)).isEqualTo(-1);
+        assertThat(BestAvailableSeatFinder.findBestBlock(snapshot(RoomLayout.of(1L, List.of())), 1, null, null, null))
+                .isEqualTo(-1);
+    }
+
+    private static SeatMapSnapshot snapshot(RoomLayout layout, int... occupiedIndexes) {
+        return new SeatMapSnapshot(10L, layout, occupied(layout, occupiedIndexes), 1);
+    }
+}
@@ -0,0 +1,194 @@
+package pl.cinemaparadiso.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.cinemaparadiso.dto.CreateReservationDTO;
+import pl.cinemaparadiso.dto.ReservationDTO;
+import pl.cinemaparadiso.enums.TicketType;
+import pl.cinemaparadiso.exception.BookingBusyException;
+import pl.cinemaparadiso.exception.SeatNotAvailableException;
+import pl.cinemaparadiso.repository.ReservationRepository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static pl.cinemaparadiso.service.SeatMapSnapshotTest.occupied;
+import static pl.cinemaparadiso.service.SeatMapSnapshotTest.seatId;
+import static pl.cinemaparadiso.service.SeatMapSnapshotTest.seats;
+
+class BookingSequencerTest {
+
+    private static final Long SCREENING_ID = 7L;
+    private static final Long BLOCKING_RESERVATION_ID = 100L;
+
+    private final ReservationService reservationService = mock(ReservationService.class);
+    private final PaymentService paymentService = mock(PaymentService.class);
+    private final SeatInventoryService seatInventoryService = mock(SeatInventoryService.class);
+    private final ReservationRepository reservationRepository = mock(ReservationRepository.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final BookingSequencer sequencer = new BookingSequencer(
+            reservationService, paymentService, seatInventoryService, reservationRepository, transactionTemplate);
+
+    private final ExecutorService clients = Executors.newCachedThreadPool();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(sequencer, "enabled", true);
+        ReflectionTestUtils.setField(sequencer, "maxBatchSize", 64);
+        ReflectionTestUtils.setField(sequencer, "awaitTimeoutMillis", 5000L);
+
+        RoomLayout layout = RoomLayout.of(1L, seats(10));
+        when(seatInventoryService.getSnapshot(SCREENING_ID))
+                .thenReturn(new SeatMapSnapshot(SCREENING_ID, layout, occupied(layout), 1));
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(reservationService.createReservation(any(), anyLong())).thenAnswer(invocation ->
+                ReservationDTO.builder().userId(invocation.getArgument(1)).screeningId(SCREENING_ID).build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        clients.shutdownNow();
+        sequencer.shutdown();
+    }
+
+    @Test
+    void batchIsSavedInOneTransaction() throws Exception {
+        blockLane();
+        CompletableFuture<ReservationDTO> first = reserve(1L, 1);
+        CompletableFuture<ReservationDTO> second = reserve(2L, 2);
+        release.countDown();
+
+        assertThat(result(first).getUserId()).isEqualTo(1L);
+        assertThat(result(second).getUserId()).isEqualTo(2L);
+        verify(transactionTemplate, times(1)).execute(any());
+        verify(reservationService, times(1)).createReservation(any(), eq(1L));
+        verify(reservationService, times(1)).createReservation(any(), eq(2L));
+    }
+
+    @Test
+    void failedBatchIsRetriedOneByOne() throws Exception {
+        when(reservationService.createReservation(any(), eq(2L)))
+                .thenThrow(new IllegalArgumentException("Nieprawidłowy typ biletu"));
+        blockLane();
+        CompletableFuture<ReservationDTO> first = reserve(1L, 1);
+        CompletableFuture<ReservationDTO> failing = reserve(2L, 2);
+        CompletableFuture<ReservationDTO> third = reserve(3L, 3);
+        release.countDown();
+
+        assertThat(result(first).getUserId()).isEqualTo(1L);
+        assertThat(result(third).getUserId()).isEqualTo(3L);
+        assertThatThrownBy(() -> result(failing))
+                .hasCauseInstanceOf(IllegalArgumentException.class);
+        // Rezerwacja 1 zapisana w wycofanej paczce, a potem ponownie - pojedynczo
+        verify(reservationService, times(2)).createReservation(any(), eq(1L));
+        verify(reservationService, times(1)).createReservation(any(), eq(3L));
+        verify(transactionTemplate, times(1)).execute(any());
+    }
+
+    @Test
+    void seatTakenEarlierInBatchIsRejectedWithoutDatabase() throws Exception {
+        blockLane();
+        CompletableFuture<ReservationDTO> first = reserve(1L, 4);
+        CompletableFuture<ReservationDTO> second = reserve(2L, 4);
+        release.countDown();
+
+        assertThat(result(first).getUserId()).isEqualTo(1L);
+        assertThatThrownBy(() -> result(second))
+                .hasCauseInstanceOf(SeatNotAvailableException.class);
+        verify(reservationService, never()).createReservation(any(), eq(2L));
+    }
+
+    @Test
+    void timedOutCommandIsNotExecuted() throws Exception {
+        ReflectionTestUtils.setField(sequencer, "awaitTimeoutMillis", 100L);
+        blockLane();
+
+        assertThatThrownBy(() -> sequencer.createReservation(createDTO(1), 1L))
+                .isInstanceOf(BookingBusyException.class);
+
+        release.countDown();
+        // Kolejne polecenie w tej samej kolejce - po jego wykonaniu porzucone polecenie zostało już pominięte
+        ReflectionTestUtils.setField(sequencer, "awaitTimeoutMillis", 5000L);
+        sequencer.cancelReservation(BLOCKING_RESERVATION_ID, 1L);
+        verify(reservationService, never()).createReservation(any(), anyLong());
+    }
+
+    /**
+     * Zajmuje kolejkę seansu anulowaniem, które czeka na zwolnienie zatrzasku release
+     * Polecenia dodane w tym czasie trafią do jednej paczki
+     */
+    private void blockLane() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        when(reservationRepository.findScreeningIdById(BLOCKING_RESERVATION_ID)).thenReturn(Optional.of(SCREENING_ID));
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return null;
+        }).when(reservationService).cancelReservation(BLOCKING_RESERVATION_ID, 1L);
+
+        clients.execute(() -> sequencer.cancelReservation(BLOCKING_RESERVATION_ID, 1L));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    /**
+     * Zgłasza rezerwację z osobnego wątku i czeka, aż trafi do kolejki seansu (zachowana kolejność zgłoszeń)
+     */
+    private CompletableFuture<ReservationDTO> reserve(Long userId, int seatNumber) throws InterruptedException {
+        int queued = queue().size();
+        CompletableFuture<ReservationDTO> result = CompletableFuture.supplyAsync(
+                () -> sequencer.createReservation(createDTO(seatNumber), userId), clients);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (queue().size() <= queued && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(queue()).hasSize(queued + 1);
+        return result;
+    }
+
+    private Queue<?> queue() {
+        Map<?, ?> lanes = (Map<?, ?>) ReflectionTestUtils.getField(sequencer, "lanes");
+        return (Queue<?>) ReflectionTestUtils.getField(lanes.get(SCREENING_ID), "queue");
+    }
+
+    private static ReservationDTO result(CompletableFuture<ReservationDTO> result)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        return result.get(5, TimeUnit.SECONDS);
+    }
+
+    private static CreateReservationDTO createDTO(int seatNumber) {
+        return CreateReservationDTO.builder()
+                .screeningId(SCREENING_ID)
+                .seats(List.of(CreateReservationDTO.SeatSelectionDTO.builder()
+                        .seatId(seatId(1, seatNumber))
+                        .ticketType(TicketType.NORMAL)
+                        .build()))
+                .build();
+    }
+}
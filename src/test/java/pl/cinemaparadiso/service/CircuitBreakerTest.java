@@ -0,0 +1,93 @@
+package pl.cinemaparadiso.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+    private static final long OPEN_MILLIS = 1_000;
+
+    private final CircuitBreaker breaker = new CircuitBreaker(4, 2, 0.5, OPEN_MILLIS);
+
+    @Test
+    void staysClosedBelowMinimumCalls() {
+        breaker.onFailure(0);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquirePermission(0)).isTrue();
+    }
+
+    @Test
+    void opensWhenFailureRateReachesThreshold() {
+        breaker.onSuccess();
+        breaker.onFailure(100);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.isCallPermitted(500)).isFalse();
+        assertThat(breaker.tryAcquirePermission(500)).isFalse();
+    }
+
+    @Test
+    void oldResultsLeaveTheWindow() {
+        breaker.onFailure(0);
+        breaker.onSuccess();
+        breaker.onSuccess();
+        breaker.onSuccess();
+        // Okno 4 wywołań: pierwszy błąd wypada, zostaje 1 błąd na 4
+        breaker.onSuccess();
+        breaker.onFailure(0);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void letsSingleTrialCallThroughAfterOpenPeriod() {
+        openBreaker(0);
+
+        assertThat(breaker.isCallPermitted(OPEN_MILLIS)).isTrue();
+        assertThat(breaker.tryAcquirePermission(OPEN_MILLIS)).isTrue();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquirePermission(OPEN_MILLIS)).isFalse();
+    }
+
+    @Test
+    void successfulTrialClosesBreaker() {
+        openBreaker(0);
+        breaker.tryAcquirePermission(OPEN_MILLIS);
+
+        breaker.onSuccess();
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        // Okno zostało wyczyszczone - pojedynczy błąd nie otwiera bezpiecznika
+        breaker.onFailure(OPEN_MILLIS);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void failedTrialOpensBreakerAgain() {
+        openBreaker(0);
+        breaker.tryAcquirePermission(OPEN_MILLIS);
+
+        breaker.onFailure(OPEN_MILLIS);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquirePermission(OPEN_MILLIS + 1)).isFalse();
+        assertThat(breaker.tryAcquirePermission(2 * OPEN_MILLIS)).isTrue();
+    }
+
+    @Test
+    void resultOfCallStartedBeforeOpeningIsIgnored() {
+        openBreaker(0);
+
+        breaker.onSuccess();
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    private void openBreaker(long nowMillis) {
+        breaker.onFailure(nowMillis);
+        breaker.onFailure(nowMillis);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+}
@@ -0,0 +1,72 @@
+package pl.cinemaparadiso.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HashedTimingWheelTest {
+
+    private static final long TICK = 100;
+
+    @Test
+    void rejectsWheelSizeThatIsNotPowerOfTwo() {
+        assertThatThrownBy(() -> new HashedTimingWheel(TICK, 6, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void returnsEntryOnlyOnceItsDeadlinePassed() {
+        HashedTimingWheel wheel = new HashedTimingWheel(TICK, 8, 0);
+        wheel.schedule(1L, 450);
+
+        assertThat(wheel.advance(400)).isEmpty();
+        assertThat(wheel.advance(500)).containsExactly(1L);
+        assertThat(wheel.advance(600)).isEmpty();
+    }
+
+    @Test
+    void keepsEntriesFurtherThanOneRotationForLaterRotations() {
+        HashedTimingWheel wheel = new HashedTimingWheel(TICK, 4, 0);
+        wheel.schedule(1L, 1_000);
+
+        assertThat(wheel.advance(200)).isEmpty();
+        assertThat(wheel.advance(600)).isEmpty();
+        assertThat(wheel.advance(900)).isEmpty();
+        assertThat(wheel.advance(1_000)).containsExactly(1L);
+    }
+
+    @Test
+    void firesPastDeadlineOnNextAdvance() {
+        HashedTimingWheel wheel = new HashedTimingWheel(TICK, 8, 0);
+        wheel.advance(1_000);
+
+        wheel.schedule(1L, 250);
+
+        assertThat(wheel.advance(1_100)).containsExactly(1L);
+    }
+
+    @Test
+    void collectsEveryEntryWhenAdvancingPastWholeRotation() {
+        HashedTimingWheel wheel = new HashedTimingWheel(TICK, 4, 0);
+        for (long id = 1; id <= 10; id++) {
+            wheel.schedule(id, id * TICK);
+        }
+
+        List<Long> expired = wheel.advance(5_000);
+
+        assertThat(expired).containsExactlyInAnyOrder(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
+        assertThat(wheel.advance(6_000)).isEmpty();
+    }
+
+    @Test
+    void ignoresAdvanceToEarlierTime() {
+        HashedTimingWheel wheel = new HashedTimingWheel(TICK, 8, 1_000);
+        wheel.schedule(1L, 1_200);
+
+        assertThat(wheel.advance(900)).isEmpty();
+        assertThat(wheel.advance(1_200)).containsExactly(1L);
+    }
+}
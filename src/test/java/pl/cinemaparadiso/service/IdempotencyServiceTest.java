@@ -0,0 +1,159 @@
+package pl.cinemaparadiso.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdempotencyServiceTest {
+
+    private static final Map<String, Object> REQUEST = Map.of("screeningId", 7, "seatIds", List.of(1, 2));
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Test
+    void executesEveryTimeWithoutKey() {
+        IdempotencyService service = service(10);
+
+        service.execute("create", 1L, null, REQUEST, this::call);
+        IdempotencyService.IdempotentResult<String> result = service.execute("create", 1L, " ", REQUEST, this::call);
+
+        assertThat(calls).hasValue(2);
+        assertThat(result.replayed()).isFalse();
+    }
+
+    @Test
+    void replaysStoredResultForSameKey() {
+        IdempotencyService service = service(10);
+
+        IdempotencyService.IdempotentResult<String> first = service.execute("create", 1L, "k", REQUEST, this::call);
+        IdempotencyService.IdempotentResult<String> second = service.execute("create", 1L, "k", REQUEST, this::call);
+
+        assertThat(calls).hasValue(1);
+        assertThat(first.replayed()).isFalse();
+        assertThat(second.replayed()).isTrue();
+        assertThat(second.value()).isEqualTo(first.value());
+    }
+
+    @Test
+    void rejectsSameKeyWithDifferentRequest() {
+        IdempotencyService service = service(10);
+        service.execute("create", 1L, "k", REQUEST, this::call);
+
+        Map<String, Object> other = Map.of("screeningId", 7, "seatIds", List.of(1, 3));
+
+        assertThatThrownBy(() -> service.execute("create", 1L, "k", other, this::call))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void fingerprintIgnoresMapKeyOrder() {
+        IdempotencyService service = service(10);
+        Map<String, Object> first = new LinkedHashMap<>();
+        first.put("a", 1);
+        first.put("b", 2);
+        Map<String, Object> reordered = new LinkedHashMap<>();
+        reordered.put("b", 2);
+        reordered.put("a", 1);
+
+        service.execute("create", 1L, "k", first, this::call);
+        IdempotencyService.IdempotentResult<String> result = service.execute("create", 1L, "k", reordered, this::call);
+
+        assertThat(result.replayed()).isTrue();
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void keysAreSeparatePerUserAndScope() {
+        IdempotencyService service = service(10);
+
+        service.execute("create", 1L, "k", REQUEST, this::call);
+        service.execute("create", 2L, "k", REQUEST, this::call);
+        service.execute("pay", 1L, "k", REQUEST, this::call);
+
+        assertThat(calls).hasValue(3);
+    }
+
+    @Test
+    void failedOperationCanBeRetried() {
+        IdempotencyService service = service(10);
+
+        assertThatThrownBy(() -> service.execute("create", 1L, "k", REQUEST, () -> {
+            throw new IllegalStateException("błąd");
+        })).isInstanceOf(IllegalStateException.class);
+        IdempotencyService.IdempotentResult<String> retry = service.execute("create", 1L, "k", REQUEST, this::call);
+
+        assertThat(retry.replayed()).isFalse();
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void rejectsTooLongKey() {
+        IdempotencyService service = service(10);
+
+        assertThatThrownBy(() -> service.execute("create", 1L, "k".repeat(256), REQUEST, this::call))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void evictsOldestCompletedEntriesButNeverInFlightOnes() throws Exception {
+        IdempotencyService service = service(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger inFlightCalls = new AtomicInteger();
+
+        CompletableFuture<IdempotencyService.IdempotentResult<String>> inFlight = CompletableFuture.supplyAsync(() ->
+                service.execute("create", 1L, "a", REQUEST, () -> {
+                    inFlightCalls.incrementAndGet();
+                    started.countDown();
+                    await(release);
+                    return "A";
+                }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        service.execute("create", 1L, "b", REQUEST, this::call);
+        // Limit 1: wpis "a" jest w trakcie przetwarzania, więc usunięty zostaje zakończony "b"
+        service.execute("create", 1L, "c", REQUEST, this::call);
+
+        release.countDown();
+        assertThat(inFlight.get(5, TimeUnit.SECONDS).value()).isEqualTo("A");
+
+        IdempotencyService.IdempotentResult<String> replay = service.execute("create", 1L, "a", REQUEST, () -> "again");
+        assertThat(replay.replayed()).isTrue();
+        assertThat(replay.value()).isEqualTo("A");
+        assertThat(inFlightCalls).hasValue(1);
+
+        assertThat(service.execute("create", 1L, "b", REQUEST, this::call).replayed()).isFalse();
+        assertThat(calls).hasValue(3);
+    }
+
+    private IdempotencyService service(int maxEntries) {
+        IdempotencyService service = new IdempotencyService(maxEntries, new ObjectMapper());
+        ReflectionTestUtils.setField(service, "ttlMinutes", 60L);
+        ReflectionTestUtils.setField(service, "waitTimeoutSeconds", 5L);
+        return service;
+    }
+
+    private String call() {
+        return "result-" + calls.incrementAndGet();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
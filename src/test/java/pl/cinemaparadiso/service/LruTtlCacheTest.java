@@ -0,0 +1,99 @@
+package pl.cinemaparadiso.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LruTtlCacheTest {
+
+    private static final long HOUR = 3_600_000;
+
+    @Test
+    void rejectsNonPositiveSize() {
+        assertThatThrownBy(() -> new LruTtlCache<String, String>("test", 0, HOUR))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void returnsStoredValueAndCountsHitsAndMisses() {
+        LruTtlCache<String, String> cache = new LruTtlCache<>("test", 10, HOUR);
+
+        assertThat(cache.get("a")).isNull();
+        cache.put("a", "A", cache.generation());
+
+        assertThat(cache.get("a")).isEqualTo("A");
+        LruTtlCache.Stats stats = cache.stats();
+        assertThat(stats.hits()).isEqualTo(1);
+        assertThat(stats.misses()).isEqualTo(1);
+        assertThat(stats.hitRate()).isEqualTo(0.5);
+        assertThat(stats.size()).isEqualTo(1);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntry() {
+        LruTtlCache<String, String> cache = new LruTtlCache<>("test", 2, HOUR);
+        cache.put("a", "A", cache.generation());
+        cache.put("b", "B", cache.generation());
+        cache.get("a");
+
+        cache.put("c", "C", cache.generation());
+
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("a")).isEqualTo("A");
+        assertThat(cache.get("c")).isEqualTo("C");
+        assertThat(cache.stats().evictions()).isEqualTo(1);
+    }
+
+    @Test
+    void treatsExpiredEntryAsMissing() {
+        LruTtlCache<String, String> cache = new LruTtlCache<>("test", 10, 0);
+        cache.put("a", "A", cache.generation());
+
+        assertThat(cache.get("a")).isNull();
+        LruTtlCache.Stats stats = cache.stats();
+        assertThat(stats.expirations()).isEqualTo(1);
+        assertThat(stats.size()).isZero();
+    }
+
+    @Test
+    void rejectsValueLoadedBeforeInvalidation() {
+        LruTtlCache<String, String> cache = new LruTtlCache<>("test", 10, HOUR);
+        long generation = cache.generation();
+
+        cache.invalidate("a");
+        cache.put("a", "stale", generation);
+
+        assertThat(cache.get("a")).isNull();
+        cache.put("a", "fresh", cache.generation());
+        assertThat(cache.get("a")).isEqualTo("fresh");
+    }
+
+    @Test
+    void invalidatesSelectedEntries() {
+        LruTtlCache<String, String> cache = new LruTtlCache<>("test", 10, HOUR);
+        cache.put("R|1", "1", cache.generation());
+        cache.put("S|2", "2", cache.generation());
+        cache.put("R|3", "3", cache.generation());
+
+        cache.invalidateIf(key -> key.startsWith("R|"));
+
+        assertThat(cache.get("R|1")).isNull();
+        assertThat(cache.get("R|3")).isNull();
+        assertThat(cache.get("S|2")).isEqualTo("2");
+
+        cache.invalidate("S|2");
+        assertThat(cache.get("S|2")).isNull();
+    }
+
+    @Test
+    void invalidateAllClearsCache() {
+        LruTtlCache<String, String> cache = new LruTtlCache<>("test", 10, HOUR);
+        cache.put("a", "A", cache.generation());
+        cache.put("b", "B", cache.generation());
+
+        cache.invalidateAll();
+
+        assertThat(cache.stats().size()).isZero();
+    }
+}
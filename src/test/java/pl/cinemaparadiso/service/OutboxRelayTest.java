@@ -0,0 +1,138 @@
+package pl.cinemaparadiso.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.cinemaparadiso.entity.OutboxEvent;
+import pl.cinemaparadiso.enums.OutboxEventType;
+import pl.cinemaparadiso.repository.OutboxEventRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboxRelayTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final OutboxEventRepository outboxEventRepository = mock(OutboxEventRepository.class);
+    private final OutboxService outboxService = mock(OutboxService.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final OutboxRelay relay = new OutboxRelay(outboxEventRepository, outboxService, eventPublisher, transactionTemplate);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(relay, "batchSize", 100);
+        ReflectionTestUtils.setField(relay, "maxAttempts", MAX_ATTEMPTS);
+        ReflectionTestUtils.setField(relay, "listenerTimeoutMillis", 5000L);
+        ReflectionTestUtils.setField(relay, "listenerThreads", 2);
+        relay.initListenerExecutor();
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        relay.shutdown();
+    }
+
+    @Test
+    void marksDeliveredEventsAsPublished() {
+        OutboxEvent created = event(1L, OutboxEventType.RESERVATION_CREATED, 1L, 0);
+        OutboxEvent other = event(2L, OutboxEventType.RESERVATION_CREATED, 2L, 0);
+        batches(List.of(created, other));
+
+        relay.relayPendingEvents();
+
+        assertThat(created.getPublishedAt()).isNotNull();
+        assertThat(other.getPublishedAt()).isNotNull();
+    }
+
+    @Test
+    void laterEventWaitsForEarlierFailedOne() {
+        OutboxEvent paid = event(1L, OutboxEventType.PAYMENT_COMPLETED, 1L, 0);
+        OutboxEvent cancelled = event(2L, OutboxEventType.RESERVATION_CANCELLED, 1L, 0);
+        ReservationDomainEvent paidEvent = domainEvent(paid);
+        ReservationDomainEvent cancelledEvent = domainEvent(cancelled);
+        doThrow(new IllegalStateException("słuchacz niedostępny")).when(eventPublisher).publishEvent(paidEvent);
+        batches(List.of(paid, cancelled));
+
+        LocalDateTime before = LocalDateTime.now();
+        relay.relayPendingEvents();
+
+        verify(eventPublisher, never()).publishEvent(cancelledEvent);
+        assertThat(paid.getPublishedAt()).isNull();
+        assertThat(cancelled.getPublishedAt()).isNull();
+        assertThat(paid.getAttempts()).isEqualTo(1);
+        assertThat(paid.getLastError()).contains("słuchacz niedostępny");
+        assertThat(paid.getNextAttemptAt()).isAfter(before);
+        assertThat(paid.getFailedAt()).isNull();
+    }
+
+    @Test
+    void backoffGrowsWithAttempts() {
+        OutboxEvent first = event(1L, OutboxEventType.PAYMENT_COMPLETED, 1L, 0);
+        OutboxEvent second = event(2L, OutboxEventType.PAYMENT_COMPLETED, 2L, 1);
+        doThrow(new IllegalStateException("błąd")).when(eventPublisher).publishEvent(any(Object.class));
+        batches(List.of(first, second));
+
+        relay.relayPendingEvents();
+
+        assertThat(second.getNextAttemptAt()).isAfter(first.getNextAttemptAt());
+    }
+
+    @Test
+    void deadEventDoesNotBlockForever() {
+        OutboxEvent paid = event(1L, OutboxEventType.PAYMENT_COMPLETED, 1L, MAX_ATTEMPTS - 1);
+        doThrow(new IllegalStateException("błąd")).when(eventPublisher).publishEvent(domainEvent(paid));
+        batches(List.of(paid));
+
+        relay.relayPendingEvents();
+
+        // Martwe zdarzenie nie jest pobierane ani nie wstrzymuje kolejnych (warunek failed_at w lockNextBatch)
+        assertThat(paid.getAttempts()).isEqualTo(MAX_ATTEMPTS);
+        assertThat(paid.getFailedAt()).isNotNull();
+        assertThat(paid.getPublishedAt()).isNull();
+    }
+
+    @SafeVarargs
+    private void batches(List<OutboxEvent>... batches) {
+        var stubbing = when(outboxEventRepository.lockNextBatch(any(), anyInt()));
+        for (List<OutboxEvent> batch : batches) {
+            stubbing = stubbing.thenReturn(batch);
+        }
+        stubbing.thenReturn(List.of());
+    }
+
+    private OutboxEvent event(Long id, OutboxEventType type, Long reservationId, int attempts) {
+        OutboxEvent event = OutboxEvent.builder()
+                .id(id)
+                .eventType(type)
+                .aggregateId(reservationId)
+                .payload("{}")
+                .createdAt(LocalDateTime.now())
+                .nextAttemptAt(LocalDateTime.now())
+                .attempts(attempts)
+                .build();
+        when(outboxService.fromJson(event)).thenReturn(domainEvent(event));
+        return event;
+    }
+
+    private static ReservationDomainEvent domainEvent(OutboxEvent event) {
+        return new ReservationDomainEvent(event.getId(), event.getEventType(), event.getAggregateId(),
+                1L, 1L, null, null, null);
+    }
+}
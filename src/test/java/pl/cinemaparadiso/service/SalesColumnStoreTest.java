@@ -0,0 +1,190 @@
+package pl.cinemaparadiso.service;
+
+import org.junit.jupiter.api.Test;
+import pl.cinemaparadiso.dto.SalesQueryResultDTO;
+import pl.cinemaparadiso.enums.OutboxEventType;
+import pl.cinemaparadiso.enums.SalesDimension;
+import pl.cinemaparadiso.repository.ReservationRepository;
+import pl.cinemaparadiso.repository.ReservationRepository.SeatSaleRow;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SalesColumnStoreTest {
+
+    private static final LocalDateTime MONDAY_EVENING = LocalDateTime.of(2026, 10, 12, 20, 0);
+    private static final LocalDateTime FRIDAY_NOON = LocalDateTime.of(2026, 10, 16, 12, 0);
+
+    private final ReservationRepository reservationRepository = mock(ReservationRepository.class);
+    private final SalesColumnStore store = new SalesColumnStore(reservationRepository);
+
+    @Test
+    void appendsSeatsOfPaidReservation() {
+        paid(1L, sale(1L, 11L, 100L, "NORMAL", "25.00", MONDAY_EVENING),
+                sale(1L, 12L, 100L, "REDUCED", "18.50", MONDAY_EVENING));
+
+        SalesQueryResultDTO result = store.query(List.of(), null, null);
+
+        assertThat(result.getRowsScanned()).isEqualTo(2);
+        assertThat(result.getGroups()).hasSize(1);
+        assertThat(result.getGroups().get(0).getSeats()).isEqualTo(2);
+        assertThat(result.getGroups().get(0).getRevenue()).isEqualByComparingTo("43.50");
+        assertThat(result.getComplete()).isFalse();
+    }
+
+    @Test
+    void ignoresRepeatedPaymentEvent() {
+        paid(1L, sale(1L, 11L, 100L, "NORMAL", "25.00", MONDAY_EVENING));
+        store.onReservationEvent(event(OutboxEventType.PAYMENT_COMPLETED, 1L));
+
+        SalesQueryResultDTO result = store.query(List.of(), null, null);
+
+        assertThat(result.getRowsScanned()).isEqualTo(1);
+        assertThat(result.getGroups().get(0).getSeats()).isEqualTo(1);
+    }
+
+    @Test
+    void cancelledReservationIsNoLongerCounted() {
+        paid(1L, sale(1L, 11L, 100L, "NORMAL", "25.00", MONDAY_EVENING));
+        paid(2L, sale(2L, 21L, 100L, "NORMAL", "30.00", MONDAY_EVENING),
+                sale(2L, 22L, 100L, "NORMAL", "30.00", MONDAY_EVENING));
+
+        store.onReservationEvent(event(OutboxEventType.RESERVATION_CANCELLED, 2L));
+
+        SalesQueryResultDTO result = store.query(List.of(), null, null);
+        assertThat(result.getGroups().get(0).getSeats()).isEqualTo(1);
+        assertThat(result.getGroups().get(0).getRevenue()).isEqualByComparingTo("25.00");
+    }
+
+    @Test
+    void groupsByDimensionsSortedByRevenue() {
+        paid(1L, sale(1L, 11L, 100L, "NORMAL", "25.00", MONDAY_EVENING));
+        paid(2L, sale(2L, 21L, 200L, "STUDENT", "15.00", FRIDAY_NOON),
+                sale(2L, 22L, 200L, "STUDENT", "15.00", FRIDAY_NOON));
+
+        SalesQueryResultDTO result = store.query(
+                List.of(SalesDimension.MOVIE, SalesDimension.WEEKDAY, SalesDimension.HOUR), null, null);
+
+        assertThat(result.getGroups()).extracting(SalesQueryResultDTO.Group::getKeys).containsExactly(
+                List.of("Film 200", "FRIDAY", "12:00"),
+                List.of("Film 100", "MONDAY", "20:00"));
+        assertThat(result.getGroups()).extracting(SalesQueryResultDTO.Group::getSeats).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void filtersByScreeningDay() {
+        paid(1L, sale(1L, 11L, 100L, "NORMAL", "25.00", MONDAY_EVENING));
+        paid(2L, sale(2L, 21L, 100L, "NORMAL", "30.00", FRIDAY_NOON));
+
+        LocalDate friday = FRIDAY_NOON.toLocalDate();
+        SalesQueryResultDTO result = store.query(List.of(), friday, friday);
+
+        assertThat(result.getGroups().get(0).getRevenue()).isEqualByComparingTo("30.00");
+    }
+
+    @Test
+    void loadSkipsReservationCancelledWhileLoading() {
+        paid(1L, sale(1L, 11L, 100L, "NORMAL", "25.00", MONDAY_EVENING));
+        // Strona pobrana przed anulowaniem nadal zawiera rezerwację 1 jako opłaconą
+        when(reservationRepository.findPaidSeatSalesPage(eq(0L), eq(0L), anyInt())).thenAnswer(invocation -> {
+            store.onReservationEvent(event(OutboxEventType.RESERVATION_CANCELLED, 1L));
+            return List.of(sale(1L, 11L, 100L, "NORMAL", "25.00", MONDAY_EVENING),
+                    sale(2L, 21L, 100L, "NORMAL", "30.00", MONDAY_EVENING));
+        });
+
+        store.load();
+
+        SalesQueryResultDTO result = store.query(List.of(), null, null);
+        assertThat(result.getComplete()).isTrue();
+        assertThat(result.getGroups().get(0).getSeats()).isEqualTo(1);
+        assertThat(result.getGroups().get(0).getRevenue()).isEqualByComparingTo("30.00");
+    }
+
+    @Test
+    void loadDoesNotDuplicateReservationAppendedByEvent() {
+        paid(1L, sale(1L, 11L, 100L, "NORMAL", "25.00", MONDAY_EVENING));
+        when(reservationRepository.findPaidSeatSalesPage(anyLong(), anyLong(), anyInt()))
+                .thenReturn(List.of(sale(1L, 11L, 100L, "NORMAL", "25.00", MONDAY_EVENING)));
+
+        store.load();
+
+        assertThat(store.query(List.of(), null, null).getRowsScanned()).isEqualTo(1);
+    }
+
+    private void paid(Long reservationId, SeatSaleRow... rows) {
+        when(reservationRepository.findPaidSeatSales(reservationId)).thenReturn(List.of(rows));
+        store.onReservationEvent(event(OutboxEventType.PAYMENT_COMPLETED, reservationId));
+    }
+
+    private static ReservationDomainEvent event(OutboxEventType type, Long reservationId) {
+        return new ReservationDomainEvent(null, type, reservationId, 1L, 1L, null, null, LocalDateTime.now());
+    }
+
+    private static SeatSaleRow sale(Long reservationId, Long reservationSeatId, Long movieId,
+                                    String ticketType, String price, LocalDateTime screeningStart) {
+        return new Sale(reservationId, reservationSeatId, movieId, ticketType, new BigDecimal(price), screeningStart);
+    }
+
+    private record Sale(Long reservationId, Long reservationSeatId, Long movieId, String ticketType,
+                        BigDecimal price, LocalDateTime screeningStart) implements SeatSaleRow {
+
+        @Override
+        public Long getReservationId() {
+            return reservationId;
+        }
+
+        @Override
+        public Long getReservationSeatId() {
+            return reservationSeatId;
+        }
+
+        @Override
+        public Long getMovieId() {
+            return movieId;
+        }
+
+        @Override
+        public String getMovieTitle() {
+            return "Film " + movieId;
+        }
+
+        @Override
+        public Long getRoomId() {
+            return 1L;
+        }
+
+        @Override
+        public String getRoomNumber() {
+            return "Sala 1";
+        }
+
+        @Override
+        public LocalDateTime getScreeningStart() {
+            return screeningStart;
+        }
+
+        @Override
+        public String getTicketType() {
+            return ticketType;
+        }
+
+        @Override
+        public String getPaymentMethod() {
+            return "BLIK";
+        }
+
+        @Override
+        public BigDecimal getPrice() {
+            return price;
+        }
+    }
+}
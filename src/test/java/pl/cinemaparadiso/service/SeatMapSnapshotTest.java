@@ -0,0 +1,137 @@
+package pl.cinemaparadiso.service;
+
+import org.junit.jupiter.api.Test;
+import pl.cinemaparadiso.dto.SeatAvailabilityDTO;
+import pl.cinemaparadiso.entity.Seat;
+import pl.cinemaparadiso.enums.SeatType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SeatMapSnapshotTest {
+
+    @Test
+    void layoutSplitsSeatsIntoRows() {
+        RoomLayout layout = RoomLayout.of(1L, seats(5, 70));
+
+        assertThat(layout.size()).isEqualTo(75);
+        assertThat(layout.rowCount()).isEqualTo(2);
+        assertThat(layout.rowStart(0)).isZero();
+        assertThat(layout.rowEnd(0)).isEqualTo(5);
+        assertThat(layout.rowStart(1)).isEqualTo(5);
+        assertThat(layout.rowEnd(1)).isEqualTo(75);
+        assertThat(layout.rowNumber(5)).isEqualTo(2);
+        assertThat(layout.seatNumber(5)).isEqualTo(1);
+    }
+
+    @Test
+    void layoutMapsSeatIdsToIndexes() {
+        RoomLayout layout = RoomLayout.of(1L, seats(5, 70));
+
+        assertThat(layout.indexOf(seatId(1, 3))).isEqualTo(2);
+        assertThat(layout.seatId(2)).isEqualTo(seatId(1, 3));
+        assertThat(layout.indexOf(seatId(2, 70))).isEqualTo(74);
+        assertThat(layout.indexOf(999_999L)).isEqualTo(-1);
+    }
+
+    @Test
+    void fingerprintChangesWithSeats() {
+        List<Seat> seats = seats(5, 5);
+        String fingerprint = RoomLayout.of(1L, seats).getFingerprint();
+
+        assertThat(RoomLayout.of(1L, seats(5, 5)).getFingerprint()).isEqualTo(fingerprint);
+
+        seats.get(3).setIsAvailable(false);
+        assertThat(RoomLayout.of(1L, seats).getFingerprint()).isNotEqualTo(fingerprint);
+
+        seats.get(3).setIsAvailable(true);
+        seats.get(4).setSeatType(SeatType.VIP);
+        assertThat(RoomLayout.of(1L, seats).getFingerprint()).isNotEqualTo(fingerprint);
+    }
+
+    @Test
+    void readsOccupancyBitsAcrossWords() {
+        RoomLayout layout = RoomLayout.of(1L, seats(5, 70));
+        SeatMapSnapshot snapshot = new SeatMapSnapshot(10L, layout, occupied(layout, 0, 63, 64, 74), 3);
+
+        assertThat(snapshot.isOccupied(0)).isTrue();
+        assertThat(snapshot.isOccupied(1)).isFalse();
+        assertThat(snapshot.isOccupied(63)).isTrue();
+        assertThat(snapshot.isOccupied(64)).isTrue();
+        assertThat(snapshot.isOccupied(65)).isFalse();
+        assertThat(snapshot.isOccupied(74)).isTrue();
+        assertThat(snapshot.getVersion()).isEqualTo(3);
+    }
+
+    @Test
+    void disabledSeatIsNotFree() {
+        List<Seat> seats = seats(5);
+        seats.get(2).setIsAvailable(false);
+        RoomLayout layout = RoomLayout.of(1L, seats);
+        SeatMapSnapshot snapshot = new SeatMapSnapshot(10L, layout, occupied(layout, 0), 1);
+
+        assertThat(snapshot.isFree(0)).isFalse();
+        assertThat(snapshot.isFree(1)).isTrue();
+        assertThat(snapshot.isFree(2)).isFalse();
+        assertThat(snapshot.isOccupied(2)).isFalse();
+    }
+
+    @Test
+    void encodesRowAvailabilityAsHexWithFirstSeatInHighestBit() {
+        RoomLayout layout = RoomLayout.of(1L, seats(5, 8));
+        // Rząd 1: zajęte miejsce 2; rząd 2: zajęte miejsca 1 i 8
+        SeatMapSnapshot snapshot = new SeatMapSnapshot(10L, layout, occupied(layout, 1, 5, 12), 1);
+
+        assertThat(snapshot.rowAvailabilityHex(0)).isEqualTo("b8");
+        assertThat(snapshot.rowAvailabilityHex(1)).isEqualTo("7e");
+    }
+
+    @Test
+    void convertsToSeatAvailabilityInLayoutOrder() {
+        List<Seat> seats = seats(3);
+        seats.get(2).setIsAvailable(false);
+        RoomLayout layout = RoomLayout.of(1L, seats);
+        SeatMapSnapshot snapshot = new SeatMapSnapshot(10L, layout, occupied(layout, 1), 1);
+
+        List<SeatAvailabilityDTO> availability = snapshot.toSeatAvailability();
+
+        assertThat(availability).extracting(SeatAvailabilityDTO::getSeatId)
+                .containsExactly(seatId(1, 1), seatId(1, 2), seatId(1, 3));
+        assertThat(availability).extracting(SeatAvailabilityDTO::getIsAvailable)
+                .containsExactly(true, false, true);
+        assertThat(availability).extracting(SeatAvailabilityDTO::getIsSeatEnabled)
+                .containsExactly(true, true, false);
+    }
+
+    /**
+     * Miejsca sali posortowane po rzędzie i numerze - i-ty argument to liczba miejsc w rzędzie i+1
+     */
+    static List<Seat> seats(int... seatsPerRow) {
+        List<Seat> seats = new ArrayList<>();
+        for (int row = 1; row <= seatsPerRow.length; row++) {
+            for (int number = 1; number <= seatsPerRow[row - 1]; number++) {
+                seats.add(Seat.builder()
+                        .id(seatId(row, number))
+                        .rowNumber(row)
+                        .seatNumber(number)
+                        .seatType(SeatType.STANDARD)
+                        .build());
+            }
+        }
+        return seats;
+    }
+
+    static long seatId(int row, int number) {
+        return row * 1000L + number;
+    }
+
+    static long[] occupied(RoomLayout layout, int... indexes) {
+        long[] occupied = new long[(layout.size() + 63) / 64];
+        for (int index : indexes) {
+            occupied[index >>> 6] |= 1L << index;
+        }
+        return occupied;
+    }
+}
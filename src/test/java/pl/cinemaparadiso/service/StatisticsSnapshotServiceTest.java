@@ -0,0 +1,52 @@
+package pl.cinemaparadiso.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StatisticsSnapshotServiceTest {
+
+    private final StatisticsService statisticsService = mock(StatisticsService.class);
+    private final StatisticsSnapshotService service = new StatisticsSnapshotService(statisticsService);
+
+    @Test
+    void readAfterShutdownFailsInsteadOfWaitingForever() {
+        service.shutdown();
+
+        assertThatThrownBy(service::getSnapshot).isInstanceOf(RejectedExecutionException.class);
+        // Nieudane uruchomienie nie zostaje jako "trwające" przeliczenie
+        assertThat(service.refresh()).isNotSameAs(service.refresh());
+    }
+
+    @Test
+    void snapshotDoesNotShareNestedCollectionsWithStatisticsService() {
+        Map<String, Object> dailyRevenue = new HashMap<>();
+        dailyRevenue.put("2026-10-16", 100);
+        List<String> unavailable = new ArrayList<>();
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("dailyRevenueLast7Days", dailyRevenue);
+        statistics.put(StatisticsService.UNAVAILABLE_SECTIONS, unavailable);
+        statistics.put("averageRating", null);
+        when(statisticsService.getAllStatistics()).thenReturn(statistics);
+
+        StatisticsSnapshot snapshot = service.getSnapshot();
+        dailyRevenue.put("2026-10-17", 200);
+        unavailable.add("ratings");
+
+        assertThat(snapshot.statistics().get("dailyRevenueLast7Days")).isEqualTo(Map.of("2026-10-16", 100));
+        assertThat(snapshot.statistics().get(StatisticsService.UNAVAILABLE_SECTIONS)).isEqualTo(List.of());
+        assertThat(snapshot.statistics()).containsEntry("averageRating", null);
+        assertThatThrownBy(() -> ((Map<?, ?>) snapshot.statistics().get("dailyRevenueLast7Days")).clear())
+                .isInstanceOf(UnsupportedOperationException.class);
+        service.shutdown();
+    }
+}